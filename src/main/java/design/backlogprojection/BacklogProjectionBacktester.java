@@ -0,0 +1,248 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionUseCase.StrategyByWorkflow;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+
+import fj.data.List;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.BacklogTrajectoryEstimator.*;
+
+/**
+ * Replays recorded inputs of the {@link BacklogTrajectoryEstimator} and measures how far the projected queues were from the queues that
+ * actually happened. Intended to tune the {@link BacklogBoundsDecider}s and the {@link ProcessingOrderCriteria}s offline.
+ * <p>The snapshots are read from local files and estimated in parallel. Each estimated trajectory is folded into the error metrics as soon
+ * as it is calculated and then discarded, so the memory needed does not depend on the number of snapshots.
+ */
+public class BacklogProjectionBacktester {
+  private static final Stage[] ALL_STAGES = Stage.values();
+
+  private final SnapshotReader snapshotReader;
+  private final Duration horizonBucketSize;
+  private final int horizonBucketsCount;
+  private final int parallelism;
+
+  /**
+   * @param snapshotReader knows how to read the recorded snapshots.
+   * @param horizonBucketSize the errors are grouped by the offset, relative to the view date, of the end of the step they correspond to.
+   * 	This is the size of the groups.
+   * @param horizon the errors corresponding to steps that end after the view date plus this duration are ignored.
+   * @param parallelism the number of snapshots that are estimated concurrently.
+   */
+  public BacklogProjectionBacktester(
+	  final SnapshotReader snapshotReader,
+	  final Duration horizonBucketSize,
+	  final Duration horizon,
+	  final int parallelism
+  ) {
+	if (horizonBucketSize.isNegative() || horizonBucketSize.isZero()) {
+	  throw new IllegalArgumentException(String.format("Invalid horizon bucket size: %s", horizonBucketSize));
+	}
+	this.snapshotReader = snapshotReader;
+	this.horizonBucketSize = horizonBucketSize;
+	this.horizonBucketsCount = (int) ((horizon.toMillis() + horizonBucketSize.toMillis() - 1) / horizonBucketSize.toMillis());
+	this.parallelism = parallelism;
+  }
+
+  /**
+   * Specifies what the {@link BacklogProjectionBacktester} needs to know about a recorded input of the {@link BacklogTrajectoryEstimator}
+   * and about the backlog that actually happened after it was recorded.
+   */
+  public interface RecordedSnapshot {
+	Workflow workflow();
+
+	Instant viewDate();
+
+	WorkflowBacklog backlog();
+
+	Stream<Sla> nextKnownSlas();
+
+	StaffingPlan staffingPlan();
+
+	UpstreamThroughputTrajectory upstreamThroughputTrajectory();
+
+	ProcessingOrderCriteria processingOrderCriteria();
+
+	BacklogBoundsDecider backlogBoundsDecider();
+
+	ActualBacklogTrajectory actualBacklogTrajectory();
+  }
+
+  /**
+   * Specifies what the {@link BacklogProjectionBacktester} needs to know about the backlog that actually happened.
+   */
+  public interface ActualBacklogTrajectory {
+	/**
+	 * The total of the backlog observed at the specified {@link Stage} and instant, or empty if it was not observed.
+	 */
+	OptionalLong totalAt(Stage stage, Instant when);
+  }
+
+  /**
+   * Reads a {@link RecordedSnapshot} from a local file.
+   */
+  public interface SnapshotReader {
+	RecordedSnapshot read(Path file) throws IOException;
+  }
+
+  /**
+   * The error of the projected backlog at a {@link Stage}, for the steps whose ending date offset relative to the view date is in
+   * {@code [horizonOffset, horizonOffset + horizonBucketSize)}. The error is the projected total minus the actual total.
+   */
+  public record HorizonError(
+	  Stage stage,
+	  Duration horizonOffset,
+	  long samplesCount,
+	  double bias,
+	  double meanAbsoluteError,
+	  double rootMeanSquaredError
+  ) {}
+
+  public record BacktestReport(long snapshotsCount, List<HorizonError> errors) {}
+
+  /**
+   * Backtests all the snapshots contained in the specified directory.
+   */
+  public BacktestReport backtest(final Path snapshotsDirectory) throws IOException {
+	final Path[] snapshotFiles;
+	try (var files = Files.list(snapshotsDirectory)) {
+	  snapshotFiles = files.filter(Files::isRegularFile).sorted().toArray(Path[]::new);
+	}
+	return backtest(snapshotFiles);
+  }
+
+  public BacktestReport backtest(final Path[] snapshotFiles) {
+	final var pool = new ForkJoinPool(parallelism);
+	try {
+	  return pool.submit(() -> Arrays.stream(snapshotFiles)
+		  .parallel()
+		  .collect(() -> new ErrorAccumulator(horizonBucketsCount), this::accumulate, ErrorAccumulator::merge)
+	  ).get().toReport(horizonBucketSize);
+	} catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	  throw new IllegalStateException("The backtest was interrupted", e);
+	} catch (ExecutionException e) {
+	  if (e.getCause() instanceof RuntimeException cause) {
+		throw cause;
+	  } else {
+		throw new IllegalStateException(e.getCause());
+	  }
+	} finally {
+	  pool.shutdown();
+	}
+  }
+
+  private void accumulate(final ErrorAccumulator accumulator, final Path snapshotFile) {
+	final RecordedSnapshot snapshot;
+	try {
+	  snapshot = snapshotReader.read(snapshotFile);
+	} catch (IOException e) {
+	  throw new UncheckedIOException(String.format("Unable to read the snapshot %s", snapshotFile), e);
+	}
+	final var workflow = snapshot.workflow();
+	final var viewDate = snapshot.viewDate();
+	final var trajectory = estimateWorkflowTrajectory(
+		viewDate,
+		snapshot.backlog(),
+		snapshot.nextKnownSlas(),
+		StrategyByWorkflow.from(workflow).stepEstimator,
+		new StepTranscendentalInvariants(
+			workflow.stages(),
+			workflow.processingStages(),
+			snapshot.upstreamThroughputTrajectory(),
+			snapshot.staffingPlan(),
+			snapshot.processingOrderCriteria(),
+			snapshot.backlogBoundsDecider(),
+			// the snapshots are already estimated concurrently, so forking the branches of each would only add contention
+			BranchesParallelism.SEQUENTIAL
+		)
+	);
+
+	final var actualBacklogTrajectory = snapshot.actualBacklogTrajectory();
+	for (var step : trajectory) {
+	  final var horizonBucket = Duration.between(viewDate, step.endingDate()).toMillis() / horizonBucketSize.toMillis();
+	  if (horizonBucket < horizonBucketsCount) {
+		for (var stage : workflow.stages()) {
+		  final var stageStep = step.stagesStep().get(stage);
+		  final var actualTotal = actualBacklogTrajectory.totalAt(stage, step.endingDate());
+		  if (stageStep != null && actualTotal.isPresent()) {
+			accumulator.add(stage, (int) horizonBucket, stageStep.finalQueue().total() - actualTotal.getAsLong());
+		  }
+		}
+	  }
+	}
+	accumulator.snapshotsCount += 1;
+  }
+
+  /**
+   * Mutable and mergeable accumulator of the errors, grouped by stage and horizon bucket.
+   */
+  private static final class ErrorAccumulator {
+	private final int horizonBucketsCount;
+	private final long[] samplesCounts;
+	private final double[] errorSums;
+	private final double[] absoluteErrorSums;
+	private final double[] squaredErrorSums;
+	private long snapshotsCount;
+
+	ErrorAccumulator(final int horizonBucketsCount) {
+	  final var length = ALL_STAGES.length * horizonBucketsCount;
+	  this.horizonBucketsCount = horizonBucketsCount;
+	  this.samplesCounts = new long[length];
+	  this.errorSums = new double[length];
+	  this.absoluteErrorSums = new double[length];
+	  this.squaredErrorSums = new double[length];
+	}
+
+	void add(final Stage stage, final int horizonBucket, final double error) {
+	  final var index = stage.ordinal() * horizonBucketsCount + horizonBucket;
+	  samplesCounts[index] += 1;
+	  errorSums[index] += error;
+	  absoluteErrorSums[index] += Math.abs(error);
+	  squaredErrorSums[index] += error * error;
+	}
+
+	void merge(final ErrorAccumulator other) {
+	  for (var index = 0; index < samplesCounts.length; ++index) {
+		samplesCounts[index] += other.samplesCounts[index];
+		errorSums[index] += other.errorSums[index];
+		absoluteErrorSums[index] += other.absoluteErrorSums[index];
+		squaredErrorSums[index] += other.squaredErrorSums[index];
+	  }
+	  snapshotsCount += other.snapshotsCount;
+	}
+
+	BacktestReport toReport(final Duration horizonBucketSize) {
+	  List<HorizonError> errors = List.nil();
+	  for (var index = samplesCounts.length - 1; index >= 0; --index) {
+		final var samplesCount = samplesCounts[index];
+		if (samplesCount > 0) {
+		  errors = List.cons(
+			  new HorizonError(
+				  ALL_STAGES[index / horizonBucketsCount],
+				  horizonBucketSize.multipliedBy(index % horizonBucketsCount),
+				  samplesCount,
+				  errorSums[index] / samplesCount,
+				  absoluteErrorSums[index] / samplesCount,
+				  Math.sqrt(squaredErrorSums[index] / samplesCount)
+			  ),
+			  errors
+		  );
+		}
+	  }
+	  return new BacktestReport(snapshotsCount, errors);
+	}
+  }
+}
@@ -1,14 +1,24 @@
 package design.backlogprojection;
 
+import design.backlogprojection.BacklogTrajectoryOverseer.DownstreamThroughputTrajectory;
+import design.backlogprojection.BacklogTrajectoryOverseer.WorkflowTrajectoryOversawStep;
+import design.backlogprojection.ProjectionMetrics.Input;
+import design.backlogprojection.ProjectionTimings.Phase;
+import design.backlogprojection.montecarlo.MonteCarloProjector;
+import design.backlogprojection.montecarlo.MonteCarloProjector.ProbabilisticTrajectory;
+import design.backlogprojection.processingcriterias.SlaDiscriminatedPoc.SlaQueue;
 import design.global.Workflow;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import fj.P;
+import fj.P2;
 import fj.data.List;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -30,31 +40,271 @@ public class BacklogProjectionUseCase {
   private final BiFunction<Workflow, Instant, ProcessingOrderCriteria> processingStrategySupplier;
   private final BiFunction<Workflow, Instant, BacklogBoundsDecider> backlogBoundsDeciderSupplier;
   private final Supplier<UpstreamThroughputTrajectory> upstreamThroughputTrajectorySupplier;
+  private final BiFunction<Workflow, Instant, BacklogTrajectoryOverseer.StaffingPlan> oversightStaffingPlanSupplier;
+  private final BiFunction<Workflow, Instant, DownstreamThroughputTrajectory> downstreamThroughputTrajectorySupplier;
+  private final ProjectionMetrics projectionMetrics;
+  private final BranchesParallelism branchesParallelism;
 
   public List<WorkflowTrajectoryStep> execute(final Workflow workflow, final Instant viewDate) {
-	var actualBacklog = actualBacklogSupplier.apply(workflow, viewDate);
-	var nextKnownSlas = nextKnownSlasSupplier.apply(workflow, viewDate);
-
-	final StrategyByWorkflow strategy = StrategyByWorkflow.from(workflow);
-	var stepTranscendentalsInvariants = new StepTranscendentalInvariants(
-		workflow.stages,
-		workflow.processingStages,
-		upstreamThroughputTrajectorySupplier.get(),
-		staffingPlanGetter.get(
-			viewDate,
-			viewDate.plus(SCOPE_IN_HOURS, ChronoUnit.HOURS),
-			workflow.processingStages
-		),
-		processingStrategySupplier.apply(workflow, viewDate),
-		backlogBoundsDeciderSupplier.apply(workflow, viewDate)
-	);
+	return execute(workflow, viewDate, ProjectionTimings.NONE);
+  }
+
+  /**
+   * Same as {@link #execute(Workflow, Instant)} but the time spent in each phase is added to the specified {@link ProjectionTimings}.
+   */
+  public List<WorkflowTrajectoryStep> execute(final Workflow workflow, final Instant viewDate, final ProjectionTimings timings) {
+	return executeCoalesced(workflow, viewDate, StepCoalescing.exact(), timings).steps();
+  }
+
+  /**
+   * Same as {@link #execute(Workflow, Instant, ProjectionTimings)} but the steps boundaries are decided by the specified
+   * {@link StepCoalescing}, which allows to trade accuracy for speed when a coarse trajectory is enough.
+   */
+  public CoalescedTrajectory executeCoalesced(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final StepCoalescing stepCoalescing,
+	  final ProjectionTimings timings
+  ) {
+	return instrumented(workflow, viewDate, timings, inputs -> estimateWorkflowTrajectory(
+		viewDate,
+		inputs.actualBacklog,
+		inputs.nextKnownSlas,
+		StrategyByWorkflow.from(workflow).stepEstimator,
+		inputs.transcendentals,
+		stepCoalescing,
+		timings
+	), CoalescedTrajectory::steps);
+  }
+
+  /**
+   * Same as {@link #execute(Workflow, Instant, ProjectionTimings)} but only the steps that start before the specified horizon are
+   * simulated. The last step may end after it.
+   * @see LazyTrajectory
+   */
+  public List<WorkflowTrajectoryStep> executeUntil(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final Instant horizon,
+	  final ProjectionTimings timings
+  ) {
+	return instrumented(workflow, viewDate, timings, inputs -> LazyTrajectory.of(
+		viewDate,
+		inputs.actualBacklog,
+		inputs.nextKnownSlas,
+		StrategyByWorkflow.from(workflow).stepEstimator,
+		inputs.transcendentals,
+		timings
+	).stepsUntil(horizon), Function.identity());
+  }
+
+  /**
+   * Same as {@link #execute(Workflow, Instant, ProjectionTimings)} but the steps are enriched, by the {@link BacklogTrajectoryOverseer},
+   * with the minimum headcount each stage needs to keep up with the downstream throughput and the desired buffer.
+   */
+  public List<WorkflowTrajectoryOversawStep> executeOverseen(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final ProjectionTimings timings
+  ) {
+	// the overseer uses the bounds decider the trajectory was simulated with
+	return instrumented(workflow, viewDate, timings, inputs -> {
+	  final var steps = exactSteps(workflow, viewDate, inputs, timings);
+	  final var overseer = new BacklogTrajectoryOverseer(
+		  workflow,
+		  oversightStaffingPlanSupplier.apply(workflow, viewDate),
+		  inputs.transcendentals.backlogBoundsDecider()::getDesiredBufferSize,
+		  projectionMetrics
+	  );
+	  return P.p(
+		  steps,
+		  overseer.oversee(steps, downstreamThroughputTrajectorySupplier.apply(workflow, viewDate), new SlaQueue(Map.of()), timings)
+	  );
+	}, P2::_1)._2();
+  }
+
+  /**
+   * Estimates the backlog trajectory of the specified workflow for the baseline scenario and for each of the specified variants, sharing
+   * the simulation of their common prefixes.
+   * @see ScenarioTree
+   */
+  public Map<String, List<WorkflowTrajectoryStep>> executeScenarios(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final java.util.List<ScenarioTree.Variant> variants,
+	  final ProjectionTimings timings
+  ) {
+	return instrumented(workflow, viewDate, timings, inputs -> {
+	  final var trajectories = timings.time(Phase.simulation, () -> ScenarioTree.estimateWorkflowTrajectories(
+		  viewDate,
+		  inputs.actualBacklog,
+		  inputs.nextKnownSlas,
+		  StrategyByWorkflow.from(workflow).stepEstimator,
+		  inputs.transcendentals,
+		  variants
+	  ));
+	  trajectories.values().forEach(steps -> timings.addSteps(steps.length()));
+	  return trajectories;
+	}, trajectories -> trajectories.get(ScenarioTree.BASELINE));
+  }
+
+  /**
+   * Same as {@link #execute(Workflow, Instant, ProjectionTimings)} but the SLAs of the inputs are mapped into the specified deadline
+   * buckets before the simulation, which bounds the size of the queues when there are many SLAs.
+   * @param slaBreakdown breaks down the actual backlog, to weight the de-aggregation of the buckets, and the bucketed queues.
+   * @see SlaBuckets
+   */
+  public SlaBuckets.BucketedTrajectory executeBucketed(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final SlaBuckets slaBuckets,
+	  final SlaBreakdown slaBreakdown,
+	  final ProjectionTimings timings
+  ) {
+	return instrumented(workflow, viewDate, timings, inputs -> {
+	  final var weights = SlaBuckets.weightsOf(inputs.actualBacklog, workflow.stages(), slaBreakdown);
+	  final var transcendentals = inputs.transcendentals;
+	  final var steps = timings.time(Phase.simulation, () -> estimateWorkflowTrajectory(
+		  viewDate,
+		  slaBuckets.bucket(inputs.actualBacklog),
+		  slaBuckets.bucket(inputs.nextKnownSlas),
+		  StrategyByWorkflow.from(workflow).stepEstimator,
+		  new StepTranscendentalInvariants(
+			  transcendentals.allStages(),
+			  transcendentals.processingStages(),
+			  slaBuckets.bucket(transcendentals.upstreamThroughputTrajectory()),
+			  transcendentals.staffingPlan(),
+			  transcendentals.processingOrderCriteria(),
+			  transcendentals.backlogBoundsDecider(),
+			  transcendentals.branchesParallelism()
+		  )
+	  ));
+	  timings.addSteps(steps.length());
+	  return new SlaBuckets.BucketedTrajectory(steps, slaBuckets.deaggregating(slaBreakdown, weights));
+	}, SlaBuckets.BucketedTrajectory::steps);
+  }
+
+  /**
+   * Estimates the distribution of the backlog trajectory of the specified workflow by sampling scenarios around its exact trajectory.
+   */
+  public ProbabilisticTrajectory executeProbabilistic(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final MonteCarloProjector.Settings settings,
+	  final ProjectionTimings timings
+  ) {
+	// the scenarios are sampled within the instrumented execution, given they are what most of its time is spent on
+	return instrumented(workflow, viewDate, timings, inputs -> {
+	  final var baselineSteps = exactSteps(workflow, viewDate, inputs, timings);
+	  return P.p(
+		  baselineSteps,
+		  timings.time(Phase.simulation, () -> new MonteCarloProjector(settings).project(workflow.stages(), baselineSteps))
+	  );
+	}, P2::_1)._2();
+  }
+
+  /**
+   * Same as {@link #execute(Workflow, Instant, ProjectionTimings)} but the horizon is split in segments that are simulated in parallel.
+   * @see PararealEstimator
+   */
+  public PararealEstimator.PararealTrajectory executeParareal(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final PararealEstimator.Settings settings,
+	  final ProjectionTimings timings
+  ) {
+	return instrumented(workflow, viewDate, timings, inputs -> {
+	  final var trajectory = timings.time(Phase.simulation, () -> PararealEstimator.estimateWorkflowTrajectory(
+		  viewDate,
+		  inputs.actualBacklog,
+		  inputs.nextKnownSlas,
+		  StrategyByWorkflow.from(workflow).stepEstimator,
+		  inputs.transcendentals,
+		  settings
+	  ));
+	  timings.addSteps(trajectory.steps().length());
+	  return trajectory;
+	}, PararealEstimator.PararealTrajectory::steps);
+  }
+
+  /**
+   * Fetches the inputs of a projection of the specified workflow and runs it, instrumented like every projection: timed and recorded by
+   * the {@link ProjectionMetrics}, spanned by the {@link ProjectionEvents}, and with the inputs fetching added to the timings.
+   * @param projection projects the trajectory from the fetched inputs.
+   * @param stepsOf gives the steps of the projected trajectory to record.
+   */
+  private <T> T instrumented(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final ProjectionTimings timings,
+	  final Function<Inputs, T> projection,
+	  final Function<T, List<WorkflowTrajectoryStep>> stepsOf
+  ) {
+	final var projectionEvent = ProjectionEvents.start(workflow, viewDate);
+	final var result = projectionMetrics.timeExecution(workflow, () -> {
+	  final var inputs = timings.time(Phase.inputs, () -> fetchInputs(workflow, viewDate));
+	  final var projected = projectionMetrics.timeEstimation(workflow, () -> projection.apply(inputs));
+	  projectionMetrics.recordTrajectory(workflow, stepsOf.apply(projected));
+	  return projected;
+	});
+	ProjectionEvents.finish(projectionEvent, workflow, viewDate, stepsOf.apply(result).length());
+	return result;
+  }
+
+  /**
+   * The exact trajectory of the specified workflow, projected from the fetched inputs.
+   */
+  private List<WorkflowTrajectoryStep> exactSteps(
+	  final Workflow workflow,
+	  final Instant viewDate,
+	  final Inputs inputs,
+	  final ProjectionTimings timings
+  ) {
 	return estimateWorkflowTrajectory(
 		viewDate,
-		actualBacklog,
-		nextKnownSlas,
-		strategy.stepEstimator,
-		stepTranscendentalsInvariants
+		inputs.actualBacklog,
+		inputs.nextKnownSlas,
+		StrategyByWorkflow.from(workflow).stepEstimator,
+		inputs.transcendentals,
+		StepCoalescing.exact(),
+		timings
+	).steps();
+  }
+
+  private record Inputs(WorkflowBacklog actualBacklog, Stream<Sla> nextKnownSlas, StepTranscendentalInvariants transcendentals) {}
+
+  private Inputs fetchInputs(final Workflow workflow, final Instant viewDate) {
+	final var actualBacklog = projectionMetrics.timeSupplier(
+		Input.actualBacklog,
+		() -> actualBacklogSupplier.apply(workflow, viewDate)
+	);
+	// the supplier may give a lazy stream, whose cost is paid when it is consumed, so it is collected inside the timer
+	final var nextKnownSlas = projectionMetrics.timeSupplier(
+		Input.nextKnownSlas,
+		() -> nextKnownSlasSupplier.apply(workflow, viewDate).toList()
+	).stream();
+	final var transcendentals = new StepTranscendentalInvariants(
+		workflow.stages(),
+		workflow.processingStages(),
+		projectionMetrics.timeSupplier(
+			Input.upstreamThroughputTrajectory,
+			upstreamThroughputTrajectorySupplier::get
+		),
+		projectionMetrics.timeSupplier(
+			Input.staffingPlan,
+			() -> staffingPlanGetter.get(viewDate, viewDate.plus(SCOPE_IN_HOURS, ChronoUnit.HOURS), workflow.processingStages())
+		),
+		projectionMetrics.instrument(projectionMetrics.timeSupplier(
+			Input.processingOrderCriteria,
+			() -> processingStrategySupplier.apply(workflow, viewDate)
+		)),
+		projectionMetrics.timeSupplier(
+			Input.backlogBoundsDecider,
+			() -> backlogBoundsDeciderSupplier.apply(workflow, viewDate)
+		),
+		branchesParallelism
 	);
+	return new Inputs(actualBacklog, nextKnownSlas, transcendentals);
   }
 
   interface StaffingPlanGetter {
@@ -62,11 +312,11 @@ public class BacklogProjectionUseCase {
   }
 
   @RequiredArgsConstructor
-  private enum StrategyByWorkflow {
+  enum StrategyByWorkflow {
 	inbound(WorkflowTrajectoryStepEstimators::estimateWavelessStep),
 	outbound(estimators -> estimators.estimateWavefullStep(Stage.waving));
 
-	private final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator;
+	final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator;
 
 	static StrategyByWorkflow from(final Workflow workflow) {
 	  return StrategyByWorkflow.valueOf(workflow.name());
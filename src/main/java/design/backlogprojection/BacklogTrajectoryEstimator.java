@@ -1,5 +1,6 @@
 package design.backlogprojection;
 
+import design.backlogprojection.ProjectionTimings.Phase;
 import design.global.ImmutableEnumMap;
 import design.global.Workflow.Stage;
 
@@ -10,6 +11,7 @@ import fj.data.TreeMap;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -62,6 +64,21 @@ public class BacklogTrajectoryEstimator {
 	 * Calculates the integral of the throughput trajectory corresponding to the specified {@link Stage} on the specified interval.
 	 */
 	double integrateThroughputOf(Stage stage, Instant from, Instant to);
+
+	/**
+	 * Calculates the integrals of the throughput trajectory corresponding to the specified {@link Stage} on each of the intervals between
+	 * consecutive elements of the specified boundaries. The element {@code i} of the result should be equal to
+	 * {@code integrateThroughputOf(stage, boundaries[i], boundaries[i + 1])}.
+	 * <p>Implementations backed by sorted points should override this method with a single sweep.
+	 * @param boundaries the intervals' boundaries, sorted in ascending order.
+	 */
+	default double[] integrateThroughputsOf(Stage stage, Instant[] boundaries) {
+	  final var integrals = new double[Math.max(0, boundaries.length - 1)];
+	  for (var i = 0; i < integrals.length; ++i) {
+		integrals[i] = integrateThroughputOf(stage, boundaries[i], boundaries[i + 1]);
+	  }
+	  return integrals;
+	}
   }
 
   /**
@@ -72,6 +89,20 @@ public class BacklogTrajectoryEstimator {
 	 * Calculates the definite integral of this vectorial trajectory on the specified interval.
 	 */
 	Queue integral(Instant from, Instant to);
+
+	/**
+	 * Calculates the definite integrals of this vectorial trajectory on each of the intervals between consecutive elements of the specified
+	 * boundaries. The element {@code i} of the result should be equal to {@code integral(boundaries[i], boundaries[i + 1])}.
+	 * <p>Implementations backed by sorted points should override this method with a single sweep.
+	 * @param boundaries the intervals' boundaries, sorted in ascending order.
+	 */
+	default Queue[] integrals(Instant[] boundaries) {
+	  final var integrals = new Queue[Math.max(0, boundaries.length - 1)];
+	  for (var i = 0; i < integrals.length; ++i) {
+		integrals[i] = integral(boundaries[i], boundaries[i + 1]);
+	  }
+	  return integrals;
+	}
   }
 
   /**
@@ -97,7 +128,30 @@ public class BacklogTrajectoryEstimator {
 
 	Stream<Instant> getInflectionPointsBetween(Instant from, Instant to);
 
+	/**
+	 * Gives a {@link StepDecider} that decides, for every stage of the step whose interval is {@code (start,end)}, the same as
+	 * {@link #decide} would.
+	 * <p>The estimator calls this method once per step and then asks the returned decider for each stage, so the implementations can
+	 * override it to do the per-step setup (like walking {@code nextSlasByDeadline}) once and share it between the stages. The default
+	 * implementation just delegates to {@link #decide}.
+	 */
+	default StepDecider beginStep(Instant start, Instant end, TreeMap<Instant, List<Sla>> nextSlasByDeadline) {
+	  return (stage, initialQueue, toProcessQuantity) -> decide(stage, initialQueue, toProcessQuantity, start, end, nextSlasByDeadline);
+	}
+
 	record SplitQueue(Queue remaining, ImmutableEnumMap<Stage, Queue> processed) {}
+
+	/**
+	 * The decisions of a {@link ProcessingOrderCriteria} during a single step. Note that, when the branches of stages are estimated
+	 * concurrently (see {@link BranchesParallelism}), the {@link #decide} method is called concurrently for different stages.
+	 */
+	@FunctionalInterface
+	interface StepDecider {
+	  /**
+	   * Same as {@link ProcessingOrderCriteria#decide} for the step this decider was created for.
+	   */
+	  SplitQueue decide(Stage stage, Queue initialQueue, long toProcessQuantity);
+	}
   }
 
   public interface BacklogBoundsDecider {
@@ -149,9 +203,16 @@ public class BacklogTrajectoryEstimator {
 	  UpstreamThroughputTrajectory upstreamThroughputTrajectory,
 	  StaffingPlan staffingPlan,
 	  ProcessingOrderCriteria processingOrderCriteria,
-	  BacklogBoundsDecider backlogBoundsDecider
+	  BacklogBoundsDecider backlogBoundsDecider,
+	  BranchesParallelism branchesParallelism
   ) {}
 
+  /**
+   * A trajectory of a workflow's backlog whose steps were coalesced by a {@link StepCoalescing}.
+   * @param errorBound the length of the longest step that absorbed inflection points. Zero if the trajectory is exact.
+   */
+  public record CoalescedTrajectory(List<WorkflowTrajectoryStep> steps, Duration errorBound) {}
+
   /**
    * Creates a trajectory of a workflow's backlog based on the specified context.
    */
@@ -162,8 +223,112 @@ public class BacklogTrajectoryEstimator {
 	  final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator,
 	  final StepTranscendentalInvariants transcendentals
   ) {
+	return estimateWorkflowTrajectory(
+		startingDate,
+		startingBacklog,
+		nextKnownSlas,
+		stepEstimator,
+		transcendentals,
+		StepCoalescing.exact(),
+		ProjectionTimings.NONE
+	).steps();
+  }
+
+  /**
+   * Creates a trajectory of a workflow's backlog based on the specified context, whose steps boundaries are a subset of the inflection
+   * points chosen by the specified {@link StepCoalescing}.
+   * <p>The time spent in each phase is added to the specified {@link ProjectionTimings}.
+   */
+  static CoalescedTrajectory estimateWorkflowTrajectory(
+	  final Instant startingDate,
+	  final WorkflowBacklog startingBacklog,
+	  final Stream<Sla> nextKnownSlas,
+	  final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator,
+	  final StepTranscendentalInvariants transcendentals,
+	  final StepCoalescing stepCoalescing,
+	  final ProjectionTimings timings
+  ) {
+	final var nextSlasByDeadline = timings.time(Phase.inflectionPoints, () -> groupNextSlasByDeadline(startingDate, nextKnownSlas));
+	final var boundaries = timings.time(Phase.inflectionPoints, () -> stepCoalescing.coalesce(
+		startingDate,
+		calcInflectionPoints(startingDate, nextSlasByDeadline, transcendentals),
+		requiredInflectionPoints(startingDate, nextSlasByDeadline, transcendentals)
+	));
+	final var steps = timings.time(
+		Phase.simulation,
+		() -> simulateSteps(startingDate, startingBacklog, nextSlasByDeadline, boundaries.stepEndingDates(), stepEstimator, transcendentals)
+	);
+	timings.addSteps(steps.length());
+	return new CoalescedTrajectory(steps, boundaries.errorBound());
+  }
+
+  /**
+   * Groups the SLAs whose deadline is after the specified starting date by deadline.
+   */
+  static TreeMap<Instant, List<Sla>> groupNextSlasByDeadline(final Instant startingDate, final Stream<Sla> nextKnownSlas) {
 	final var nextSlas = nextKnownSlas.collect(Collectors.toSet());
-	final var nextSlasByDeadline = groupSlasByDeadline(nextSlas).splitLookup(startingDate)._3();
+	return groupSlasByDeadline(nextSlas).splitLookup(startingDate)._3();
+  }
+
+  /**
+   * Calculates the instants, sorted and without repetitions, at which the inputs of the trajectory estimation may change. The last one is
+   * the last deadline. Empty if there are no SLAs.
+   */
+  static List<Instant> calcInflectionPoints(
+	  final Instant startingDate,
+	  final TreeMap<Instant, List<Sla>> nextSlasByDeadline,
+	  final StepTranscendentalInvariants transcendentals
+  ) {
+	if (nextSlasByDeadline.isEmpty()) {
+	  return List.nil();
+	} else {
+	  final var lastDeadline = nextSlasByDeadline.maxKey().some();
+	  return List.arrayList(
+		  Stream.concat(
+			  transcendentals.processingOrderCriteria.getInflectionPointsBetween(startingDate, lastDeadline),
+			  Stream.concat(
+				  nextSlasByDeadline.keys().toCollection().stream(),
+				  transcendentals.backlogBoundsDecider.getInflectionPointsBetween(startingDate, lastDeadline)
+			  )
+		  ).sorted().distinct().toArray(Instant[]::new)
+	  );
+	}
+  }
+
+  /**
+   * Tells which of the inflection points calculated by {@link #calcInflectionPoints} a {@link StepCoalescing} should keep: the SLA
+   * deadlines, and the inflection points of the {@link ProcessingOrderCriteria}, which no step may contain (see
+   * {@link ProcessingOrderCriteria#decide}).
+   */
+  static Predicate<Instant> requiredInflectionPoints(
+	  final Instant startingDate,
+	  final TreeMap<Instant, List<Sla>> nextSlasByDeadline,
+	  final StepTranscendentalInvariants transcendentals
+  ) {
+	if (nextSlasByDeadline.isEmpty()) {
+	  return nextSlasByDeadline::contains;
+	} else {
+	  final var criteriaInflectionPoints = transcendentals.processingOrderCriteria
+		  .getInflectionPointsBetween(startingDate, nextSlasByDeadline.maxKey().some())
+		  .collect(Collectors.toSet());
+	  return instant -> nextSlasByDeadline.contains(instant) || criteriaInflectionPoints.contains(instant);
+	}
+  }
+
+  /**
+   * Simulates the steps of a trajectory of a workflow's backlog, one for each of the specified step ending dates.
+   * @param stepEndingDates the ending dates of the steps, sorted. It is assumed that inputs don't change during the time intervals
+   * 	between them.
+   */
+  static List<WorkflowTrajectoryStep> simulateSteps(
+	  final Instant startingDate,
+	  final WorkflowBacklog startingBacklog,
+	  final TreeMap<Instant, List<Sla>> nextSlasByDeadline,
+	  final List<Instant> stepEndingDates,
+	  final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator,
+	  final StepTranscendentalInvariants transcendentals
+  ) {
+	final var stepInputs = StepInputs.prepare(startingDate, stepEndingDates, nextSlasByDeadline, transcendentals);
 
 	// The java language does not support local functions so a local class with a single method is used instead.
 	class FollowingStepsEstimator {
@@ -177,6 +342,7 @@ public class BacklogTrajectoryEstimator {
 	   */
 	  final List<WorkflowTrajectoryStep> estimate(
 		  final List<WorkflowTrajectoryStep> alreadyCalculatedSteps,
+		  final int stepIndex,
 		  final Instant stepStartingInstant,
 		  final List<Instant> remainingInflectionPoints
 	  ) {
@@ -185,16 +351,31 @@ public class BacklogTrajectoryEstimator {
 		} else {
 		  final WorkflowBacklog stepStartingBacklog = stage -> alreadyCalculatedSteps.head()
 			  .stagesStep.get(stage).finalQueue;
+		  // the steps share the SLAs map until a deadline is reached
+		  final var previousNextSlasByDeadline = alreadyCalculatedSteps.head().nextSlasByDeadline;
+		  final var stepNextSlasByDeadline = previousNextSlasByDeadline.minKey().forall(stepStartingInstant::isBefore)
+			  ? previousNextSlasByDeadline
+			  : nextSlasByDeadline.splitLookup(stepStartingInstant)._3();
 
-		  final var nextWorkflowStep = stepEstimator.apply(new WorkflowTrajectoryStepEstimators(
+		  final var stepEstimators = new WorkflowTrajectoryStepEstimators(
 			  stepStartingInstant,
 			  remainingInflectionPoints.head(),
 			  stepStartingBacklog,
-			  nextSlasByDeadline.splitLookup(stepStartingInstant)._3(),
-			  transcendentals
-		  ));
+			  stepNextSlasByDeadline,
+			  transcendentals,
+			  stepInputs,
+			  stepIndex
+		  );
+		  // fast-forward the drained tails of the trajectory, where nothing moves
+		  final var nextWorkflowStep = ProjectionEvents.recordStep(
+			  () -> stepEstimators.isQuiescent()
+				  ? stepEstimators.estimateQuiescentStep(alreadyCalculatedSteps.head())
+				  : stepEstimator.apply(stepEstimators),
+			  transcendentals.allStages()
+		  );
 		  return estimate(
 			  List.cons(nextWorkflowStep, alreadyCalculatedSteps),
+			  stepIndex + 1,
 			  remainingInflectionPoints.head(),
 			  remainingInflectionPoints.tail()
 		  );
@@ -202,31 +383,27 @@ public class BacklogTrajectoryEstimator {
 	  }
 	}
 
-	if (nextSlasByDeadline.isEmpty()) {
+	if (stepEndingDates.isEmpty()) {
 	  return List.nil();
 	} else {
-	  final var lastDeadline = nextSlasByDeadline.maxKey().some();
-	  var inflectionPoints = List.arrayList(
-		  Stream.concat(
-			  transcendentals.processingOrderCriteria.getInflectionPointsBetween(startingDate, lastDeadline),
-			  Stream.concat(
-				  nextSlasByDeadline.keys().toCollection().stream(),
-				  transcendentals.backlogBoundsDecider.getInflectionPointsBetween(startingDate, lastDeadline)
-			  )
-		  ).sorted().distinct().toArray(Instant[]::new)
-	  );
-
-	  final var firstWorkflowStep = stepEstimator.apply(new WorkflowTrajectoryStepEstimators(
+	  final var firstStepEstimators = new WorkflowTrajectoryStepEstimators(
 		  startingDate,
-		  inflectionPoints.head(),
+		  stepEndingDates.head(),
 		  startingBacklog,
 		  nextSlasByDeadline,
-		  transcendentals
-	  ));
+		  transcendentals,
+		  stepInputs,
+		  0
+	  );
+	  final var firstWorkflowStep = ProjectionEvents.recordStep(
+		  () -> stepEstimator.apply(firstStepEstimators),
+		  transcendentals.allStages()
+	  );
 	  return new FollowingStepsEstimator().estimate(
 		  List.cons(firstWorkflowStep, List.nil()),
-		  inflectionPoints.head(),
-		  inflectionPoints.tail()
+		  1,
+		  stepEndingDates.head(),
+		  stepEndingDates.tail()
 	  ).reverse();
 	}
   }
@@ -21,10 +21,11 @@ import java.util.stream.Stream;
  * based. Specifically, calculates the minimum headcount necessary to maintain the desired buffer.
  */
 @RequiredArgsConstructor
-class BacklogTrajectoryOverseer {
+public class BacklogTrajectoryOverseer {
   private final Workflow workflow;
   private final StaffingPlan staffingPlan;
   private final BacklogBoundsDecider backlogBoundsDecider;
+  private final ProjectionMetrics projectionMetrics;
 
   /**
    * Specifies what the {@link BacklogTrajectoryOverseer} needs to know about the downstream throughput trajectory.
@@ -52,13 +53,13 @@ class BacklogTrajectoryOverseer {
 	Duration getDesiredBufferSize(Stage stage, Instant when, TreeMap<Instant, List<Sla>> nextSlasByDeadline);
   }
 
-  record WorkflowTrajectoryOversawStep(
+  public record WorkflowTrajectoryOversawStep(
 	  Instant startingDate,
 	  Instant endingDate,
 	  ImmutableEnumMap<Stage, StageTrajectoryOversawStep> stagesStep
   ) {}
 
-  record StageTrajectoryOversawStep(StageTrajectoryStep rawStep, long optimumHeadcount) {}
+  public record StageTrajectoryOversawStep(StageTrajectoryStep rawStep, long optimumHeadcount) {}
 
   /**
    * Given a {@link DownstreamThroughputTrajectory} and an estimated backlog trajectory (calculated by the {@link
@@ -71,7 +72,30 @@ class BacklogTrajectoryOverseer {
 	  final DownstreamThroughputTrajectory downstreamThroughputTrajectory,
 	  final SlaQueue initialDownstreamQueue
   ) {
-	final var finalStages = workflow.finalStages;
+	return oversee(workflowTrajectorySteps, downstreamThroughputTrajectory, initialDownstreamQueue, ProjectionTimings.NONE);
+  }
+
+  /**
+   * Same as {@link #oversee(List, DownstreamThroughputTrajectory, SlaQueue)} but the time spent is added to the specified
+   * {@link ProjectionTimings}.
+   */
+  public List<WorkflowTrajectoryOversawStep> oversee(
+	  final List<WorkflowTrajectoryStep> workflowTrajectorySteps,
+	  final DownstreamThroughputTrajectory downstreamThroughputTrajectory,
+	  final SlaQueue initialDownstreamQueue,
+	  final ProjectionTimings timings
+  ) {
+	return projectionMetrics.timeOversight(() -> timings.time(
+		ProjectionTimings.Phase.oversight,
+		() -> overseeSteps(workflowTrajectorySteps, downstreamThroughputTrajectory)
+	));
+  }
+
+  private List<WorkflowTrajectoryOversawStep> overseeSteps(
+	  final List<WorkflowTrajectoryStep> workflowTrajectorySteps,
+	  final DownstreamThroughputTrajectory downstreamThroughputTrajectory
+  ) {
+	final var finalStages = workflow.finalStages();
 
 	return workflowTrajectorySteps.map(workflowTrajectoryStep -> {
 
@@ -107,8 +131,8 @@ class BacklogTrajectoryOverseer {
 	  final ImmutableEnumMap<Stage, StageTrajectoryOversawStep> a,
 	  final ImmutableEnumMap<Stage, StageTrajectoryOversawStep> b
   ) {
-	return Stream.concat(a.toStream(workflow.stages), b.toStream(workflow.stages))
-		.collect(ImmutableEnumMap.buildStreamBinaryCollector(workflow.stages, (x, y) -> {
+	return Stream.concat(a.toStream(workflow.stages()), b.toStream(workflow.stages()))
+		.collect(ImmutableEnumMap.buildStreamBinaryCollector(workflow.stages(), (x, y) -> {
 		  assert x.rawStep == y.rawStep;
 		  return new StageTrajectoryOversawStep(x.rawStep, x.optimumHeadcount + y.optimumHeadcount);
 		}));
@@ -0,0 +1,20 @@
+package design.backlogprojection;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tells whether, and where, the independent branches of stages that follow a fork of the workflow (like {@code packingDirect} and
+ * {@code walling → packingWalled} after {@code picking}) are estimated concurrently during a step.
+ * <p>Forking is worth only when the {@link BacklogTrajectoryEstimator.ProcessingOrderCriteria#decide} calls of the branches are expensive,
+ * which depends on the size of the queues. So the branches are estimated concurrently only if at least two of them start the step with
+ * a queue (the initial plus the incoming) whose total is not less than the threshold.
+ * @param pool the pool where the branches are estimated. Null to estimate them sequentially.
+ * @param queueSizeThreshold the minimum size of the queue of a branch's first stage for the branch to be considered heavy.
+ */
+record BranchesParallelism(ForkJoinPool pool, long queueSizeThreshold) {
+  static final BranchesParallelism SEQUENTIAL = new BranchesParallelism(null, Long.MAX_VALUE);
+
+  boolean isEnabled() {
+	return pool != null;
+  }
+}
@@ -0,0 +1,29 @@
+package design.backlogprojection;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Provides the {@link BranchesParallelism} used by the {@link BacklogProjectionUseCase}. The concurrent estimation of the branches is
+ * opt-in because it pays only when the queues are large enough for the processing order decisions to dominate the forking cost.
+ */
+@Configuration
+class BranchesParallelismConfiguration {
+
+  /**
+   * @param enabled whether the independent branches of stages are estimated concurrently in the common fork-join pool.
+   * @param queueSizeThreshold the minimum size of the queue of a branch's first stage for the branch to be considered heavy.
+   */
+  @Bean
+  BranchesParallelism branchesParallelism(
+	  @Value("${backlog-projection.branches-parallelism.enabled:false}") final boolean enabled,
+	  @Value("${backlog-projection.branches-parallelism.queue-size-threshold:10000}") final long queueSizeThreshold
+  ) {
+	return enabled
+		? new BranchesParallelism(ForkJoinPool.commonPool(), queueSizeThreshold)
+		: BranchesParallelism.SEQUENTIAL;
+  }
+}
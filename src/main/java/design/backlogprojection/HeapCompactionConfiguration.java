@@ -0,0 +1,33 @@
+package design.backlogprojection;
+
+import design.backlogprojection.processingcriterias.BatchDiscriminatedPoc;
+import design.backlogprojection.processingcriterias.HeapCompactionPolicy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the {@link BatchDiscriminatedPoc} for the suppliers of the {@link BacklogTrajectoryEstimator.ProcessingOrderCriteria}, with the
+ * {@link HeapCompactionPolicy} of the configuration and the ordering error of its compactions recorded by the {@link ProjectionMetrics}.
+ * The defaults never merge heaps.
+ */
+@Configuration
+class HeapCompactionConfiguration {
+
+  /**
+   * @param tolerance the maximum total variation distance of the SLA compositions of two adjacent heaps for them to be merged.
+   * @param maxHeaps the maximum number of heaps of a FIFO queue.
+   */
+  @Bean
+  HeapCompactionPolicy heapCompactionPolicy(
+	  @Value("${backlog-projection.heap-compaction.tolerance:0}") final double tolerance,
+	  @Value("${backlog-projection.heap-compaction.max-heaps:2147483647}") final int maxHeaps
+  ) {
+	return new HeapCompactionPolicy(tolerance, maxHeaps);
+  }
+
+  @Bean
+  BatchDiscriminatedPoc batchDiscriminatedPoc(final HeapCompactionPolicy heapCompactionPolicy, final ProjectionMetrics projectionMetrics) {
+	return new BatchDiscriminatedPoc(heapCompactionPolicy, projectionMetrics.compactionListener());
+  }
+}
@@ -0,0 +1,130 @@
+package design.backlogprojection;
+
+import design.backlogprojection.ProjectionTimings.Phase;
+
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Instant;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.BacklogTrajectoryEstimator.*;
+
+/**
+ * A trajectory of a workflow's backlog whose steps are simulated on demand.
+ * <p>The steps boundaries are calculated when the instance is created, but no step is simulated until a caller asks for the steps until a
+ * horizon. Then only the steps needed to cover said horizon are simulated, and the simulation resumes from the last simulated step when a
+ * later horizon is requested. So the callers that only need the next few hours don't pay for the simulation until the last SLA deadline.
+ * <p>Instances are thread-safe.
+ */
+public final class LazyTrajectory {
+  private final TreeMap<Instant, List<Sla>> nextSlasByDeadline;
+  private final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator;
+  private final StepTranscendentalInvariants transcendentals;
+  private final ProjectionTimings timings;
+
+  /** The steps simulated so far, sorted. */
+  private List<WorkflowTrajectoryStep> simulatedSteps = List.nil();
+  /** The ending dates of the steps not simulated yet, sorted. */
+  private List<Instant> pendingStepEndingDates;
+  /** The ending date of the last simulated step, or the starting date if none was. */
+  private Instant coveredUntil;
+  /** The backlog at {@link #coveredUntil}. */
+  private WorkflowBacklog coveredUntilBacklog;
+
+  private LazyTrajectory(
+	  final Instant startingDate,
+	  final WorkflowBacklog startingBacklog,
+	  final TreeMap<Instant, List<Sla>> nextSlasByDeadline,
+	  final List<Instant> stepEndingDates,
+	  final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator,
+	  final StepTranscendentalInvariants transcendentals,
+	  final ProjectionTimings timings
+  ) {
+	this.nextSlasByDeadline = nextSlasByDeadline;
+	this.stepEstimator = stepEstimator;
+	this.transcendentals = transcendentals;
+	this.timings = timings;
+	this.pendingStepEndingDates = stepEndingDates;
+	this.coveredUntil = startingDate;
+	this.coveredUntilBacklog = startingBacklog;
+  }
+
+  /**
+   * Creates a lazy trajectory of a workflow's backlog based on the specified context. Only the steps boundaries are calculated here.
+   * <p>The time spent simulating the steps, whenever it happens, is added to the specified {@link ProjectionTimings}.
+   */
+  static LazyTrajectory of(
+	  final Instant startingDate,
+	  final WorkflowBacklog startingBacklog,
+	  final Stream<Sla> nextKnownSlas,
+	  final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator,
+	  final StepTranscendentalInvariants transcendentals,
+	  final ProjectionTimings timings
+  ) {
+	final var nextSlasByDeadline = timings.time(Phase.inflectionPoints, () -> groupNextSlasByDeadline(startingDate, nextKnownSlas));
+	final var stepEndingDates = timings.time(
+		Phase.inflectionPoints,
+		() -> calcInflectionPoints(startingDate, nextSlasByDeadline, transcendentals)
+	);
+	return new LazyTrajectory(
+		startingDate,
+		startingBacklog,
+		nextSlasByDeadline,
+		stepEndingDates,
+		stepEstimator,
+		transcendentals,
+		timings
+	);
+  }
+
+  /**
+   * Gives the steps that start before the specified horizon, simulating the ones that weren't yet. The last step may end after it.
+   */
+  public synchronized List<WorkflowTrajectoryStep> stepsUntil(final Instant horizon) {
+	if (coveredUntil.isBefore(horizon) && pendingStepEndingDates.isNotEmpty()) {
+	  // the pending steps that start before the horizon: those that end before it and the one that contains it
+	  final var endingBeforeHorizon = pendingStepEndingDates.takeWhile(stepEndingDate -> stepEndingDate.isBefore(horizon));
+	  final var chunkLength = Math.min(endingBeforeHorizon.length() + 1, pendingStepEndingDates.length());
+	  final var chunkStepEndingDates = pendingStepEndingDates.take(chunkLength);
+
+	  final var chunkStartingDate = coveredUntil;
+	  final var chunkStartingBacklog = coveredUntilBacklog;
+	  // the first step of the whole trajectory receives all the SLAs, the following ones only those whose deadline is after their start
+	  final var chunkNextSlasByDeadline = simulatedSteps.isEmpty()
+		  ? nextSlasByDeadline
+		  : nextSlasByDeadline.splitLookup(chunkStartingDate)._3();
+	  final var chunkSteps = timings.time(Phase.simulation, () -> simulateSteps(
+		  chunkStartingDate,
+		  chunkStartingBacklog,
+		  chunkNextSlasByDeadline,
+		  chunkStepEndingDates,
+		  stepEstimator,
+		  transcendentals
+	  ));
+	  timings.addSteps(chunkSteps.length());
+
+	  final var lastStep = chunkSteps.last();
+	  simulatedSteps = simulatedSteps.append(chunkSteps);
+	  pendingStepEndingDates = pendingStepEndingDates.drop(chunkLength);
+	  coveredUntil = lastStep.endingDate();
+	  coveredUntilBacklog = stage -> lastStep.stagesStep().get(stage).finalQueue();
+	}
+	return simulatedSteps.takeWhile(step -> step.startingDate().isBefore(horizon));
+  }
+
+  /**
+   * Gives all the steps of the trajectory, until the last SLA deadline, simulating the ones that weren't yet.
+   */
+  public List<WorkflowTrajectoryStep> allSteps() {
+	return stepsUntil(Instant.MAX);
+  }
+
+  /**
+   * Tells whether all the steps of the trajectory were already simulated.
+   */
+  public synchronized boolean isComplete() {
+	return pendingStepEndingDates.isEmpty();
+  }
+}
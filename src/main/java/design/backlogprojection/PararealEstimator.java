@@ -0,0 +1,251 @@
+package design.backlogprojection;
+
+import design.global.Workflow.Stage;
+
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.BacklogTrajectoryEstimator.*;
+
+/**
+ * Estimates the backlog trajectory of a workflow splitting the horizon in segments that are simulated in parallel, in the style of the
+ * parareal algorithm.
+ * <p>A cheap coarse propagator (the exact step estimator applied on steps coalesced to the configured length) predicts the backlog at the
+ * start of each segment. Then the segments are simulated exactly, in parallel, each from its predicted starting backlog. A segment is
+ * settled when it starts from the exact ending backlog of the previous settled one, or from a backlog within the tolerance of it. The
+ * exact ending backlog of the last settled segment corrects the starting backlog of the following one, and the coarse propagator carries
+ * the correction to the rest. The process is repeated until all the segments are settled.
+ * <p>Only a window of as many segments as the pool's parallelism is simulated exactly in each iteration, given the segments after it will
+ * most likely be corrected before they are settled. So the exact simulation work is proportional to the number of segments times the
+ * window, instead of to the square of the number of segments.
+ * <p>Each iteration settles at least the first unsettled segment, and with a non-negative tolerance also the following ones that turn out
+ * to start close enough to the ending backlog of the previous one. The segments settled within the tolerance are simulated once more, at
+ * the end, from the exact ending backlog of the previous segment, so that the joins between segments are as continuous as a single
+ * parallel pass allows. If the tolerance is negative, the segments are settled only when their starting backlog is equal to the ending
+ * backlog of the previous one, and the resulting trajectory is the same that the sequential estimation gives.
+ */
+public class PararealEstimator {
+  private PararealEstimator() {}
+
+  /**
+   * @param segmentLength the approximate length of the segments simulated in parallel.
+   * @param coarseStepLength the minimum length of the steps of the coarse propagator.
+   * @param tolerance the maximum difference between the totals of the queues of a stage at the start of a segment and at the end of the
+   * 	previous one for the segment to be settled. Negative to iterate until the result is exact.
+   * @param maxIterationsCount the maximum number of iterations.
+   * @param pool the pool where the segments are simulated.
+   */
+  public record Settings(Duration segmentLength, Duration coarseStepLength, long tolerance, int maxIterationsCount, ForkJoinPool pool) {}
+
+  /**
+   * @param iterationsCount the number of parallel simulations of the segments that were needed, without the final one.
+   * @param exact whether the trajectory is the same that the sequential estimation gives.
+   */
+  public record PararealTrajectory(List<WorkflowTrajectoryStep> steps, int iterationsCount, boolean exact) {}
+
+  private record Segment(Instant startingDate, List<Instant> stepEndingDates, TreeMap<Instant, List<Sla>> nextSlasByDeadline) {}
+
+  static PararealTrajectory estimateWorkflowTrajectory(
+	  final Instant startingDate,
+	  final WorkflowBacklog startingBacklog,
+	  final Stream<Sla> nextKnownSlas,
+	  final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator,
+	  final StepTranscendentalInvariants transcendentals,
+	  final Settings settings
+  ) {
+	final var nextSlasByDeadline = groupNextSlasByDeadline(startingDate, nextKnownSlas);
+	final var inflectionPoints = calcInflectionPoints(startingDate, nextSlasByDeadline, transcendentals);
+	final var segments = split(startingDate, inflectionPoints, nextSlasByDeadline, settings.segmentLength);
+	final var segmentsCount = segments.length;
+	if (segmentsCount == 0) {
+	  return new PararealTrajectory(List.nil(), 0, true);
+	}
+
+	final var coarseCoalescing = StepCoalescing.mergingStepsShorterThan(settings.coarseStepLength);
+	final var isRequired = requiredInflectionPoints(startingDate, nextSlasByDeadline, transcendentals);
+
+	// The java language does not support local functions so a local class is used instead.
+	class Propagators {
+	  WorkflowBacklog coarse(final int segmentIndex, final WorkflowBacklog segmentStartingBacklog) {
+		final var segment = segments[segmentIndex];
+		final var boundaries = coarseCoalescing.coalesce(
+			segment.startingDate,
+			segment.stepEndingDates,
+			isRequired
+		);
+		return endingBacklogOf(simulateSteps(
+			segment.startingDate,
+			segmentStartingBacklog,
+			segment.nextSlasByDeadline,
+			boundaries.stepEndingDates(),
+			stepEstimator,
+			transcendentals
+		));
+	  }
+
+	  List<WorkflowTrajectoryStep> fine(final int segmentIndex, final WorkflowBacklog segmentStartingBacklog) {
+		final var segment = segments[segmentIndex];
+		return simulateSteps(
+			segment.startingDate,
+			segmentStartingBacklog,
+			segment.nextSlasByDeadline,
+			segment.stepEndingDates,
+			stepEstimator,
+			transcendentals
+		);
+	  }
+	}
+	final var propagators = new Propagators();
+
+	// predict the starting backlog of each segment with the coarse propagator
+	final var startingBacklogs = new WorkflowBacklog[segmentsCount];
+	startingBacklogs[0] = startingBacklog;
+	for (var n = 0; n < segmentsCount - 1; ++n) {
+	  startingBacklogs[n + 1] = propagators.coarse(n, startingBacklogs[n]);
+	}
+
+	@SuppressWarnings("unchecked") final List<WorkflowTrajectoryStep>[] fineSteps = new List[segmentsCount];
+	// the segments settled because their starting backlog was within the tolerance, whose fine steps are recalculated at the end
+	final var approximated = new boolean[segmentsCount];
+	final var window = Math.max(1, settings.pool.getParallelism());
+	final var stages = transcendentals.allStages();
+	var firstUnsettledSegment = 0;
+	var iterationsCount = 0;
+	while (firstUnsettledSegment < segmentsCount && iterationsCount < settings.maxIterationsCount) {
+	  iterationsCount += 1;
+	  final var from = firstUnsettledSegment;
+	  final var to = Math.min(segmentsCount, from + window);
+	  settings.pool.submit(() -> IntStream.range(from, to)
+		  .parallel()
+		  .forEach(n -> fineSteps[n] = propagators.fine(n, startingBacklogs[n]))
+	  ).join();
+	  // the first unsettled segment started from the ending backlog of a settled one, so it is settled now. And so are the following ones
+	  // whose starting backlog is equal, or close enough, to the ending backlog of the previous one.
+	  firstUnsettledSegment += 1;
+	  while (firstUnsettledSegment < to) {
+		final var previousEndingBacklog = endingBacklogOf(fineSteps[firstUnsettledSegment - 1]);
+		if (equal(stages, startingBacklogs[firstUnsettledSegment], previousEndingBacklog)) {
+		  firstUnsettledSegment += 1;
+		} else if (settings.tolerance >= 0
+			&& distance(stages, startingBacklogs[firstUnsettledSegment], previousEndingBacklog) <= settings.tolerance) {
+		  startingBacklogs[firstUnsettledSegment] = previousEndingBacklog;
+		  approximated[firstUnsettledSegment] = true;
+		  firstUnsettledSegment += 1;
+		} else {
+		  break;
+		}
+	  }
+	  final var windowEnd = Math.min(segmentsCount, firstUnsettledSegment + window);
+	  correct(startingBacklogs, fineSteps, firstUnsettledSegment, windowEnd, propagators::coarse);
+	}
+
+	// simulate again the segments settled within the tolerance, from their corrected starting backlog, and the ones that the iterations
+	// limit left unsettled
+	if (firstUnsettledSegment > 0) {
+	  correct(startingBacklogs, fineSteps, firstUnsettledSegment, segmentsCount, propagators::coarse);
+	}
+	final var lastUnsettledSegment = firstUnsettledSegment;
+	settings.pool.submit(() -> IntStream.range(0, segmentsCount)
+		.parallel()
+		.filter(n -> approximated[n] || n >= lastUnsettledSegment)
+		.forEach(n -> fineSteps[n] = propagators.fine(n, startingBacklogs[n]))
+	).join();
+	var exact = firstUnsettledSegment >= segmentsCount;
+	for (var isApproximated : approximated) {
+	  exact = exact && !isApproximated;
+	}
+
+	List<WorkflowTrajectoryStep> steps = List.nil();
+	for (var n = segmentsCount - 1; n >= 0; --n) {
+	  steps = fineSteps[n].append(steps);
+	}
+	return new PararealTrajectory(steps, iterationsCount, exact);
+  }
+
+  /**
+   * Corrects the predicted starting backlogs of the segments in {@code [from, to)}: the first one starts from the exact ending backlog of
+   * the previous segment, and the coarse propagator carries it to the rest.
+   */
+  private static void correct(
+	  final WorkflowBacklog[] startingBacklogs,
+	  final List<WorkflowTrajectoryStep>[] fineSteps,
+	  final int from,
+	  final int to,
+	  final BiFunction<Integer, WorkflowBacklog, WorkflowBacklog> coarsePropagator
+  ) {
+	for (var n = from; n < to; ++n) {
+	  startingBacklogs[n] = n == from
+		  ? endingBacklogOf(fineSteps[n - 1])
+		  : coarsePropagator.apply(n - 1, startingBacklogs[n - 1]);
+	}
+  }
+
+  /**
+   * Splits the specified inflection points in consecutive segments of approximately the specified length. Every segment ends at an
+   * inflection point.
+   */
+  private static Segment[] split(
+	  final Instant startingDate,
+	  final List<Instant> inflectionPoints,
+	  final TreeMap<Instant, List<Sla>> nextSlasByDeadline,
+	  final Duration segmentLength
+  ) {
+	final var segments = new ArrayList<Segment>();
+	var segmentStartingDate = startingDate;
+	var segmentSlas = nextSlasByDeadline;
+	var segmentLimit = startingDate.plus(segmentLength);
+	List<Instant> segmentStepEndingDates = List.nil();
+	for (Instant inflectionPoint : inflectionPoints) {
+	  segmentStepEndingDates = List.cons(inflectionPoint, segmentStepEndingDates);
+	  if (!inflectionPoint.isBefore(segmentLimit)) {
+		segments.add(new Segment(segmentStartingDate, segmentStepEndingDates.reverse(), segmentSlas));
+		segmentStartingDate = inflectionPoint;
+		segmentSlas = nextSlasByDeadline.splitLookup(inflectionPoint)._3();
+		segmentLimit = inflectionPoint.plus(segmentLength);
+		segmentStepEndingDates = List.nil();
+	  }
+	}
+	if (segmentStepEndingDates.isNotEmpty()) {
+	  segments.add(new Segment(segmentStartingDate, segmentStepEndingDates.reverse(), segmentSlas));
+	}
+	return segments.toArray(Segment[]::new);
+  }
+
+  private static WorkflowBacklog endingBacklogOf(final List<WorkflowTrajectoryStep> steps) {
+	final var lastStep = steps.last();
+	return stage -> lastStep.stagesStep().get(stage).finalQueue();
+  }
+
+  /**
+   * Tells whether the queues of both backlogs are equal at each of the specified stages, according to the {@link Queue}'s
+   * {@link Object#equals} method. Queues that don't override it are equal only to themselves.
+   */
+  private static boolean equal(final Stage[] stages, final WorkflowBacklog a, final WorkflowBacklog b) {
+	for (Stage stage : stages) {
+	  if (!a.getQueueAt(stage).equals(b.getQueueAt(stage))) {
+		return false;
+	  }
+	}
+	return true;
+  }
+
+  /**
+   * The maximum, among the specified stages, of the absolute difference between the totals of the queues of both backlogs.
+   */
+  private static long distance(final Stage[] stages, final WorkflowBacklog a, final WorkflowBacklog b) {
+	var max = 0L;
+	for (Stage stage : stages) {
+	  max = Math.max(max, Math.abs(a.getQueueAt(stage).total() - b.getQueueAt(stage).total()));
+	}
+	return max;
+  }
+}
@@ -0,0 +1,179 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timestamp;
+
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Contains the Java Flight Recorder events emitted by the backlog projection, which allow to correlate a slow projection with the step or
+ * stage that caused it, and with the GC and allocation events of the same recording.
+ * <p>The events are created unconditionally but their fields are filled only when {@link Event#shouldCommit()} is true, so the overhead is
+ * negligible when the events are disabled (the JIT eliminates the allocation of events that don't escape).
+ */
+final class ProjectionEvents {
+  private ProjectionEvents() {}
+
+  static final String CATEGORY = "Backlog Projection";
+
+  @Name("design.backlogprojection.ProjectionStarted")
+  @Label("Projection Started")
+  @Category(CATEGORY)
+  static final class ProjectionStarted extends Event {
+	@Label("Workflow")
+	String workflow;
+
+	@Label("View Date")
+	@Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+	long viewDate;
+  }
+
+  @Name("design.backlogprojection.ProjectionFinished")
+  @Label("Projection Finished")
+  @Description("Spans the whole projection, from the inputs fetching to the last simulated step")
+  @Category(CATEGORY)
+  static final class ProjectionFinished extends Event {
+	@Label("Workflow")
+	String workflow;
+
+	@Label("View Date")
+	@Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+	long viewDate;
+
+	@Label("Steps Count")
+	int stepsCount;
+  }
+
+  @Name("design.backlogprojection.TrajectoryStep")
+  @Label("Trajectory Step")
+  @Description("Spans the simulation of a step of a workflow's backlog trajectory. The totals of each stage are in the TrajectoryStageStep"
+	  + " events committed right after it")
+  @Category(CATEGORY)
+  static final class TrajectoryStep extends Event {
+	@Label("Starting Date")
+	@Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+	long startingDate;
+
+	@Label("Ending Date")
+	@Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+	long endingDate;
+
+	@Label("Stages Count")
+	int stagesCount;
+  }
+
+  @Name("design.backlogprojection.TrajectoryStageStep")
+  @Label("Trajectory Stage Step")
+  @Category(CATEGORY)
+  static final class TrajectoryStageStep extends Event {
+	@Label("Stage")
+	String stage;
+
+	@Label("Starting Date")
+	@Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+	long startingDate;
+
+	@Label("Ending Date")
+	@Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+	long endingDate;
+
+	@Label("Initial Total")
+	long initialTotal;
+
+	@Label("Incoming Total")
+	long incomingTotal;
+
+	@Label("Processed Total")
+	long processedTotal;
+
+	@Label("Final Total")
+	long finalTotal;
+
+	@Label("Queue Shortage")
+	long queueShortage;
+  }
+
+  @Name("design.backlogprojection.ProcessingDecision")
+  @Label("Processing Decision")
+  @Description("Spans a call to ProcessingOrderCriteria.decide")
+  @Category(CATEGORY)
+  static final class ProcessingDecision extends Event {
+	@Label("Stage")
+	String stage;
+
+	@Label("Queue Size")
+	long queueSize;
+
+	@Label("To Process Quantity")
+	long toProcessQuantity;
+  }
+
+  /**
+   * Starts a {@link ProjectionFinished} event after committing the corresponding {@link ProjectionStarted} one.
+   * @return the started event, which should be finished with {@link #finish}.
+   */
+  static ProjectionFinished start(final Workflow workflow, final Instant viewDate) {
+	final var started = new ProjectionStarted();
+	if (started.shouldCommit()) {
+	  started.workflow = workflow.name();
+	  started.viewDate = viewDate.toEpochMilli();
+	  started.commit();
+	}
+	final var finished = new ProjectionFinished();
+	finished.begin();
+	return finished;
+  }
+
+  static void finish(final ProjectionFinished finished, final Workflow workflow, final Instant viewDate, final int stepsCount) {
+	finished.end();
+	if (finished.shouldCommit()) {
+	  finished.workflow = workflow.name();
+	  finished.viewDate = viewDate.toEpochMilli();
+	  finished.stepsCount = stepsCount;
+	  finished.commit();
+	}
+  }
+
+  /**
+   * Estimates a step with the specified supplier, committing a {@link TrajectoryStep} event and a {@link TrajectoryStageStep} event for
+   * each of the specified stages. The supplier may simulate the step or calculate it in closed form: the events are the same.
+   */
+  static WorkflowTrajectoryStep recordStep(final Supplier<WorkflowTrajectoryStep> stepEstimation, final Stage[] stages) {
+	final var event = new TrajectoryStep();
+	event.begin();
+	final var step = stepEstimation.get();
+	event.end();
+	if (event.shouldCommit()) {
+	  final var startingDate = step.startingDate().toEpochMilli();
+	  final var endingDate = step.endingDate().toEpochMilli();
+	  event.startingDate = startingDate;
+	  event.endingDate = endingDate;
+	  event.stagesCount = step.stagesStep().size();
+	  event.commit();
+	  for (Stage stage : stages) {
+		final var stageStep = step.stagesStep().get(stage);
+		final var stageEvent = new TrajectoryStageStep();
+		if (stageStep != null && stageEvent.shouldCommit()) {
+		  stageEvent.stage = stage.name();
+		  stageEvent.startingDate = startingDate;
+		  stageEvent.endingDate = endingDate;
+		  stageEvent.initialTotal = stageStep.initialQueue().total();
+		  stageEvent.incomingTotal = stageStep.incomingQueue().total();
+		  stageEvent.processedTotal = stageStep.processedTotal();
+		  stageEvent.finalTotal = stageStep.finalQueue().total();
+		  stageEvent.queueShortage = stageStep.queueShortage();
+		  stageEvent.commit();
+		}
+	  }
+	}
+	return step;
+  }
+}
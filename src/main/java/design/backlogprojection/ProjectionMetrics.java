@@ -0,0 +1,178 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.ProcessingOrderCriteria;
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.backlogprojection.processingcriterias.HeapCompactionPolicy;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The Micrometer instrumentation of the backlog projection pipeline. Tells apart the time spent getting the inputs from the time spent
+ * simulating the trajectory.
+ * <p>All the timers and summaries publish percentile histograms, which are exposed through the actuator endpoints.
+ */
+@Component
+public class ProjectionMetrics {
+  static final String PREFIX = "backlog.projection";
+
+  /**
+   * The inputs of a projection, each obtained from a different supplier.
+   */
+  enum Input {
+	staffingPlan, actualBacklog, nextKnownSlas, processingOrderCriteria, backlogBoundsDecider, upstreamThroughputTrajectory
+  }
+
+  private final MeterRegistry registry;
+  private final QueueFragmentation queueFragmentation;
+  private final Map<Input, Timer> supplierTimers = new EnumMap<>(Input.class);
+  private final Map<Stage, Timer> decideTimers = new EnumMap<>(Stage.class);
+  private final Map<Stage, DistributionSummary> heapsSummaries = new EnumMap<>(Stage.class);
+  private final Map<Stage, DistributionSummary> compactionErrorSummaries = new EnumMap<>(Stage.class);
+  private final Timer oversightTimer;
+
+  /**
+   * @param queueFragmentation gives the heaps count of the final backlogs of the projected trajectories.
+   */
+  public ProjectionMetrics(final MeterRegistry registry, final QueueFragmentation queueFragmentation) {
+	this.registry = registry;
+	this.queueFragmentation = queueFragmentation;
+	for (Input input : Input.values()) {
+	  supplierTimers.put(input, Timer.builder(PREFIX + ".supplier")
+		  .description("Time spent getting an input of the projection")
+		  .tag("input", input.name())
+		  .publishPercentileHistogram()
+		  .register(registry));
+	}
+	for (Stage stage : Stage.values()) {
+	  decideTimers.put(stage, Timer.builder(PREFIX + ".decide")
+		  .description("Time spent by the processing order criteria deciding which units are processed during a step")
+		  .tag("workflow", stage.workflow().name())
+		  .tag("stage", stage.name())
+		  .publishPercentileHistogram()
+		  .register(registry));
+	  heapsSummaries.put(stage, DistributionSummary.builder(PREFIX + ".heaps")
+		  .description("Number of heaps of the backlog of a stage at the end of the projected trajectory")
+		  .tag("workflow", stage.workflow().name())
+		  .tag("stage", stage.name())
+		  .publishPercentileHistogram()
+		  .register(registry));
+	  compactionErrorSummaries.put(stage, DistributionSummary.builder(PREFIX + ".compaction.error")
+		  .description("Upper bound of the units attributed to another SLA because of a compaction of the heaps of a stage's backlog")
+		  .tag("workflow", stage.workflow().name())
+		  .tag("stage", stage.name())
+		  .publishPercentileHistogram()
+		  .register(registry));
+	}
+	oversightTimer = Timer.builder(PREFIX + ".oversight")
+		.description("Time spent analyzing the staffing plan a projected trajectory was based on")
+		.publishPercentileHistogram()
+		.register(registry);
+  }
+
+  <T> T timeSupplier(final Input input, final Supplier<T> supplier) {
+	return supplierTimers.get(input).record(supplier);
+  }
+
+  <T> T timeEstimation(final Workflow workflow, final Supplier<T> estimation) {
+	return timer(PREFIX + ".estimation", "Time spent simulating the trajectory", workflow).record(estimation);
+  }
+
+  <T> T timeExecution(final Workflow workflow, final Supplier<T> execution) {
+	return timer(PREFIX + ".execution", "Total time spent projecting the backlog trajectory", workflow).record(execution);
+  }
+
+  <T> T timeOversight(final Supplier<T> oversight) {
+	return oversightTimer.record(oversight);
+  }
+
+  /**
+   * Records the size of a projected trajectory: the steps count, the SLAs count, and the heaps count of each stage's final backlog.
+   */
+  void recordTrajectory(final Workflow workflow, final List<WorkflowTrajectoryStep> steps) {
+	summary(PREFIX + ".steps", "Number of steps of the projected trajectory", workflow).record(steps.length());
+	if (steps.isNotEmpty()) {
+	  final TreeMap<Instant, List<Sla>> nextSlasByDeadline = steps.head().nextSlasByDeadline();
+	  summary(PREFIX + ".slas", "Number of SLAs considered by the projected trajectory", workflow)
+		  .record(nextSlasByDeadline.values().foldLeft((accum, slas) -> accum + slas.length(), 0));
+
+	  final var lastStep = steps.last();
+	  for (Stage stage : workflow.stages()) {
+		final var stageStep = lastStep.stagesStep().get(stage);
+		if (stageStep != null) {
+		  heapsSummaries.get(stage).record(queueFragmentation.heapsCount(stageStep.finalQueue()));
+		}
+	  }
+	}
+  }
+
+  /**
+   * Decorates the specified {@link ProcessingOrderCriteria} such that the latency and calls count of its {@code decide} method, and of the
+   * {@code decide} method of its step deciders, are recorded by {@link Stage}.
+   */
+  ProcessingOrderCriteria instrument(final ProcessingOrderCriteria criteria) {
+	return new ProcessingOrderCriteria() {
+	  @Override
+	  public SplitQueue decide(
+		  final Stage stage,
+		  final Queue initialQueue,
+		  final long toProcessQuantity,
+		  final Instant start,
+		  final Instant end,
+		  final TreeMap<Instant, List<Sla>> nextSlasByDeadline
+	  ) {
+		return decideTimers.get(stage)
+			.record(() -> criteria.decide(stage, initialQueue, toProcessQuantity, start, end, nextSlasByDeadline));
+	  }
+
+	  @Override
+	  public StepDecider beginStep(final Instant start, final Instant end, final TreeMap<Instant, List<Sla>> nextSlasByDeadline) {
+		final var stepDecider = criteria.beginStep(start, end, nextSlasByDeadline);
+		return (stage, initialQueue, toProcessQuantity) -> decideTimers.get(stage)
+			.record(() -> stepDecider.decide(stage, initialQueue, toProcessQuantity));
+	  }
+
+	  @Override
+	  public Stream<Instant> getInflectionPointsBetween(final Instant from, final Instant to) {
+		return criteria.getInflectionPointsBetween(from, to);
+	  }
+	};
+  }
+
+  /**
+   * A {@link HeapCompactionPolicy.Listener} that records the ordering error introduced by each compaction, by {@link Stage}.
+   */
+  HeapCompactionPolicy.Listener compactionListener() {
+	return (stage, heapsBefore, heapsAfter, orderingError) -> compactionErrorSummaries.get(stage).record(orderingError);
+  }
+
+  private Timer timer(final String name, final String description, final Workflow workflow) {
+	return Timer.builder(name)
+		.description(description)
+		.tag("workflow", workflow.name())
+		.publishPercentileHistogram()
+		.register(registry);
+  }
+
+  private DistributionSummary summary(final String name, final String description, final Workflow workflow) {
+	return DistributionSummary.builder(name)
+		.description(description)
+		.tag("workflow", workflow.name())
+		.publishPercentileHistogram()
+		.register(registry);
+  }
+}
@@ -0,0 +1,126 @@
+package design.backlogprojection;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Accumulates, for a single projection, the time spent and the bytes allocated in each {@link Phase}, and the number of simulated steps.
+ * <p>An instance travels with the request that created it (the web layer carries it in the Reactor context) instead of being bound to a
+ * thread, so it keeps working when the work moves between threads. The phases are assumed to run sequentially, each one on a single
+ * thread.
+ */
+public class ProjectionTimings {
+  /**
+   * An instance that measures nothing, for the callers that don't need the breakdown.
+   */
+  public static final ProjectionTimings NONE = new ProjectionTimings(false);
+
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+  public enum Phase {
+	inputs("Inputs fetching"),
+	inflectionPoints("Inflection points computation"),
+	simulation("Steps simulation"),
+	oversight("Staffing plan overseeing");
+
+	public final String description;
+
+	Phase(final String description) {
+	  this.description = description;
+	}
+  }
+
+  private final boolean enabled;
+  private final AtomicLongArray nanosByPhase = new AtomicLongArray(Phase.values().length);
+  private final AtomicLongArray allocatedBytesByPhase = new AtomicLongArray(Phase.values().length);
+  private final AtomicLong stepsCount = new AtomicLong();
+
+  private ProjectionTimings(final boolean enabled) {
+	this.enabled = enabled;
+  }
+
+  public ProjectionTimings() {
+	this(true);
+  }
+
+  /**
+   * Evaluates the specified supplier adding the time it takes, and the bytes it allocates on the current thread, to the specified phase.
+   * <p>The bytes allocated by the work the supplier forks to other threads, like the concurrent branches, the parareal segments or the
+   * Monte Carlo chunks, are not counted: the JVM only measures the allocations of a thread, and the pool threads are shared with other
+   * requests. The time of said work is counted, as the supplier waits for it.
+   */
+  public <T> T time(final Phase phase, final Supplier<T> supplier) {
+	if (!enabled) {
+	  return supplier.get();
+	}
+	final var startingBytes = currentThreadAllocatedBytes();
+	final var startingNanos = System.nanoTime();
+	try {
+	  return supplier.get();
+	} finally {
+	  nanosByPhase.addAndGet(phase.ordinal(), System.nanoTime() - startingNanos);
+	  if (startingBytes >= 0) {
+		allocatedBytesByPhase.addAndGet(phase.ordinal(), currentThreadAllocatedBytes() - startingBytes);
+	  }
+	}
+  }
+
+  public void addSteps(final long count) {
+	stepsCount.addAndGet(count);
+  }
+
+  public long nanosOf(final Phase phase) {
+	return nanosByPhase.get(phase.ordinal());
+  }
+
+  /**
+   * The bytes allocated during the specified phase. Zero if the JVM doesn't support measuring the allocations of a thread.
+   */
+  public long allocatedBytesOf(final Phase phase) {
+	return allocatedBytesByPhase.get(phase.ordinal());
+  }
+
+  public long totalAllocatedBytes() {
+	long total = 0;
+	for (var i = 0; i < allocatedBytesByPhase.length(); ++i) {
+	  total += allocatedBytesByPhase.get(i);
+	}
+	return total;
+  }
+
+  public long stepsCount() {
+	return stepsCount.get();
+  }
+
+  /**
+   * Whether nothing was measured, which is the case of the requests that don't project anything.
+   */
+  public boolean isEmpty() {
+	if (stepsCount.get() > 0) {
+	  return false;
+	}
+	for (var i = 0; i < nanosByPhase.length(); ++i) {
+	  if (nanosByPhase.get(i) > 0) {
+		return false;
+	  }
+	}
+	return true;
+  }
+
+  /**
+   * The bytes allocated so far by the current thread, or -1 if not supported.
+   */
+  private static long currentThreadAllocatedBytes() {
+	return THREAD_MX_BEAN != null && THREAD_MX_BEAN.isThreadAllocatedMemoryEnabled()
+		? THREAD_MX_BEAN.getCurrentThreadAllocatedBytes()
+		: -1;
+  }
+
+  private static com.sun.management.ThreadMXBean threadMXBean() {
+	return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()
+		? bean
+		: null;
+  }
+}
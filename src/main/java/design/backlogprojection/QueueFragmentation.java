@@ -0,0 +1,16 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+
+/**
+ * Knows how fragmented a {@link Queue} is, which is what its size and the cost of the operations on it depend on. Like
+ * {@link SlaBreakdown}, it depends on the {@link Queue} implementations, so it is usually provided by the same party as the
+ * {@link BacklogTrajectoryEstimator.ProcessingOrderCriteria}.
+ */
+public interface QueueFragmentation {
+  /**
+   * The number of heaps, the parts that the implementation keeps apart, the specified queue is made of. Zero for the queues whose
+   * implementation keeps no parts.
+   */
+  int heapsCount(Queue queue);
+}
@@ -0,0 +1,196 @@
+package design.backlogprojection;
+
+import design.global.Workflow.Stage;
+
+import fj.data.List;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.BacklogTrajectoryEstimator.*;
+
+/**
+ * Estimates the backlog trajectories of a tree of scenarios, where each scenario but the baseline is a {@link Variant} of a parent
+ * scenario whose staffing plan changes after some instant.
+ * <p>The steps of a variant are the same as its parent's until the first step whose inputs are affected by the change, so only the
+ * steps from that one on are simulated. The resulting trajectories share the step instances of their common prefixes. Given all the
+ * scenarios have the same step boundaries, comparing many variants that differ late in the horizon costs about as much as simulating
+ * their differing suffixes.
+ */
+public final class ScenarioTree {
+  private ScenarioTree() {}
+
+  /**
+   * The name of the root scenario, whose inputs are the unchanged ones.
+   */
+  public static final String BASELINE = "baseline";
+
+  /**
+   * A scenario that is equal to its parent except that, from the specified instant on, the specified staffing plan is used.
+   * @param parentName the name of the parent scenario: {@link #BASELINE} or a variant declared before this one.
+   */
+  public record Variant(String name, String parentName, Instant divergesAt, StaffingPlan staffingPlan) {}
+
+  /**
+   * A staffing plan equal to {@code before} until the divergence instant and equal to {@code after} since then.
+   */
+  record DivergingStaffingPlan(StaffingPlan before, Instant divergesAt, StaffingPlan after) implements StaffingPlan {
+	@Override
+	public double integrateThroughputOf(final Stage stage, final Instant from, final Instant to) {
+	  if (!to.isAfter(divergesAt)) {
+		return before.integrateThroughputOf(stage, from, to);
+	  } else if (!from.isBefore(divergesAt)) {
+		return after.integrateThroughputOf(stage, from, to);
+	  } else {
+		return before.integrateThroughputOf(stage, from, divergesAt) + after.integrateThroughputOf(stage, divergesAt, to);
+	  }
+	}
+
+	/**
+	 * Delegates the boundaries before the divergence instant to {@code before} and those after it to {@code after}, so that both plans
+	 * integrate their intervals in a single sweep. The interval that contains the divergence instant is split in two.
+	 */
+	@Override
+	public double[] integrateThroughputsOf(final Stage stage, final Instant[] boundaries) {
+	  final var searched = Arrays.binarySearch(boundaries, divergesAt);
+	  // the index of the first boundary after the divergence instant
+	  final var firstAfter = searched >= 0 ? searched + 1 : -searched - 1;
+	  if (firstAfter == boundaries.length) {
+		return before.integrateThroughputsOf(stage, boundaries);
+	  } else if (firstAfter == 0) {
+		return after.integrateThroughputsOf(stage, boundaries);
+	  }
+
+	  final var straddled = searched < 0;
+	  final var beforeBoundaries = Arrays.copyOf(boundaries, straddled ? firstAfter + 1 : firstAfter);
+	  final var afterBoundaries = new Instant[boundaries.length - firstAfter + 1];
+	  beforeBoundaries[beforeBoundaries.length - 1] = divergesAt;
+	  afterBoundaries[0] = divergesAt;
+	  System.arraycopy(boundaries, firstAfter, afterBoundaries, 1, boundaries.length - firstAfter);
+	  final var beforeIntegrals = before.integrateThroughputsOf(stage, beforeBoundaries);
+	  final var afterIntegrals = after.integrateThroughputsOf(stage, afterBoundaries);
+
+	  final var integrals = Arrays.copyOf(beforeIntegrals, boundaries.length - 1);
+	  // the straddled interval is the last one of the before part and the first one of the after part
+	  final var offset = straddled ? beforeIntegrals.length - 1 : beforeIntegrals.length;
+	  for (var i = straddled ? 1 : 0; i < afterIntegrals.length; ++i) {
+		integrals[offset + i] = afterIntegrals[i];
+	  }
+	  if (straddled) {
+		integrals[offset] += afterIntegrals[0];
+	  }
+	  return integrals;
+	}
+  }
+
+  /**
+   * Estimates the trajectory of the baseline scenario, whose inputs are the specified ones, and of each of the specified variants.
+   * @return the trajectory of each scenario by name, starting with the baseline's and followed by the variants' in declaration order.
+   */
+  static Map<String, List<WorkflowTrajectoryStep>> estimateWorkflowTrajectories(
+	  final Instant startingDate,
+	  final WorkflowBacklog startingBacklog,
+	  final Stream<Sla> nextKnownSlas,
+	  final Function<WorkflowTrajectoryStepEstimators, WorkflowTrajectoryStep> stepEstimator,
+	  final StepTranscendentalInvariants transcendentals,
+	  final java.util.List<Variant> variants
+  ) {
+	final var nextSlasByDeadline = groupNextSlasByDeadline(startingDate, nextKnownSlas);
+	final var stepEndingDates = calcInflectionPoints(startingDate, nextSlasByDeadline, transcendentals);
+
+	final var stepsByScenario = new LinkedHashMap<String, WorkflowTrajectoryStep[]>();
+	final var staffingPlanByScenario = new HashMap<String, StaffingPlan>();
+	stepsByScenario.put(
+		BASELINE,
+		toArray(simulateSteps(startingDate, startingBacklog, nextSlasByDeadline, stepEndingDates, stepEstimator, transcendentals))
+	);
+	staffingPlanByScenario.put(BASELINE, transcendentals.staffingPlan());
+
+	for (var variant : variants) {
+	  final var parentSteps = stepsByScenario.get(variant.parentName());
+	  if (parentSteps == null) {
+		throw new IllegalArgumentException(String.format("Unknown parent scenario: %s", variant.parentName()));
+	  }
+	  if (stepsByScenario.containsKey(variant.name())) {
+		throw new IllegalArgumentException(String.format("Duplicated scenario: %s", variant.name()));
+	  }
+	  final var staffingPlan = new DivergingStaffingPlan(
+		  staffingPlanByScenario.get(variant.parentName()),
+		  variant.divergesAt(),
+		  variant.staffingPlan()
+	  );
+	  final var branchingStep = firstAffectedStep(parentSteps, variant.divergesAt(), transcendentals);
+
+	  final var steps = Arrays.copyOf(parentSteps, parentSteps.length);
+	  if (branchingStep < parentSteps.length) {
+		final var branchingDate = parentSteps[branchingStep].startingDate();
+		final WorkflowBacklog branchingBacklog = branchingStep == 0
+			? startingBacklog
+			: stage -> parentSteps[branchingStep - 1].stagesStep().get(stage).finalQueue();
+		final var suffix = simulateSteps(
+			branchingDate,
+			branchingBacklog,
+			// the same SLAs the parent's step received
+			parentSteps[branchingStep].nextSlasByDeadline(),
+			stepEndingDates.drop(branchingStep),
+			stepEstimator,
+			new StepTranscendentalInvariants(
+				transcendentals.allStages(),
+				transcendentals.processingStages(),
+				transcendentals.upstreamThroughputTrajectory(),
+				staffingPlan,
+				transcendentals.processingOrderCriteria(),
+				transcendentals.backlogBoundsDecider(),
+				transcendentals.branchesParallelism()
+			)
+		);
+		var index = branchingStep;
+		for (var step : suffix) {
+		  steps[index++] = step;
+		}
+	  }
+	  stepsByScenario.put(variant.name(), steps);
+	  staffingPlanByScenario.put(variant.name(), staffingPlan);
+	}
+
+	final var trajectories = new LinkedHashMap<String, List<WorkflowTrajectoryStep>>();
+	stepsByScenario.forEach((name, steps) -> trajectories.put(name, List.arrayList(steps)));
+	return trajectories;
+  }
+
+  /**
+   * The index of the first of the specified steps whose inputs depend on the staffing plan after the specified instant; or the steps count
+   * if none does. Besides the steps that end after said instant, the steps whose waving looks ahead beyond it are affected too.
+   */
+  private static int firstAffectedStep(
+	  final WorkflowTrajectoryStep[] steps,
+	  final Instant divergesAt,
+	  final StepTranscendentalInvariants transcendentals
+  ) {
+	final var isWavefull = Arrays.stream(transcendentals.allStages()).anyMatch(stage -> !stage.isHumanPowered());
+	final var firstProcessingStage = transcendentals.processingStages().head();
+	for (var index = 0; index < steps.length; ++index) {
+	  final var step = steps[index];
+	  if (step.endingDate().isAfter(divergesAt)) {
+		return index;
+	  }
+	  if (isWavefull) {
+		final var desiredBufferSize = transcendentals.backlogBoundsDecider()
+			.getDesiredBufferSize(firstProcessingStage, step.startingDate(), step.nextSlasByDeadline());
+		if (step.endingDate().plus(desiredBufferSize).isAfter(divergesAt)) {
+		  return index;
+		}
+	  }
+	}
+	return steps.length;
+  }
+
+  private static WorkflowTrajectoryStep[] toArray(final List<WorkflowTrajectoryStep> steps) {
+	return steps.toJavaList().toArray(WorkflowTrajectoryStep[]::new);
+  }
+}
@@ -0,0 +1,20 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Knows how to break down a {@link Queue} by {@link Sla}. The {@link BacklogTrajectoryEstimator} does not need it, but the consumers of its
+ * results that care about the SLA composition of the queues do.
+ * <p>Given the {@link Queue} implementations are decided by the {@link BacklogTrajectoryEstimator.ProcessingOrderCriteria}, the
+ * implementations of this interface are usually provided by the same party.
+ */
+public interface SlaBreakdown {
+  /**
+   * Feeds the received consumer with the quantity of units of each {@link Sla} contained in the received queue. The same {@link Sla} may
+   * be fed more than once, in which case the quantities should be summed up.
+   */
+  void forEachPile(Queue queue, ObjLongConsumer<Sla> consumer);
+}
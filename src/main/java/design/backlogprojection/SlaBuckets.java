@@ -0,0 +1,169 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.UpstreamThroughputTrajectory;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowBacklog;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.global.Workflow.Stage;
+
+import fj.data.List;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Maps the {@link Sla}s into deadline buckets, such that all the SLAs whose deadlines fall in the same bucket are simulated as a single
+ * {@link Bucket}. So the size of the queues, and the cost of the processing order decisions, depend on the horizon and the bucket length
+ * instead of on the number of SLAs.
+ * <p>The deadline of a bucket is its end, which is not earlier than the deadline of any of its SLAs. So the bucket of the SLAs that are
+ * due soon after the view date is after it, and is kept among the next SLAs of the trajectory, whereas its start could be before the view
+ * date. The price is that a unit may be considered on time up to a bucket length after the deadline of its own SLA.
+ */
+public final class SlaBuckets {
+  private final long bucketMillis;
+  private final SlaRelabeling slaRelabeling;
+
+  /**
+   * @param bucketLength the length of the buckets, which are aligned to the epoch.
+   * @param slaRelabeling knows how to relabel the queues of the inputs.
+   */
+  public SlaBuckets(final Duration bucketLength, final SlaRelabeling slaRelabeling) {
+	if (bucketLength.isNegative() || bucketLength.isZero()) {
+	  throw new IllegalArgumentException(String.format("bucketLength=%s", bucketLength));
+	}
+	this.bucketMillis = bucketLength.toMillis();
+	this.slaRelabeling = slaRelabeling;
+  }
+
+  /**
+   * The {@link Sla} that represents all the SLAs whose deadlines are in {@code (deadline - bucketLength, deadline]}.
+   */
+  public record Bucket(Instant deadline) implements Sla {
+	@Override
+	public Instant getDeadline() {
+	  return deadline;
+	}
+  }
+
+  public Bucket bucketOf(final Sla sla) {
+	final var deadlineMillis = sla.getDeadline().toEpochMilli();
+	return new Bucket(Instant.ofEpochMilli(-Math.floorDiv(-deadlineMillis, bucketMillis) * bucketMillis));
+  }
+
+  public Stream<Sla> bucket(final Stream<Sla> slas) {
+	return slas.<Sla>map(this::bucketOf).distinct();
+  }
+
+  public Queue bucket(final Queue queue) {
+	return slaRelabeling.relabel(queue, this::bucketOf);
+  }
+
+  /**
+   * Gives a {@link WorkflowBacklog} whose queues are the bucketed queues of the received one. Each queue is relabeled once, on demand.
+   */
+  public WorkflowBacklog bucket(final WorkflowBacklog backlog) {
+	final var bucketedQueues = Collections.synchronizedMap(new EnumMap<Stage, Queue>(Stage.class));
+	return stage -> bucketedQueues.computeIfAbsent(stage, s -> bucket(backlog.getQueueAt(s)));
+  }
+
+  public UpstreamThroughputTrajectory bucket(final UpstreamThroughputTrajectory trajectory) {
+	return new UpstreamThroughputTrajectory() {
+	  @Override
+	  public Queue integral(final Instant from, final Instant to) {
+		return bucket(trajectory.integral(from, to));
+	  }
+
+	  @Override
+	  public Queue[] integrals(final Instant[] boundaries) {
+		final var integrals = trajectory.integrals(boundaries);
+		for (var i = 0; i < integrals.length; ++i) {
+		  integrals[i] = bucket(integrals[i]);
+		}
+		return integrals;
+	  }
+	};
+  }
+
+  /**
+   * The units of each original {@link Sla} in the received backlog, which are the weights the de-aggregation distributes the units of each
+   * bucket with.
+   */
+  public static Map<Sla, Long> weightsOf(final WorkflowBacklog backlog, final Stage[] stages, final SlaBreakdown slaBreakdown) {
+	final var weights = new HashMap<Sla, Long>();
+	for (var stage : stages) {
+	  slaBreakdown.forEachPile(backlog.getQueueAt(stage), (sla, quantity) -> weights.merge(sla, quantity, Long::sum));
+	}
+	return weights;
+  }
+
+  /**
+   * Gives a {@link SlaBreakdown} of bucketed queues that splits the units of each bucket among the original SLAs of the bucket, in
+   * proportion to their weights. The quantity of each bucket is conserved exactly: the rounding remainders go to the SLAs with the largest
+   * fractional parts. The units of a bucket none of whose SLAs has a positive weight are fed with the bucket itself.
+   * @param bucketsBreakdown breaks down the bucketed queues by {@link Bucket}.
+   * @param weights the weight of each original {@link Sla}. See {@link #weightsOf}.
+   */
+  public SlaBreakdown deaggregating(final SlaBreakdown bucketsBreakdown, final Map<Sla, Long> weights) {
+	final var weightedSlasByBucket = new HashMap<Sla, java.util.List<Map.Entry<Sla, Long>>>();
+	weights.forEach((sla, weight) -> {
+	  if (weight > 0) {
+		weightedSlasByBucket.computeIfAbsent(bucketOf(sla), bucket -> new ArrayList<>()).add(Map.entry(sla, weight));
+	  }
+	});
+
+	return (queue, consumer) -> bucketsBreakdown.forEachPile(queue, (bucket, quantity) -> {
+	  final var weightedSlas = weightedSlasByBucket.get(bucket);
+	  if (weightedSlas == null) {
+		consumer.accept(bucket, quantity);
+	  } else {
+		final var shares = proportionalShares(quantity, weightedSlas);
+		for (var i = 0; i < shares.length; ++i) {
+		  if (shares[i] != 0) {
+			consumer.accept(weightedSlas.get(i).getKey(), shares[i]);
+		  }
+		}
+	  }
+	});
+  }
+
+  /**
+   * Splits the quantity in proportion to the weights with the largest remainder method, so the shares sum up to the quantity.
+   */
+  private static long[] proportionalShares(final long quantity, final java.util.List<Map.Entry<Sla, Long>> weightedSlas) {
+	final var totalWeight = weightedSlas.stream().mapToLong(Map.Entry::getValue).sum();
+	final var shares = new long[weightedSlas.size()];
+	final var remainders = new double[shares.length];
+	var assigned = 0L;
+	for (var i = 0; i < shares.length; ++i) {
+	  final var exactShare = (double) quantity * weightedSlas.get(i).getValue() / totalWeight;
+	  shares[i] = (long) Math.floor(exactShare);
+	  remainders[i] = exactShare - shares[i];
+	  assigned += shares[i];
+	}
+	for (var left = quantity - assigned; left > 0; --left) {
+	  var largest = 0;
+	  for (var i = 1; i < remainders.length; ++i) {
+		if (remainders[i] > remainders[largest]) {
+		  largest = i;
+		}
+	  }
+	  shares[largest] += 1;
+	  remainders[largest] = -1;
+	}
+	return shares;
+  }
+
+  /**
+   * A trajectory whose queues are bucketed, together with the {@link SlaBreakdown} that de-aggregates them.
+   * @param steps the steps, whose queues are broken down by {@link Bucket}.
+   * @param deaggregatingBreakdown breaks down the queues of the steps by original {@link Sla}.
+   */
+  public record BucketedTrajectory(List<WorkflowTrajectoryStep> steps, SlaBreakdown deaggregatingBreakdown) {}
+}
@@ -0,0 +1,128 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.global.Workflow.Stage;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * The units of each {@link Sla} in the queue of each stage at the end of each time bucket of a backlog trajectory. It is what the
+ * dashboards need, and is a small fraction of the size of the trajectory steps it summarizes.
+ * <p>The queue at the end of a bucket is the final queue of the last step that ends inside the bucket. The buckets where no step ends
+ * carry the queue of the previous bucket.
+ * @param origin the starting date of the first bucket.
+ * @param slas the SLAs, indexed by the position used in the matrices.
+ * @param unitsByStage for each stage, the units indexed by {@code [bucket][sla]}.
+ */
+public record SlaPivot(Instant origin, Duration bucketLength, List<Sla> slas, Map<Stage, long[][]> unitsByStage) {
+
+  /**
+   * Builds a {@link SlaPivot} in a single pass over the steps of a trajectory, as they are produced. The rows are dense arrays indexed by
+   * SLA, which grow when an unseen SLA appears.
+   */
+  public static final class Builder implements Consumer<WorkflowTrajectoryStep> {
+	private final Instant origin;
+	private final Duration bucketLength;
+	private final long originMillis;
+	private final long bucketMillis;
+	private final Stage[] stages;
+	private final SlaBreakdown slaBreakdown;
+	private final Map<Sla, Integer> slaIndexes = new HashMap<>();
+	private final ArrayList<Sla> slas = new ArrayList<>();
+	/** For each stage, the row of each bucket. Null for the buckets where no step ended yet. */
+	private final EnumMap<Stage, ArrayList<long[]>> rowsByStage = new EnumMap<>(Stage.class);
+	private final PileAccumulator accumulator = new PileAccumulator();
+
+	/**
+	 * @param origin the starting date of the first bucket. Usually the starting date of the first step.
+	 * @param stages the stages to include.
+	 * @param slaBreakdown knows how to break down the queues of the steps.
+	 */
+	public Builder(final Instant origin, final Duration bucketLength, final Stage[] stages, final SlaBreakdown slaBreakdown) {
+	  if (bucketLength.isNegative() || bucketLength.isZero()) {
+		throw new IllegalArgumentException(String.format("bucketLength=%s", bucketLength));
+	  }
+	  this.origin = origin;
+	  this.bucketLength = bucketLength;
+	  this.originMillis = origin.toEpochMilli();
+	  this.bucketMillis = bucketLength.toMillis();
+	  this.stages = stages;
+	  this.slaBreakdown = slaBreakdown;
+	  for (var stage : stages) {
+		rowsByStage.put(stage, new ArrayList<>());
+	  }
+	}
+
+	/**
+	 * Adds the final queues of the specified step to the bucket where the step ends. The steps should be accepted in order.
+	 */
+	@Override
+	public void accept(final WorkflowTrajectoryStep step) {
+	  // a step that ends exactly at a bucket's end belongs to that bucket
+	  final var bucket = (int) Math.max(0, (step.endingDate().toEpochMilli() - 1 - originMillis) / bucketMillis);
+	  for (var stage : stages) {
+		final var stageStep = step.stagesStep().get(stage);
+		if (stageStep != null) {
+		  final var rows = rowsByStage.get(stage);
+		  while (rows.size() <= bucket) {
+			rows.add(null);
+		  }
+		  // a later step of the same bucket replaces the row
+		  final var row = rows.get(bucket);
+		  accumulator.row = row != null ? row : new long[slas.size()];
+		  Arrays.fill(accumulator.row, 0);
+		  slaBreakdown.forEachPile(stageStep.finalQueue(), accumulator);
+		  rows.set(bucket, accumulator.row);
+		}
+	  }
+	}
+
+	public SlaPivot build() {
+	  final var slasCount = slas.size();
+	  final var bucketsCount = rowsByStage.values().stream().mapToInt(ArrayList::size).max().orElse(0);
+	  final var unitsByStage = new EnumMap<Stage, long[][]>(Stage.class);
+	  for (var stage : stages) {
+		final var rows = rowsByStage.get(stage);
+		final var units = new long[bucketsCount][];
+		var previous = new long[slasCount];
+		for (var bucket = 0; bucket < bucketsCount; ++bucket) {
+		  final var row = bucket < rows.size() ? rows.get(bucket) : null;
+		  units[bucket] = row == null ? previous : row.length == slasCount ? row : Arrays.copyOf(row, slasCount);
+		  previous = units[bucket];
+		}
+		unitsByStage.put(stage, units);
+	  }
+	  return new SlaPivot(origin, bucketLength, Collections.unmodifiableList(slas), unitsByStage);
+	}
+
+	/**
+	 * Adds the piles of a queue to the current row, growing it when an SLA that doesn't fit appears.
+	 */
+	private final class PileAccumulator implements ObjLongConsumer<Sla> {
+	  long[] row;
+
+	  @Override
+	  public void accept(final Sla sla, final long quantity) {
+		final int index = slaIndexes.computeIfAbsent(sla, newSla -> {
+		  slas.add(newSla);
+		  return slas.size() - 1;
+		});
+		if (index >= row.length) {
+		  row = Arrays.copyOf(row, Math.max(index + 1, 2 * row.length));
+		}
+		row[index] += quantity;
+	  }
+	}
+  }
+}
@@ -0,0 +1,19 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Knows how to change the {@link Sla} the units of a {@link Queue} belong to. Like {@link SlaBreakdown}, it depends on the {@link Queue}
+ * implementations, so it is usually provided by the same party as the {@link BacklogTrajectoryEstimator.ProcessingOrderCriteria}.
+ */
+public interface SlaRelabeling {
+  /**
+   * Gives a queue equal to the received one except that the units of each {@link Sla} belong to the {@link Sla} the mapping gives for it.
+   * The units of different SLAs mapped to the same one are merged, and their order in the queue is preserved as much as the queue
+   * implementation allows.
+   */
+  Queue relabel(Queue queue, UnaryOperator<Sla> mapping);
+}
@@ -0,0 +1,159 @@
+package design.backlogprojection;
+
+import fj.data.List;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Decides which of the inflection points of a trajectory estimation become the boundaries of its steps.
+ * <p>In the {@link #exact()} mode every inflection point is a step boundary. The coarse modes merge consecutive steps, at the cost of
+ * ignoring the inflection points between them, to bound the number of steps. They never drop the required inflection points (the SLA
+ * deadlines and the inflection points of the processing order criteria, see
+ * {@link BacklogTrajectoryEstimator#requiredInflectionPoints}) nor the last one.
+ */
+public interface StepCoalescing {
+
+  /**
+   * The boundaries of the steps of a trajectory.
+   * @param stepEndingDates the ending date of each step, sorted.
+   * @param errorBound the length of the longest step that absorbed inflection points. Zero when no inflection point was dropped.
+   */
+  record Boundaries(List<Instant> stepEndingDates, Duration errorBound) {}
+
+  /**
+   * @param startingDate the starting date of the first step.
+   * @param inflectionPoints the instants at which the inputs may change, sorted and without repetitions.
+   * @param isRequired tells which inflection points should be kept.
+   */
+  Boundaries coalesce(Instant startingDate, List<Instant> inflectionPoints, Predicate<Instant> isRequired);
+
+  /**
+   * Every inflection point becomes a step boundary.
+   */
+  static StepCoalescing exact() {
+	return (startingDate, inflectionPoints, isRequired) -> new Boundaries(inflectionPoints, Duration.ZERO);
+  }
+
+  /**
+   * Drops the inflection points that are closer than the specified tolerance to the previous boundary.
+   */
+  static StepCoalescing mergingStepsShorterThan(final Duration tolerance) {
+	return (startingDate, inflectionPoints, isRequired) -> {
+	  final var points = inflectionPoints.array(Instant[].class);
+	  final var kept = new boolean[points.length];
+	  var lastBoundary = startingDate;
+	  for (var i = 0; i < points.length; ++i) {
+		if (i == points.length - 1 || isRequired.test(points[i]) || !points[i].isBefore(lastBoundary.plus(tolerance))) {
+		  kept[i] = true;
+		  lastBoundary = points[i];
+		}
+	  }
+	  return toBoundaries(startingDate, points, kept);
+	};
+  }
+
+  /**
+   * Drops inflection points until the steps count is not greater than the specified maximum, or only the required inflection points
+   * remain. The inflection point dropped each time is the one whose removal produces the shortest merged step, given the error introduced
+   * by ignoring an inflection point is assumed to grow with the length of the step that absorbs it.
+   */
+  static StepCoalescing boundedTo(final int maxStepsCount) {
+	return (startingDate, inflectionPoints, isRequired) -> {
+	  final var points = inflectionPoints.array(Instant[].class);
+	  final var length = points.length;
+	  if (length <= maxStepsCount) {
+		return new Boundaries(inflectionPoints, Duration.ZERO);
+	  }
+	  final var kept = new boolean[length];
+	  Arrays.fill(kept, true);
+
+	  // a doubly linked list over the kept points, where -1 stands for the starting date
+	  final var millis = new long[length];
+	  final var previous = new int[length];
+	  final var next = new int[length];
+	  final var removable = new boolean[length];
+	  for (var i = 0; i < length; ++i) {
+		millis[i] = points[i].toEpochMilli();
+		previous[i] = i - 1;
+		next[i] = i + 1;
+		removable[i] = i < length - 1 && !isRequired.test(points[i]);
+	  }
+	  final var startingMillis = startingDate.toEpochMilli();
+
+	  // candidates are {mergedStepLength, index, version}; a candidate is stale when the version of its point has changed.
+	  final var versions = new int[length];
+	  final var candidates = new PriorityQueue<long[]>(Comparator.<long[]>comparingLong(c -> c[0]).thenComparingLong(c -> c[1]));
+	  // The java language does not support local functions so a local class with a single method is used instead.
+	  class Candidates {
+		void offer(final int i) {
+		  final var previousMillis = previous[i] < 0 ? startingMillis : millis[previous[i]];
+		  candidates.add(new long[]{millis[next[i]] - previousMillis, i, versions[i]});
+		}
+	  }
+	  final var offerer = new Candidates();
+	  for (var i = 0; i < length; ++i) {
+		if (removable[i]) {
+		  offerer.offer(i);
+		}
+	  }
+
+	  var stepsCount = length;
+	  while (stepsCount > maxStepsCount && !candidates.isEmpty()) {
+		final var candidate = candidates.poll();
+		final var i = (int) candidate[1];
+		if (kept[i] && candidate[2] == versions[i]) {
+		  kept[i] = false;
+		  stepsCount -= 1;
+		  final var p = previous[i];
+		  final var n = next[i];
+		  if (p >= 0) {
+			next[p] = n;
+		  }
+		  previous[n] = p;
+		  if (p >= 0 && removable[p]) {
+			versions[p] += 1;
+			offerer.offer(p);
+		  }
+		  if (removable[n]) {
+			versions[n] += 1;
+			offerer.offer(n);
+		  }
+		}
+	  }
+	  return toBoundaries(startingDate, points, kept);
+	};
+  }
+
+  private static Boundaries toBoundaries(final Instant startingDate, final Instant[] points, final boolean[] kept) {
+	var errorBound = Duration.ZERO;
+	var stepStartingDate = startingDate;
+	var absorbed = false;
+	for (var i = 0; i < points.length; ++i) {
+	  if (!kept[i]) {
+		absorbed = true;
+	  } else {
+		if (absorbed) {
+		  final var stepLength = Duration.between(stepStartingDate, points[i]);
+		  if (stepLength.compareTo(errorBound) > 0) {
+			errorBound = stepLength;
+		  }
+		}
+		stepStartingDate = points[i];
+		absorbed = false;
+	  }
+	}
+
+	List<Instant> stepEndingDates = List.nil();
+	for (var i = points.length - 1; i >= 0; --i) {
+	  if (kept[i]) {
+		stepEndingDates = List.cons(points[i], stepEndingDates);
+	  }
+	}
+	return new Boundaries(stepEndingDates, errorBound);
+  }
+}
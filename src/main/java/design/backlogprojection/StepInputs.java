@@ -0,0 +1,107 @@
+package design.backlogprojection;
+
+import design.global.Workflow.Stage;
+
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static design.backlogprojection.BacklogTrajectoryEstimator.*;
+
+/**
+ * The inputs of every step of a trajectory simulation, calculated before the simulation starts.
+ * <p>The boundaries of all the steps are known before simulating them, so each input trajectory is swept once over the sorted boundaries
+ * instead of being integrated separately for each step and stage. The results are stored in dense arrays indexed by step (and stage), which
+ * the {@link WorkflowTrajectoryStepEstimators} read by index.
+ */
+final class StepInputs {
+  private final int stagesCount;
+  /** The integral of the throughput of each processing stage during each step, indexed by {@code step * stagesCount + stage.ordinal()}. */
+  private final double[] throughputIntegrals;
+  /** The integral of the upstream throughput during each step. */
+  private final Queue[] upstreamIntegrals;
+  /** The desired buffer size of the first processing stage at the start of each step. Null if the workflow has no waving stage. */
+  private final Duration[] desiredBufferSizes;
+
+  private StepInputs(
+	  final int stagesCount,
+	  final double[] throughputIntegrals,
+	  final Queue[] upstreamIntegrals,
+	  final Duration[] desiredBufferSizes
+  ) {
+	this.stagesCount = stagesCount;
+	this.throughputIntegrals = throughputIntegrals;
+	this.upstreamIntegrals = upstreamIntegrals;
+	this.desiredBufferSizes = desiredBufferSizes;
+  }
+
+  /**
+   * Calculates the inputs of the steps that end at the specified dates.
+   * @param stepEndingDates the ending dates of the steps, sorted.
+   */
+  static StepInputs prepare(
+	  final Instant startingDate,
+	  final List<Instant> stepEndingDates,
+	  final TreeMap<Instant, List<Sla>> nextSlasByDeadline,
+	  final StepTranscendentalInvariants transcendentals
+  ) {
+	final var stepsCount = stepEndingDates.length();
+	final var boundaries = new Instant[stepsCount + 1];
+	boundaries[0] = startingDate;
+	var index = 1;
+	for (var stepEndingDate : stepEndingDates) {
+	  boundaries[index++] = stepEndingDate;
+	}
+
+	final var stagesCount = Stage.values().length;
+	final var throughputIntegrals = new double[stepsCount * stagesCount];
+	for (var stage : transcendentals.processingStages()) {
+	  final var stageIntegrals = transcendentals.staffingPlan().integrateThroughputsOf(stage, boundaries);
+	  for (var step = 0; step < stepsCount; ++step) {
+		throughputIntegrals[step * stagesCount + stage.ordinal()] = stageIntegrals[step];
+	  }
+	}
+
+	final var upstreamIntegrals = transcendentals.upstreamThroughputTrajectory().integrals(boundaries);
+
+	Duration[] desiredBufferSizes = null;
+	if (Arrays.stream(transcendentals.allStages()).anyMatch(stage -> !stage.isHumanPowered())) {
+	  final var firstProcessingStage = transcendentals.processingStages().head();
+	  desiredBufferSizes = new Duration[stepsCount];
+	  for (var step = 0; step < stepsCount; ++step) {
+		final var stepStartingDate = boundaries[step];
+		// the same SLAs the step estimator receives
+		final var stepNextSlasByDeadline = step == 0 ? nextSlasByDeadline : nextSlasByDeadline.splitLookup(stepStartingDate)._3();
+		desiredBufferSizes[step] = transcendentals.backlogBoundsDecider()
+			.getDesiredBufferSize(firstProcessingStage, stepStartingDate, stepNextSlasByDeadline);
+	  }
+	}
+
+	return new StepInputs(stagesCount, throughputIntegrals, upstreamIntegrals, desiredBufferSizes);
+  }
+
+  /**
+   * The integral of the throughput of the specified processing stage during the specified step.
+   */
+  double throughputIntegralAt(final int step, final Stage stage) {
+	return throughputIntegrals[step * stagesCount + stage.ordinal()];
+  }
+
+  /**
+   * The integral of the upstream throughput during the specified step.
+   */
+  Queue upstreamIntegralAt(final int step) {
+	return upstreamIntegrals[step];
+  }
+
+  /**
+   * The desired buffer size of the first processing stage at the start of the specified step.
+   */
+  Duration desiredBufferSizeAt(final int step) {
+	assert desiredBufferSizes != null;
+	return desiredBufferSizes[step];
+  }
+}
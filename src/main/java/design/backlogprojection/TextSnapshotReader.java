@@ -0,0 +1,212 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionBacktester.ActualBacklogTrajectory;
+import design.backlogprojection.BacklogProjectionBacktester.RecordedSnapshot;
+import design.backlogprojection.BacklogProjectionBacktester.SnapshotReader;
+import design.global.StaffingPlanSupplier;
+import design.global.Trajectory;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.BacklogTrajectoryEstimator.*;
+
+/**
+ * Reads the {@link RecordedSnapshot}s written as text files with one record per line. The fields of a record are separated by whitespace,
+ * the instants are in ISO-8601 format, the SLAs are identified by their deadline, and the lines starting with {@code #} are ignored:
+ * <pre>
+ * workflow outbound
+ * viewDate 2022-01-01T00:00:00Z
+ * # sla &lt;deadline&gt;
+ * sla 2022-01-01T06:00:00Z
+ * # backlog &lt;stage&gt; &lt;sla deadline&gt; &lt;units&gt;
+ * backlog picking 2022-01-01T06:00:00Z 120
+ * # throughput &lt;stage&gt; &lt;instant&gt; &lt;units per hour from that instant on&gt;
+ * throughput picking 2022-01-01T00:00:00Z 60
+ * # upstream &lt;sla deadline&gt; &lt;instant&gt; &lt;units per hour from that instant on&gt;
+ * upstream 2022-01-01T06:00:00Z 2022-01-01T00:00:00Z 40
+ * # actual &lt;stage&gt; &lt;instant&gt; &lt;observed total&gt;
+ * actual picking 2022-01-01T01:00:00Z 75
+ * </pre>
+ * The snapshots only record data, so the {@link ProcessingOrderCriteria} and the {@link BacklogBoundsDecider}, which are what a backtest
+ * usually compares, are given by the suppliers this reader is built with.
+ */
+public class TextSnapshotReader implements SnapshotReader {
+  private final Function<Map<Sla, Long>, Queue> queueFactory;
+  private final BiFunction<Workflow, Instant, ProcessingOrderCriteria> processingOrderCriteriaSupplier;
+  private final BiFunction<Workflow, Instant, BacklogBoundsDecider> backlogBoundsDeciderSupplier;
+
+  /**
+   * @param queueFactory builds the {@link Queue}s of the backlog and of the upstream throughput from their quantity by SLA, in the
+   * representation the {@link ProcessingOrderCriteria} expects.
+   */
+  public TextSnapshotReader(
+	  final Function<Map<Sla, Long>, Queue> queueFactory,
+	  final BiFunction<Workflow, Instant, ProcessingOrderCriteria> processingOrderCriteriaSupplier,
+	  final BiFunction<Workflow, Instant, BacklogBoundsDecider> backlogBoundsDeciderSupplier
+  ) {
+	this.queueFactory = queueFactory;
+	this.processingOrderCriteriaSupplier = processingOrderCriteriaSupplier;
+	this.backlogBoundsDeciderSupplier = backlogBoundsDeciderSupplier;
+  }
+
+  /**
+   * The {@link Sla}s of the snapshots, which are identified by their deadline.
+   */
+  public record DeadlineSla(Instant deadline) implements Sla {
+	@Override
+	public Instant getDeadline() {
+	  return deadline;
+	}
+  }
+
+  @Override
+  public RecordedSnapshot read(final Path file) throws IOException {
+	final var parser = new Parser();
+	try (var lines = Files.lines(file)) {
+	  var lineNumber = 0;
+	  for (var line : (Iterable<String>) lines::iterator) {
+		++lineNumber;
+		final var trimmed = line.strip();
+		if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+		  try {
+			parser.parse(trimmed.split("\\s+"));
+		  } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+			throw new IOException(String.format("Invalid line %d of %s: %s", lineNumber, file, line), e);
+		  }
+		}
+	  }
+	}
+	if (parser.workflow == null || parser.viewDate == null) {
+	  throw new IOException(String.format("The snapshot %s lacks the workflow or the view date", file));
+	}
+	return parser.toSnapshot();
+  }
+
+  /**
+   * Accumulates the records of a snapshot file.
+   */
+  private final class Parser {
+	private Workflow workflow;
+	private Instant viewDate;
+	private final Set<Sla> slas = new LinkedHashSet<>();
+	private final Map<Stage, Map<Sla, Long>> backlog = new EnumMap<>(Stage.class);
+	private final Map<Stage, TreeMap<Instant, Long>> throughputs = new EnumMap<>(Stage.class);
+	private final Map<Sla, TreeMap<Instant, Long>> upstreamThroughputs = new HashMap<>();
+	private final Map<Stage, TreeMap<Instant, Long>> actualTotals = new EnumMap<>(Stage.class);
+
+	void parse(final String[] fields) {
+	  switch (fields[0]) {
+		case "workflow" -> workflow = Workflow.valueOf(fields[1]);
+		case "viewDate" -> viewDate = Instant.parse(fields[1]);
+		case "sla" -> slas.add(sla(fields[1]));
+		case "backlog" -> backlog.computeIfAbsent(Stage.valueOf(fields[1]), stage -> new HashMap<>())
+			.merge(sla(fields[2]), Long.parseLong(fields[3]), Long::sum);
+		case "throughput" -> throughputs.computeIfAbsent(Stage.valueOf(fields[1]), stage -> new TreeMap<>())
+			.put(Instant.parse(fields[2]), Long.parseLong(fields[3]));
+		case "upstream" -> upstreamThroughputs.computeIfAbsent(sla(fields[1]), sla -> new TreeMap<>())
+			.put(Instant.parse(fields[2]), Long.parseLong(fields[3]));
+		case "actual" -> actualTotals.computeIfAbsent(Stage.valueOf(fields[1]), stage -> new TreeMap<>())
+			.put(Instant.parse(fields[2]), Long.parseLong(fields[3]));
+		default -> throw new IllegalArgumentException(String.format("Unknown record: %s", fields[0]));
+	  }
+	}
+
+	private Sla sla(final String deadline) {
+	  return new DeadlineSla(Instant.parse(deadline));
+	}
+
+	RecordedSnapshot toSnapshot() {
+	  final var snapshotWorkflow = workflow;
+	  final var snapshotViewDate = viewDate;
+	  final var queues = new EnumMap<Stage, Queue>(Stage.class);
+	  for (var stage : workflow.stages()) {
+		queues.put(stage, queueFactory.apply(backlog.getOrDefault(stage, Map.of())));
+	  }
+	  final var staffingPlan = new StaffingPlanSupplier.Plan(workflow.processingStages().toJavaList().stream().collect(
+		  () -> new EnumMap<Stage, Trajectory>(Stage.class),
+		  (map, stage) -> map.put(stage, new Trajectory(throughputs.getOrDefault(stage, new TreeMap<>()))),
+		  Map::putAll
+	  ));
+	  final var upstreamTrajectories = new HashMap<Sla, Trajectory>();
+	  upstreamThroughputs.forEach((sla, points) -> upstreamTrajectories.put(sla, new Trajectory(points)));
+	  final UpstreamThroughputTrajectory upstreamThroughputTrajectory = (from, to) -> {
+		final var quantityBySla = new HashMap<Sla, Long>();
+		upstreamTrajectories.forEach(
+			(sla, trajectory) -> quantityBySla.put(sla, Math.round(trajectory.integrate(from, to, TimeUnit.HOURS)))
+		);
+		return queueFactory.apply(quantityBySla);
+	  };
+	  final ActualBacklogTrajectory actualBacklogTrajectory = (stage, when) -> {
+		final var total = actualTotals.getOrDefault(stage, new TreeMap<>()).get(when);
+		return total == null ? OptionalLong.empty() : OptionalLong.of(total);
+	  };
+	  final var nextKnownSlas = java.util.List.copyOf(slas);
+	  final var processingOrderCriteria = processingOrderCriteriaSupplier.apply(workflow, viewDate);
+	  final var backlogBoundsDecider = backlogBoundsDeciderSupplier.apply(workflow, viewDate);
+
+	  return new RecordedSnapshot() {
+		@Override
+		public Workflow workflow() {
+		  return snapshotWorkflow;
+		}
+
+		@Override
+		public Instant viewDate() {
+		  return snapshotViewDate;
+		}
+
+		@Override
+		public WorkflowBacklog backlog() {
+		  return queues::get;
+		}
+
+		@Override
+		public Stream<Sla> nextKnownSlas() {
+		  return nextKnownSlas.stream();
+		}
+
+		@Override
+		public StaffingPlan staffingPlan() {
+		  return staffingPlan;
+		}
+
+		@Override
+		public UpstreamThroughputTrajectory upstreamThroughputTrajectory() {
+		  return upstreamThroughputTrajectory;
+		}
+
+		@Override
+		public ProcessingOrderCriteria processingOrderCriteria() {
+		  return processingOrderCriteria;
+		}
+
+		@Override
+		public BacklogBoundsDecider backlogBoundsDecider() {
+		  return backlogBoundsDecider;
+		}
+
+		@Override
+		public ActualBacklogTrajectory actualBacklogTrajectory() {
+		  return actualBacklogTrajectory;
+		}
+	  };
+	}
+  }
+}
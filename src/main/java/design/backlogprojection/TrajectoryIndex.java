@@ -0,0 +1,123 @@
+package design.backlogprojection;
+
+import design.global.Workflow.Stage;
+
+import fj.data.List;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static design.backlogprojection.BacklogTrajectoryEstimator.*;
+
+/**
+ * An index over the steps of a backlog trajectory that answers point-in-time queries, like "what will the queue at {@code walling} be at
+ * 15:30?", in O(log n) instead of scanning the steps.
+ * <p>The steps boundaries are kept in a sorted array of epoch milliseconds, where the element {@code i} is the starting date of the step
+ * {@code i} and the last one is the ending date of the last step. The queue of a stage at an instant is the one the step that contains the
+ * instant started with. Optionally, the queue total is linearly interpolated between the initial and final totals of said step, which is
+ * the same as spreading its incoming and processed totals uniformly during the step. Before the first step the initial queue of the first
+ * step is given, and after the last step the final queue of the last step.
+ */
+public final class TrajectoryIndex {
+  private final long[] boundaries;
+  private final WorkflowTrajectoryStep[] steps;
+
+  private TrajectoryIndex(final long[] boundaries, final WorkflowTrajectoryStep[] steps) {
+	this.boundaries = boundaries;
+	this.steps = steps;
+  }
+
+  /**
+   * Creates an index over the specified steps, which should be sorted and consecutive.
+   */
+  public static TrajectoryIndex of(final List<WorkflowTrajectoryStep> steps) {
+	final var stepsArray = steps.toJavaList().toArray(WorkflowTrajectoryStep[]::new);
+	final var boundaries = new long[stepsArray.length + 1];
+	for (var i = 0; i < stepsArray.length; ++i) {
+	  boundaries[i] = stepsArray[i].startingDate().toEpochMilli();
+	}
+	if (stepsArray.length > 0) {
+	  boundaries[stepsArray.length] = stepsArray[stepsArray.length - 1].endingDate().toEpochMilli();
+	}
+	return new TrajectoryIndex(boundaries, stepsArray);
+  }
+
+  /**
+   * The queue of the specified stage at the specified instant, without interpolation.
+   */
+  public Queue queueAt(final Stage stage, final Instant instant) {
+	final var position = positionOf(instant.toEpochMilli());
+	return position == steps.length
+		? steps[position - 1].stagesStep().get(stage).finalQueue()
+		: steps[position].stagesStep().get(stage).initialQueue();
+  }
+
+  /**
+   * The quantity of units of each {@link Sla} in the queue of the specified stage at the specified instant, without interpolation.
+   */
+  public Map<Sla, Long> quantitiesBySlaAt(final Stage stage, final Instant instant, final SlaBreakdown slaBreakdown) {
+	final var quantitiesBySla = new HashMap<Sla, Long>();
+	slaBreakdown.forEachPile(queueAt(stage, instant), (sla, quantity) -> quantitiesBySla.merge(sla, quantity, Long::sum));
+	return quantitiesBySla;
+  }
+
+  /**
+   * The total of the queue of the specified stage at the specified instant.
+   * @param interpolate whether the total is linearly interpolated inside the step that contains the instant.
+   */
+  public long queueTotalAt(final Stage stage, final Instant instant, final boolean interpolate) {
+	final var millis = instant.toEpochMilli();
+	return totalAt(stage, positionOf(millis), millis, interpolate);
+  }
+
+  /**
+   * Same as {@link #queueTotalAt} for each of the specified instants, in a single pass over the steps.
+   * @param instants the instants to query, sorted in ascending order.
+   * @return the queue total at each of the specified instants, in the same order.
+   */
+  public long[] queueTotalsAt(final Stage stage, final Instant[] instants, final boolean interpolate) {
+	final var totals = new long[instants.length];
+	if (instants.length == 0) {
+	  return totals;
+	}
+	var position = positionOf(instants[0].toEpochMilli());
+	for (var i = 0; i < instants.length; ++i) {
+	  final var millis = instants[i].toEpochMilli();
+	  assert i == 0 || !instants[i].isBefore(instants[i - 1]);
+	  while (position < steps.length && boundaries[position + 1] <= millis) {
+		position += 1;
+	  }
+	  totals[i] = totalAt(stage, position, millis, interpolate);
+	}
+	return totals;
+  }
+
+  /**
+   * The index of the step that contains the specified instant; or the steps count if it is not before the ending date of the last step.
+   * The instants before the first step are considered contained by it.
+   */
+  private int positionOf(final long millis) {
+	if (steps.length == 0) {
+	  throw new IllegalStateException("the trajectory has no steps");
+	}
+	final var found = Arrays.binarySearch(boundaries, millis);
+	return found >= 0 ? found : Math.max(0, -found - 2);
+  }
+
+  private long totalAt(final Stage stage, final int position, final long millis, final boolean interpolate) {
+	if (position == steps.length) {
+	  return steps[position - 1].stagesStep().get(stage).finalQueue().total();
+	}
+	final var stageStep = steps[position].stagesStep().get(stage);
+	final var initialTotal = stageStep.initialQueue().total();
+	final var stepStart = boundaries[position];
+	final var stepEnd = boundaries[position + 1];
+	if (!interpolate || millis <= stepStart || stepEnd <= stepStart) {
+	  return initialTotal;
+	}
+	final var fraction = (millis - stepStart) / (double) (stepEnd - stepStart);
+	return initialTotal + Math.round(fraction * (stageStep.finalQueue().total() - initialTotal));
+  }
+}
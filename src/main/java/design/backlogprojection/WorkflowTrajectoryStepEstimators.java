@@ -1,6 +1,7 @@
 package design.backlogprojection;
 
 import design.global.ImmutableEnumMap;
+import design.global.ImmutableMap;
 import design.global.Workflow.Stage;
 import lombok.RequiredArgsConstructor;
 
@@ -8,6 +9,7 @@ import fj.data.List;
 import fj.data.TreeMap;
 
 import java.time.Instant;
+import java.util.concurrent.ForkJoinTask;
 
 import static design.backlogprojection.BacklogTrajectoryEstimator.*;
 
@@ -21,23 +23,25 @@ import static design.backlogprojection.BacklogTrajectoryEstimator.*;
  */
 @RequiredArgsConstructor
 class WorkflowTrajectoryStepEstimators {
+  private static final Stage[] ALL_STAGES = Stage.values();
+
   private final Instant stepStartingDate;
   private final Instant stepEndingDate;
   private final WorkflowBacklog stepStartingBacklog;
   private final TreeMap<Instant, List<Sla>> nextSlasByDeadline;
   private final StepTranscendentalInvariants transcendentals;
+  private final StepInputs stepInputs;
+  private final int stepIndex;
+  /** The decisions of the processing order criteria during this step. Created when the step estimation starts. */
+  private ProcessingOrderCriteria.StepDecider stepDecider;
 
   WorkflowTrajectoryStep estimateWavefullStep(final Stage wavingStage) {
 	assert !wavingStage.isHumanPowered();
+	beginStep();
 	// calculate the waving desired power (integral on [startingInstant, endingInstant] of the waving throughput)
-	final var firstProcessingStage = transcendentals.processingStages().head();
-	final var firstProcessingStageInitialQueue = stepStartingBacklog.getQueueAt(firstProcessingStage);
+	final var firstProcessingStageInitialQueue = stepStartingBacklog.getQueueAt(transcendentals.processingStages().head());
 	final var firstProcessingStageInitialQueueTotal = firstProcessingStageInitialQueue.total();
-	final var firstProcessingStageDesiredBufferSize =
-		transcendentals.backlogBoundsDecider().getDesiredBufferSize(firstProcessingStage, stepStartingDate, nextSlasByDeadline);
-	final var wavingDesiredPower = Math.round(transcendentals.staffingPlan().integrateThroughputOf(
-		firstProcessingStage, stepStartingDate, stepEndingDate.plus(firstProcessingStageDesiredBufferSize)
-	)) - firstProcessingStageInitialQueueTotal;
+	final var wavingDesiredPower = wavingDesiredPower(firstProcessingStageInitialQueueTotal);
 
 	// calculate the waving achievable power
 	final var wavingInitialQueue = stepStartingBacklog.getQueueAt(wavingStage);
@@ -47,14 +51,13 @@ class WorkflowTrajectoryStepEstimators {
 	); // TODO ¿hay que sumar el forecast acá, o no? No lo sumé porque, a diferencia de las otras etapas, en waving la cantidad procesada
 	// depende del tamaño de la ola y dicho tamaña se calcula en el comienzo del intervalo, antes de que entre en juego el pronóstico del
 	// resto del intervalo.
-	final var afterWaveQueues = transcendentals.processingOrderCriteria()
-		.decide(wavingStage, wavingInitialQueue, wavingAchievablePower, stepStartingDate, stepEndingDate, nextSlasByDeadline);
+	final var afterWaveQueues = decide(wavingStage, wavingInitialQueue, wavingAchievablePower);
 	assert wavingAchievablePower == afterWaveQueues.processed().toStream(transcendentals.allStages())
 		.mapToLong(x -> x.value().total())
 		.sum();
 
 	// build the wavingSimulationStep
-	final var upstreamQueue = transcendentals.upstreamThroughputTrajectory().integral(stepStartingDate, stepEndingDate);
+	final var upstreamQueue = stepInputs.upstreamIntegralAt(stepIndex);
 	final var wavingTrajectoryStep = new StageTrajectoryStep(
 		wavingStage,
 		wavingInitialQueue,
@@ -66,49 +69,123 @@ class WorkflowTrajectoryStepEstimators {
 	);
 
 	// estimate the simultaneous step for each processing stage
-	var stagesTrajectoryStep = estimateParallelStagesChains(
-		afterWaveQueues.processed(),
-		ImmutableEnumMap.of(wavingStage, wavingTrajectoryStep)
-	);
+	final var stagesTrajectoryStep = ImmutableEnumMap.<Stage, StageTrajectoryStep>builder(ALL_STAGES)
+		.add(wavingStage, wavingTrajectoryStep);
+	estimateParallelStagesChains(afterWaveQueues.processed(), stagesTrajectoryStep);
 	// return the estimated trajectory step
 	return new WorkflowTrajectoryStep(
 		stepStartingDate,
 		stepEndingDate,
-		stagesTrajectoryStep,
+		stagesTrajectoryStep.build(),
 		nextSlasByDeadline
 	);
   }
 
   WorkflowTrajectoryStep estimateWavelessStep() {
-	var incomingQueue = transcendentals.upstreamThroughputTrajectory().integral(stepStartingDate, stepEndingDate);
+	beginStep();
+	var incomingQueue = stepInputs.upstreamIntegralAt(stepIndex);
 	// calculate simulation of processing steps
-	final var stagesTrajectoryStep =
-		estimateAStepForAStageAndThoseThatFollowIt(transcendentals.processingStages().head(), incomingQueue, ImmutableEnumMap.of());
-	return new WorkflowTrajectoryStep(stepStartingDate, stepEndingDate, stagesTrajectoryStep, nextSlasByDeadline);
+	final var stagesTrajectoryStep = ImmutableEnumMap.<Stage, StageTrajectoryStep>builder(ALL_STAGES);
+	estimateAStepForAStageAndThoseThatFollowIt(transcendentals.processingStages().head(), incomingQueue, stagesTrajectoryStep);
+	return new WorkflowTrajectoryStep(stepStartingDate, stepEndingDate, stagesTrajectoryStep.build(), nextSlasByDeadline);
   }
 
 
   /**
-   * Estimates a step for the specified stage and all the stages it feeds transitively.
+   * Tells whether nothing moves during this step: all the queues are empty when the step starts and no units come from upstream during it.
+   * Then the step can be calculated in closed form by {@link #estimateQuiescentStep}.
    */
-  private ImmutableEnumMap<Stage, StageTrajectoryStep> estimateAStepForAStageAndThoseThatFollowIt(
+  boolean isQuiescent() {
+	if (stepInputs.upstreamIntegralAt(stepIndex).total() != 0) {
+	  return false;
+	}
+	for (var stage : transcendentals.allStages()) {
+	  if (stepStartingBacklog.getQueueAt(stage).total() != 0) {
+		return false;
+	  }
+	}
+	return true;
+  }
+
+  /**
+   * Calculates, without consulting the {@link ProcessingOrderCriteria}, the step of a quiescent interval (see {@link #isQuiescent()})
+   * that follows the specified step. The queues of this step are the final (empty) queues of the previous one, and the only thing that
+   * varies from step to step is the queue shortage. So the {@link StageTrajectoryStep}s of the previous step are shared when their
+   * shortage does not change, and so is the whole map if none changes.
+   */
+  WorkflowTrajectoryStep estimateQuiescentStep(final WorkflowTrajectoryStep previousStep) {
+	assert isQuiescent();
+	final var previousStagesStep = previousStep.stagesStep();
+	final var stagesStep = ImmutableEnumMap.<Stage, StageTrajectoryStep>builder(ALL_STAGES);
+	var allShared = true;
+	for (var stage : transcendentals.allStages()) {
+	  final var previousStageStep = previousStagesStep.get(stage);
+	  final var queueShortage = stage.isHumanPowered()
+		  ? Math.max(0, Math.round(stepInputs.throughputIntegralAt(stepIndex, stage)))
+		  : Math.max(0, wavingDesiredPower(0));
+	  if (
+		  previousStageStep.processedTotal() == 0
+			  && previousStageStep.queueShortage() == queueShortage
+			  && previousStageStep.initialQueue().total() == 0
+			  && previousStageStep.incomingQueue().total() == 0
+	  ) {
+		stagesStep.add(stage, previousStageStep);
+	  } else {
+		allShared = false;
+		// the units that a stage doesn't process go nowhere, so the empty final queue of each destination stands for them
+		final var processed = ImmutableEnumMap.<Stage, Queue>builder(ALL_STAGES);
+		for (var nextStage : stage.nextStages()) {
+		  processed.add(nextStage, previousStagesStep.get(nextStage).finalQueue());
+		}
+		stagesStep.add(stage, new StageTrajectoryStep(
+			stage,
+			previousStageStep.finalQueue(),
+			stage.previousStage() == null ? stepInputs.upstreamIntegralAt(stepIndex) : previousStageStep.finalQueue(),
+			processed.build(),
+			previousStageStep.finalQueue(),
+			0,
+			queueShortage
+		));
+	  }
+	}
+	return new WorkflowTrajectoryStep(
+		stepStartingDate,
+		stepEndingDate,
+		allShared ? previousStagesStep : stagesStep.build(),
+		nextSlasByDeadline
+	);
+  }
+
+  /**
+   * Calculates how many units the waving stage should release during this step for the first processing stage to have its desired buffer
+   * when the step ends.
+   */
+  private long wavingDesiredPower(final long firstProcessingStageInitialQueueTotal) {
+	final var firstProcessingStageDesiredBufferSize = stepInputs.desiredBufferSizeAt(stepIndex);
+	return Math.round(transcendentals.staffingPlan().integrateThroughputOf(
+		transcendentals.processingStages().head(), stepStartingDate, stepEndingDate.plus(firstProcessingStageDesiredBufferSize)
+	)) - firstProcessingStageInitialQueueTotal;
+  }
+
+  /**
+   * Estimates a step for the specified stage and all the stages it feeds transitively, and adds them to the specified builder.
+   * <p>Each stage is estimated once per step, so concurrent branches add disjoint entries to the builder.
+   */
+  private void estimateAStepForAStageAndThoseThatFollowIt(
 	  final Stage stage,
 	  final Queue stageStepIncomingQueue,
-	  final ImmutableEnumMap<Stage, StageTrajectoryStep> alreadyEstimatedStages
+	  final ImmutableEnumMap.Builder<Stage, StageTrajectoryStep> estimatedStages
   ) {
-	if (stage == null) {
-	  return alreadyEstimatedStages;
-	} else {
+	if (stage != null) {
 	  final var stageStepStartingQueue = stepStartingBacklog.getQueueAt(stage);
 	  final var maxProcessedTotal = stageStepIncomingQueue.total() + stageStepStartingQueue.total();
-	  final var processingPower = Math.round(transcendentals.staffingPlan().integrateThroughputOf(stage, stepStartingDate,
-		  stepEndingDate
-	  ));
+	  final var processingPower = Math.round(stepInputs.throughputIntegralAt(stepIndex, stage));
 	  final var queueShortage = Math.max(0, processingPower - maxProcessedTotal);
 	  final var processedTotal = Math.min(maxProcessedTotal, processingPower);
-	  final var afterProcessQueues = transcendentals.processingOrderCriteria()
-		  .decide(stage, stageStepStartingQueue, processedTotal, stepStartingDate, stepEndingDate, nextSlasByDeadline);
-	  assert processedTotal == afterProcessQueues.processed().toStream(transcendentals.allStages()).mapToLong(x -> x.value().total()).sum();
+	  final var afterProcessQueues = decide(stage, stageStepStartingQueue, processedTotal);
+	  // the units processed by a final stage leave the workflow, so they have no destination stage
+	  assert stage.nextStages().length == 0
+		  || processedTotal == afterProcessQueues.processed().toStream(transcendentals.allStages()).mapToLong(x -> x.value().total()).sum();
 
 	  var stageTrajectoryStep = new StageTrajectoryStep(
 		  stage,
@@ -120,25 +197,63 @@ class WorkflowTrajectoryStepEstimators {
 		  queueShortage
 	  );
 
-	  return estimateParallelStagesChains(afterProcessQueues.processed(), alreadyEstimatedStages.put(stage, stageTrajectoryStep));
+	  estimatedStages.add(stage, stageTrajectoryStep);
+	  estimateParallelStagesChains(afterProcessQueues.processed(), estimatedStages);
+	}
+  }
+
+  /**
+   * Lets the processing order criteria prepare the decisions of this step. Should be called before forking the branches.
+   */
+  private void beginStep() {
+	stepDecider = transcendentals.processingOrderCriteria().beginStep(stepStartingDate, stepEndingDate, nextSlasByDeadline);
+  }
+
+  /**
+   * Asks the processing order criteria which units of the specified queue are processed during this step, committing a
+   * {@link ProjectionEvents.ProcessingDecision} event.
+   */
+  private ProcessingOrderCriteria.SplitQueue decide(final Stage stage, final Queue initialQueue, final long toProcessQuantity) {
+	final var event = new ProjectionEvents.ProcessingDecision();
+	event.begin();
+	final var splitQueue = stepDecider.decide(stage, initialQueue, toProcessQuantity);
+	event.end();
+	if (event.shouldCommit()) {
+	  event.stage = stage.name();
+	  event.queueSize = initialQueue.total();
+	  event.toProcessQuantity = toProcessQuantity;
+	  event.commit();
 	}
+	return splitQueue;
   }
 
-  private ImmutableEnumMap<Stage, StageTrajectoryStep> estimateParallelStagesChains(
-	  final ImmutableEnumMap<Stage, BacklogTrajectoryEstimator.Queue> incomingQueuesByStage,
-	  final ImmutableEnumMap<Stage, StageTrajectoryStep> alreadyEstimatedStages
+  /**
+   * Estimates a step for each of the branches of stages fed by the specified queues, and adds them to the specified builder. The branches
+   * are independent, so they are estimated concurrently when the {@link BranchesParallelism} allows it and at least two of them are heavy.
+   */
+  private void estimateParallelStagesChains(
+	  final ImmutableEnumMap<Stage, Queue> incomingQueuesByStage,
+	  final ImmutableEnumMap.Builder<Stage, StageTrajectoryStep> estimatedStages
   ) {
-	return incomingQueuesByStage.toStream(transcendentals.allStages())
-		.reduce(
-			alreadyEstimatedStages,
-			(previouslyEstimatedStages, processedQueueAndItsDestinationStage) -> previouslyEstimatedStages.putAll(
-				estimateAStepForAStageAndThoseThatFollowIt(
-					processedQueueAndItsDestinationStage.key(),
-					processedQueueAndItsDestinationStage.value(),
-					ImmutableEnumMap.of()
-				)
-			),
-			ImmutableEnumMap::putAll
-		);
+	final var branches = incomingQueuesByStage.toStream(transcendentals.allStages()).toList();
+	final var parallelism = transcendentals.branchesParallelism();
+	if (parallelism.isEnabled() && branches.size() > 1 && heavyBranchesCount(branches, parallelism.queueSizeThreshold()) > 1) {
+	  final var tasks = branches.stream()
+		  .map(branch -> ForkJoinTask.adapt(
+			  () -> estimateAStepForAStageAndThoseThatFollowIt(branch.key(), branch.value(), estimatedStages)
+		  ))
+		  .toList();
+	  parallelism.pool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+	} else {
+	  for (var branch : branches) {
+		estimateAStepForAStageAndThoseThatFollowIt(branch.key(), branch.value(), estimatedStages);
+	  }
+	}
+  }
+
+  private long heavyBranchesCount(final java.util.List<ImmutableMap.Entry<Stage, Queue>> branches, final long threshold) {
+	return branches.stream()
+		.filter(branch -> branch.value().total() + stepStartingBacklog.getQueueAt(branch.key()).total() >= threshold)
+		.count();
   }
 }
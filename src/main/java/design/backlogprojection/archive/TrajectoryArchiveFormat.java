@@ -0,0 +1,47 @@
+package design.backlogprojection.archive;
+
+/**
+ * Layout of the append-only archive of {@link design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep}s.
+ * <p>All the numbers are big-endian. The file starts with a header followed by a sequence of records.
+ * <pre>
+ * header:        int magic, short version, short flags
+ * record:        byte kind, int payloadLength, byte[payloadLength] payload
+ * string record: int id, byte[] utf8
+ * step record:   long startingEpochMillis, long endingEpochMillis, byte stagesCount, stageBlock[stagesCount],
+ *                [int pilesCount, pileBlock[pilesCount]]   (only when the {@link #FLAG_SLA_PILES} flag is set)
+ * stageBlock:    byte stageOrdinal, long initialTotal, long incomingTotal, long processedTotal, long finalTotal, long queueShortage
+ * pileBlock:     byte stageOrdinal, int slaId, long quantity
+ * </pre>
+ * The piles of a step record break down the final queue of each stage by SLA. The {@code slaId} references the string record, which is
+ * always written before the first step record that references it, whose content is the SLA identifier.
+ */
+final class TrajectoryArchiveFormat {
+  private TrajectoryArchiveFormat() {}
+
+  static final int MAGIC = 0x42544131; // "BTA1"
+  static final short VERSION = 1;
+  static final short FLAG_SLA_PILES = 1;
+
+  static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Short.BYTES;
+  static final int RECORD_HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+
+  static final byte KIND_STRING = 1;
+  static final byte KIND_STEP = 2;
+
+  static final int STEP_FIXED_SIZE = Long.BYTES + Long.BYTES + Byte.BYTES;
+  static final int STAGE_BLOCK_SIZE = Byte.BYTES + 5 * Long.BYTES;
+  static final int PILE_BLOCK_SIZE = Byte.BYTES + Integer.BYTES + Long.BYTES;
+
+  // offsets inside a stage block
+  static final int STAGE_ORDINAL = 0;
+  static final int STAGE_INITIAL_TOTAL = 1;
+  static final int STAGE_INCOMING_TOTAL = STAGE_INITIAL_TOTAL + Long.BYTES;
+  static final int STAGE_PROCESSED_TOTAL = STAGE_INCOMING_TOTAL + Long.BYTES;
+  static final int STAGE_FINAL_TOTAL = STAGE_PROCESSED_TOTAL + Long.BYTES;
+  static final int STAGE_QUEUE_SHORTAGE = STAGE_FINAL_TOTAL + Long.BYTES;
+
+  // offsets inside a pile block
+  static final int PILE_STAGE_ORDINAL = 0;
+  static final int PILE_SLA_ID = 1;
+  static final int PILE_QUANTITY = PILE_SLA_ID + Integer.BYTES;
+}
@@ -0,0 +1,285 @@
+package design.backlogprojection.archive;
+
+import design.global.Workflow.Stage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static design.backlogprojection.archive.TrajectoryArchiveFormat.*;
+
+/**
+ * Reads the archives written by the {@link TrajectoryArchiveWriter} without deserializing the archived steps into objects: the file is
+ * memory-mapped and the {@link StepCursor} accessors read the fields directly from the mapped region.
+ */
+public class TrajectoryArchiveReader implements Closeable {
+  /**
+   * Size of the regions of the file that are mapped at once. A record bigger than this is mapped on its own.
+   */
+  private static final long WINDOW_SIZE = 64L << 20;
+  private static final Stage[] STAGES = Stage.values();
+
+  private final FileChannel channel;
+  private final long size;
+  private final boolean hasSlaPiles;
+
+  private TrajectoryArchiveReader(final FileChannel channel) throws IOException {
+	this.channel = channel;
+	this.size = channel.size();
+	if (size < HEADER_SIZE) {
+	  throw new IOException("Not a trajectory archive: the file is shorter than the header");
+	}
+	final var header = ByteBuffer.allocate(HEADER_SIZE);
+	channel.read(header, 0);
+	header.flip();
+	if (header.getInt() != MAGIC) {
+	  throw new IOException("Not a trajectory archive: wrong magic number");
+	}
+	final var version = header.getShort();
+	if (version != VERSION) {
+	  throw new IOException(String.format("Unsupported trajectory archive version: %d", version));
+	}
+	this.hasSlaPiles = (header.getShort() & FLAG_SLA_PILES) != 0;
+  }
+
+  public static TrajectoryArchiveReader open(final Path path) throws IOException {
+	final var channel = FileChannel.open(path, StandardOpenOption.READ);
+	try {
+	  return new TrajectoryArchiveReader(channel);
+	} catch (IOException | RuntimeException e) {
+	  channel.close();
+	  throw e;
+	}
+  }
+
+  /**
+   * Tells if the step records of this archive contain the breakdown by SLA of the stages' final queues.
+   */
+  public boolean hasSlaPiles() {
+	return hasSlaPiles;
+  }
+
+  /**
+   * Creates a cursor positioned before the first archived step. Cursors are not thread safe but many of them may be used concurrently.
+   */
+  public StepCursor cursor() {
+	return new StepCursor();
+  }
+
+  @Override
+  public void close() throws IOException {
+	channel.close();
+  }
+
+  /**
+   * A flyweight view of the archived step on which it is positioned. The accessors are valid until the next call to {@link #next()}.
+   * <p>The stages of a step are accessed by index, from zero to {@link #stagesCount()}, in the order they were archived. Use
+   * {@link #indexOf(Stage)} to find the index of a given {@link Stage}.
+   */
+  public class StepCursor {
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long nextRecordPosition = HEADER_SIZE;
+	private int stepOffset = -1;
+	private int stagesCount;
+	private long[] stringPositions = new long[16];
+	private int[] stringLengths = new int[16];
+	private int stringsCount;
+
+	private StepCursor() {}
+
+	/**
+	 * Advances this cursor to the next archived step.
+	 * @return false if there are no more steps. An incomplete record at the end of the file (as left by an interrupted writer) is
+	 * 	ignored.
+	 */
+	public boolean next() {
+	  try {
+		while (nextRecordPosition + RECORD_HEADER_SIZE <= size) {
+		  map(nextRecordPosition, RECORD_HEADER_SIZE);
+		  final var recordOffset = (int) (nextRecordPosition - windowStart);
+		  final var kind = window.get(recordOffset);
+		  final var payloadLength = window.getInt(recordOffset + Byte.BYTES);
+		  final var payloadPosition = nextRecordPosition + RECORD_HEADER_SIZE;
+		  if (payloadPosition + payloadLength > size) {
+			break;
+		  }
+		  nextRecordPosition = payloadPosition + payloadLength;
+		  if (kind == KIND_STRING) {
+			map(payloadPosition, Integer.BYTES);
+			registerString(window.getInt((int) (payloadPosition - windowStart)), payloadPosition + Integer.BYTES,
+				payloadLength - Integer.BYTES
+			);
+		  } else if (kind == KIND_STEP) {
+			map(payloadPosition, payloadLength);
+			stepOffset = (int) (payloadPosition - windowStart);
+			stagesCount = window.get(stepOffset + 2 * Long.BYTES);
+			return true;
+		  } else {
+			throw new IllegalStateException(String.format("Unknown record kind %d at position %d", kind, payloadPosition));
+		  }
+		}
+		stepOffset = -1;
+		return false;
+	  } catch (IOException e) {
+		throw new UncheckedIOException(e);
+	  }
+	}
+
+	public long startingEpochMillis() {
+	  return window.getLong(stepOffset);
+	}
+
+	public long endingEpochMillis() {
+	  return window.getLong(stepOffset + Long.BYTES);
+	}
+
+	public Instant startingDate() {
+	  return Instant.ofEpochMilli(startingEpochMillis());
+	}
+
+	public Instant endingDate() {
+	  return Instant.ofEpochMilli(endingEpochMillis());
+	}
+
+	public int stagesCount() {
+	  return stagesCount;
+	}
+
+	public Stage stageAt(final int index) {
+	  return STAGES[window.get(stageBlockOffset(index) + STAGE_ORDINAL)];
+	}
+
+	/**
+	 * @return the index of the specified {@link Stage} in the current step, or -1 if the step does not contain it.
+	 */
+	public int indexOf(final Stage stage) {
+	  for (var index = 0; index < stagesCount; ++index) {
+		if (window.get(stageBlockOffset(index) + STAGE_ORDINAL) == stage.ordinal()) {
+		  return index;
+		}
+	  }
+	  return -1;
+	}
+
+	public long initialTotal(final int index) {
+	  return window.getLong(stageBlockOffset(index) + STAGE_INITIAL_TOTAL);
+	}
+
+	public long incomingTotal(final int index) {
+	  return window.getLong(stageBlockOffset(index) + STAGE_INCOMING_TOTAL);
+	}
+
+	public long processedTotal(final int index) {
+	  return window.getLong(stageBlockOffset(index) + STAGE_PROCESSED_TOTAL);
+	}
+
+	public long finalTotal(final int index) {
+	  return window.getLong(stageBlockOffset(index) + STAGE_FINAL_TOTAL);
+	}
+
+	public long queueShortage(final int index) {
+	  return window.getLong(stageBlockOffset(index) + STAGE_QUEUE_SHORTAGE);
+	}
+
+	/**
+	 * The number of piles in which the final queues of the current step are broken down. Always zero when the archive has no SLA piles.
+	 */
+	public int pilesCount() {
+	  return hasSlaPiles ? window.getInt(pilesCountOffset()) : 0;
+	}
+
+	public Stage pileStage(final int pileIndex) {
+	  return STAGES[window.get(pileBlockOffset(pileIndex) + PILE_STAGE_ORDINAL)];
+	}
+
+	/**
+	 * The id of the SLA of the specified pile. Use {@link #slaIdentifier(int)} to get the identifier of the SLA.
+	 */
+	public int pileSlaId(final int pileIndex) {
+	  return window.getInt(pileBlockOffset(pileIndex) + PILE_SLA_ID);
+	}
+
+	public long pileQuantity(final int pileIndex) {
+	  return window.getLong(pileBlockOffset(pileIndex) + PILE_QUANTITY);
+	}
+
+	/**
+	 * The number of SLA identifiers this cursor has gone through. All the SLA ids referenced by the steps already visited are lower than
+	 * this number.
+	 */
+	public int slaIdentifiersCount() {
+	  return stringsCount;
+	}
+
+	/**
+	 * Decodes the identifier of the SLA whose id is specified. This is the only accessor that allocates.
+	 */
+	public String slaIdentifier(final int slaId) {
+	  if (slaId < 0 || slaId >= stringsCount) {
+		throw new IllegalArgumentException(String.format("Unknown SLA id: %d", slaId));
+	  }
+	  final var bytes = ByteBuffer.allocate(stringLengths[slaId]);
+	  try {
+		while (bytes.hasRemaining()) {
+		  if (channel.read(bytes, stringPositions[slaId] + bytes.position()) < 0) {
+			throw new IOException("Unexpected end of file");
+		  }
+		}
+	  } catch (IOException e) {
+		throw new UncheckedIOException(e);
+	  }
+	  return new String(bytes.array(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The position of the end of the last complete record this cursor has gone through.
+	 */
+	long endOfLastCompleteRecord() {
+	  return nextRecordPosition;
+	}
+
+	private int stageBlockOffset(final int index) {
+	  return stepOffset + STEP_FIXED_SIZE + index * STAGE_BLOCK_SIZE;
+	}
+
+	private int pilesCountOffset() {
+	  return stepOffset + STEP_FIXED_SIZE + stagesCount * STAGE_BLOCK_SIZE;
+	}
+
+	private int pileBlockOffset(final int pileIndex) {
+	  return pilesCountOffset() + Integer.BYTES + pileIndex * PILE_BLOCK_SIZE;
+	}
+
+	private void registerString(final int id, final long position, final int length) {
+	  if (id != stringsCount) {
+		throw new IllegalStateException(String.format("Unexpected SLA id %d, expected %d", id, stringsCount));
+	  }
+	  if (stringsCount == stringPositions.length) {
+		stringPositions = Arrays.copyOf(stringPositions, 2 * stringsCount);
+		stringLengths = Arrays.copyOf(stringLengths, 2 * stringsCount);
+	  }
+	  stringPositions[stringsCount] = position;
+	  stringLengths[stringsCount] = length;
+	  stringsCount += 1;
+	}
+
+	/**
+	 * Ensures the region {@code [position, position + length)} of the file is contained in the mapped window.
+	 */
+	private void map(final long position, final int length) throws IOException {
+	  if (window == null || position < windowStart || position + length > windowStart + window.limit()) {
+		windowStart = position;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Math.max(WINDOW_SIZE, length)));
+	  }
+	}
+  }
+}
@@ -0,0 +1,240 @@
+package design.backlogprojection.archive;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StageTrajectoryStep;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.backlogprojection.SlaBreakdown;
+import design.global.Workflow.Stage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import static design.backlogprojection.archive.TrajectoryArchiveFormat.*;
+
+/**
+ * Appends {@link WorkflowTrajectoryStep}s to an archive whose layout is described in {@link TrajectoryArchiveFormat}. Only the totals of
+ * the stages' queues are archived and, optionally, the breakdown by SLA of the final queues.
+ * <p>If the file already exists the steps are appended after the last complete record, so an archive left incomplete by an interrupted
+ * writer is repaired. Instances are not thread safe.
+ */
+public class TrajectoryArchiveWriter implements Closeable {
+  private static final int INITIAL_BUFFER_CAPACITY = 1 << 16;
+  private static final Stage[] STAGES = Stage.values();
+
+  private final FileChannel channel;
+  private final SlaBreakdown slaBreakdown;
+  private final Function<Sla, String> slaIdentifier;
+  private final Map<String, Integer> slaIdsByIdentifier;
+  private final StageTrajectoryStep[] stageStepsBuffer = new StageTrajectoryStep[STAGES.length];
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_CAPACITY);
+
+  private TrajectoryArchiveWriter(
+	  final FileChannel channel,
+	  final SlaBreakdown slaBreakdown,
+	  final Function<Sla, String> slaIdentifier,
+	  final Map<String, Integer> slaIdsByIdentifier
+  ) {
+	this.channel = channel;
+	this.slaBreakdown = slaBreakdown;
+	this.slaIdentifier = slaIdentifier;
+	this.slaIdsByIdentifier = slaIdsByIdentifier;
+  }
+
+  /**
+   * Opens an archive whose steps contain only the totals of the stages' queues.
+   */
+  public static TrajectoryArchiveWriter openTotalsOnly(final Path path) throws IOException {
+	return open(path, null, null);
+  }
+
+  /**
+   * Opens an archive whose steps contain, besides the totals, the breakdown by SLA of the stages' final queues.
+   * @param slaBreakdown knows how to break down the queues of the archived steps.
+   * @param slaIdentifier gives the identifier, unique and stable across archives, of an SLA.
+   */
+  public static TrajectoryArchiveWriter openWithSlaPiles(
+	  final Path path,
+	  final SlaBreakdown slaBreakdown,
+	  final Function<Sla, String> slaIdentifier
+  ) throws IOException {
+	return open(path, Objects.requireNonNull(slaBreakdown), Objects.requireNonNull(slaIdentifier));
+  }
+
+  private static TrajectoryArchiveWriter open(
+	  final Path path,
+	  final SlaBreakdown slaBreakdown,
+	  final Function<Sla, String> slaIdentifier
+  ) throws IOException {
+	final var slaIdsByIdentifier = new HashMap<String, Integer>();
+	var validLength = 0L;
+	if (Files.exists(path) && Files.size(path) > 0) {
+	  try (var reader = TrajectoryArchiveReader.open(path)) {
+		if (reader.hasSlaPiles() != (slaBreakdown != null)) {
+		  throw new IllegalArgumentException(String.format(
+			  "The archive %s %s SLA piles", path, reader.hasSlaPiles() ? "has" : "does not have"
+		  ));
+		}
+		final var cursor = reader.cursor();
+		while (cursor.next()) {
+		  // just go through all the records to find the end of the last complete one and collect the SLA identifiers
+		}
+		for (var slaId = 0; slaId < cursor.slaIdentifiersCount(); ++slaId) {
+		  slaIdsByIdentifier.put(cursor.slaIdentifier(slaId), slaId);
+		}
+		validLength = cursor.endOfLastCompleteRecord();
+	  }
+	}
+
+	final var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+	try {
+	  final var writer = new TrajectoryArchiveWriter(channel, slaBreakdown, slaIdentifier, slaIdsByIdentifier);
+	  if (validLength == 0) {
+		channel.truncate(0);
+		writer.buffer.putInt(MAGIC).putShort(VERSION).putShort(slaBreakdown == null ? 0 : FLAG_SLA_PILES);
+	  } else {
+		channel.truncate(validLength);
+		channel.position(validLength);
+	  }
+	  return writer;
+	} catch (IOException | RuntimeException e) {
+	  channel.close();
+	  throw e;
+	}
+  }
+
+  public void appendAll(final Iterable<WorkflowTrajectoryStep> steps) throws IOException {
+	for (var step : steps) {
+	  append(step);
+	}
+  }
+
+  public void append(final WorkflowTrajectoryStep step) throws IOException {
+	var stagesCount = 0;
+	for (var stage : STAGES) {
+	  final var stageStep = step.stagesStep().get(stage);
+	  if (stageStep != null) {
+		stageStepsBuffer[stagesCount++] = stageStep;
+	  }
+	}
+
+	// The piles are collected before writing the step record because the string records of the SLAs they reference should precede it.
+	final var piles = slaBreakdown == null ? null : collectPiles(stagesCount);
+	final var pilesSize = piles == null ? 0 : Integer.BYTES + piles.size() * PILE_BLOCK_SIZE;
+
+	final var payloadLength = STEP_FIXED_SIZE + stagesCount * STAGE_BLOCK_SIZE + pilesSize;
+	reserve(RECORD_HEADER_SIZE + payloadLength);
+	buffer.put(KIND_STEP).putInt(payloadLength);
+	buffer.putLong(step.startingDate().toEpochMilli())
+		.putLong(step.endingDate().toEpochMilli())
+		.put((byte) stagesCount);
+	for (var index = 0; index < stagesCount; ++index) {
+	  final var stageStep = stageStepsBuffer[index];
+	  buffer.put((byte) stageStep.stage().ordinal())
+		  .putLong(stageStep.initialQueue().total())
+		  .putLong(stageStep.incomingQueue().total())
+		  .putLong(stageStep.processedTotal())
+		  .putLong(stageStep.finalQueue().total())
+		  .putLong(stageStep.queueShortage());
+	  stageStepsBuffer[index] = null;
+	}
+	if (piles != null) {
+	  buffer.putInt(piles.size());
+	  for (var pile : piles.entrySet()) {
+		buffer.put((byte) pile.getKey().stage.ordinal())
+			.putInt(pile.getKey().slaId)
+			.putLong(pile.getValue());
+	  }
+	}
+  }
+
+  /**
+   * Writes the buffered records to the file.
+   */
+  public void flush() throws IOException {
+	buffer.flip();
+	while (buffer.hasRemaining()) {
+	  channel.write(buffer);
+	}
+	buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+	try {
+	  flush();
+	} finally {
+	  channel.close();
+	}
+  }
+
+  private Map<PileKey, Long> collectPiles(final int stagesCount) throws IOException {
+	final var piles = new LinkedHashMap<PileKey, Long>();
+	for (var index = 0; index < stagesCount; ++index) {
+	  final var stage = stageStepsBuffer[index].stage();
+	  slaBreakdown.forEachPile(stageStepsBuffer[index].finalQueue(), (sla, quantity) -> {
+		if (quantity != 0) {
+		  piles.merge(new PileKey(stage, slaIdentifier.apply(sla)), quantity, Long::sum);
+		}
+	  });
+	}
+	for (var pileKey : piles.keySet()) {
+	  pileKey.slaId = slaIdOf(pileKey.slaIdentifier);
+	}
+	return piles;
+  }
+
+  private int slaIdOf(final String identifier) throws IOException {
+	final var knownId = slaIdsByIdentifier.get(identifier);
+	if (knownId != null) {
+	  return knownId;
+	} else {
+	  final var id = slaIdsByIdentifier.size();
+	  final var bytes = identifier.getBytes(StandardCharsets.UTF_8);
+	  reserve(RECORD_HEADER_SIZE + Integer.BYTES + bytes.length);
+	  buffer.put(KIND_STRING).putInt(Integer.BYTES + bytes.length).putInt(id).put(bytes);
+	  slaIdsByIdentifier.put(identifier, id);
+	  return id;
+	}
+  }
+
+  private void reserve(final int size) throws IOException {
+	if (buffer.remaining() < size) {
+	  flush();
+	  if (buffer.capacity() < size) {
+		buffer = ByteBuffer.allocateDirect(Math.max(size, 2 * buffer.capacity()));
+	  }
+	}
+  }
+
+  private static final class PileKey {
+	private final Stage stage;
+	private final String slaIdentifier;
+	private int slaId;
+
+	PileKey(final Stage stage, final String slaIdentifier) {
+	  this.stage = stage;
+	  this.slaIdentifier = slaIdentifier;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+	  return o instanceof PileKey other && this.stage == other.stage && this.slaIdentifier.equals(other.slaIdentifier);
+	}
+
+	@Override
+	public int hashCode() {
+	  return 31 * stage.hashCode() + slaIdentifier.hashCode();
+	}
+  }
+}
@@ -0,0 +1,242 @@
+package design.backlogprojection.montecarlo;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.global.ImmutableEnumMap;
+import design.global.Workflow.Stage;
+
+import fj.data.List;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Estimates the distribution of the backlog trajectory of a workflow when the upstream throughput and the productivity of the human powered
+ * stages deviate from their single-point forecasts.
+ * <p>Each scenario multiplies, at every step, the upstream throughput and the processing power of each human powered stage by factors
+ * sampled from the configured {@link Perturbation}s. To make thousands of scenarios affordable, the scenarios are simulated on totals only,
+ * over a structure-of-arrays state, taking from an exact baseline trajectory (calculated by the {@link
+ * design.backlogprojection.BacklogTrajectoryEstimator}) the unperturbed processing power of each stage and the proportion of the units
+ * processed by each stage that goes to each of the following ones. The processing power of the stages that are not human powered (waving)
+ * is not perturbed.
+ * <p>The final backlog of every stage at every step is folded into a {@link QuantileSketch} instead of keeping the scenarios. The
+ * scenarios are simulated in chunks, and each worker folds all its chunks into the same sketches, so the memory needed depends on the
+ * number of workers but not on the number of scenarios.
+ */
+public class MonteCarloProjector {
+  private static final Stage[] ALL_STAGES = Stage.values();
+  private static final int SCENARIOS_PER_CHUNK = 64;
+
+  /**
+   * @param scenariosCount the number of sampled scenarios.
+   * @param upstreamPerturbation the distribution of the factor applied to the upstream throughput of a step.
+   * @param productivityPerturbation the distribution of the factor applied to the processing power of a human powered stage during a step.
+   * @param quantileLevels the levels of the quantiles to report, in [0, 1].
+   * @param relativeAccuracy the maximum relative error of the reported quantiles.
+   * @param seed the seed of the random generators. The same seed gives the same result.
+   */
+  public record Settings(
+	  int scenariosCount,
+	  Perturbation upstreamPerturbation,
+	  Perturbation productivityPerturbation,
+	  double[] quantileLevels,
+	  double relativeAccuracy,
+	  long seed
+  ) {}
+
+  /**
+   * @param finalTotalQuantiles the quantiles, in the order of the {@link Settings#quantileLevels}, of the total backlog at each stage when
+   * 	the step ends.
+   */
+  public record ProbabilisticStep(Instant startingDate, Instant endingDate, ImmutableEnumMap<Stage, long[]> finalTotalQuantiles) {}
+
+  public record ProbabilisticTrajectory(int scenariosCount, double[] quantileLevels, List<ProbabilisticStep> steps) {}
+
+  private final Settings settings;
+
+  public MonteCarloProjector(final Settings settings) {
+	if (settings.scenariosCount <= 0) {
+	  throw new IllegalArgumentException(String.format("Invalid scenarios count: %d", settings.scenariosCount));
+	}
+	this.settings = settings;
+  }
+
+  /**
+   * Samples the configured number of scenarios around the specified baseline trajectory and gives the quantiles of the final backlog of
+   * each stage at each step.
+   * @param stages the stages of the workflow the baseline trajectory corresponds to, such that every stage comes after the one that feeds
+   * 	it.
+   * @param baselineSteps an exact trajectory of the workflow backlog.
+   */
+  public ProbabilisticTrajectory project(final Stage[] stages, final List<WorkflowTrajectoryStep> baselineSteps) {
+	final var baseline = new Baseline(stages, baselineSteps.array(WorkflowTrajectoryStep[].class));
+	final var chunksCount = (settings.scenariosCount + SCENARIOS_PER_CHUNK - 1) / SCENARIOS_PER_CHUNK;
+	final var workersCount = Math.min(chunksCount, ForkJoinPool.getCommonPoolParallelism());
+	// the worker w simulates the chunks w, w + workersCount, ... Each chunk has its own seed, so the result doesn't depend on the workers
+	final var sketches = IntStream.range(0, workersCount)
+		.parallel()
+		.mapToObj(worker -> {
+		  final var workerSketches = new QuantileSketch[baseline.stepsCount * baseline.stagesCount];
+		  for (var i = 0; i < workerSketches.length; ++i) {
+			workerSketches[i] = new QuantileSketch(settings.relativeAccuracy);
+		  }
+		  for (var chunk = worker; chunk < chunksCount; chunk += workersCount) {
+			simulateChunk(
+				baseline,
+				Math.min(SCENARIOS_PER_CHUNK, settings.scenariosCount - chunk * SCENARIOS_PER_CHUNK),
+				new SplittableRandom(settings.seed + chunk),
+				workerSketches
+			);
+		  }
+		  return workerSketches;
+		})
+		.reduce(MonteCarloProjector::merge)
+		.orElseThrow();
+
+	List<ProbabilisticStep> steps = List.nil();
+	for (var t = baseline.stepsCount - 1; t >= 0; --t) {
+	  final var quantilesByStage = ImmutableEnumMap.<Stage, long[]>builder(ALL_STAGES);
+	  for (var s = 0; s < baseline.stagesCount; ++s) {
+		final var sketch = sketches[t * baseline.stagesCount + s];
+		final var quantiles = new long[settings.quantileLevels.length];
+		for (var q = 0; q < quantiles.length; ++q) {
+		  quantiles[q] = sketch.quantile(settings.quantileLevels[q]);
+		}
+		quantilesByStage.add(stages[s], quantiles);
+	  }
+	  final var baselineStep = baseline.steps[t];
+	  steps = List.cons(
+		  new ProbabilisticStep(baselineStep.startingDate(), baselineStep.endingDate(), quantilesByStage.build()),
+		  steps
+	  );
+	}
+	return new ProbabilisticTrajectory(settings.scenariosCount, settings.quantileLevels, steps);
+  }
+
+  /**
+   * Simulates the specified number of scenarios. The state of the scenarios is kept in arrays indexed by
+   * {@code stageIndex * scenariosCount + scenarioIndex}, so that the inner loops traverse contiguous memory.
+   * @param sketches where the final backlogs are added, indexed by {@code stepIndex * stagesCount + stageIndex}.
+   */
+  private void simulateChunk(
+	  final Baseline baseline,
+	  final int scenariosCount,
+	  final SplittableRandom random,
+	  final QuantileSketch[] sketches
+  ) {
+	final var stagesCount = baseline.stagesCount;
+	final var queues = new long[stagesCount * scenariosCount];
+	final var processed = new long[stagesCount * scenariosCount];
+	for (var s = 0; s < stagesCount; ++s) {
+	  for (var j = 0; j < scenariosCount; ++j) {
+		queues[s * scenariosCount + j] = baseline.initialTotals[s];
+	  }
+	}
+
+	for (var t = 0; t < baseline.stepsCount; ++t) {
+	  for (var s = 0; s < stagesCount; ++s) {
+		final var cell = t * stagesCount + s;
+		final var sketch = sketches[cell];
+		final var base = s * scenariosCount;
+		final var previous = baseline.previousIndexes[s];
+		final var isHumanPowered = baseline.humanPowered[s];
+		for (var j = 0; j < scenariosCount; ++j) {
+		  final long incoming = previous < 0
+			  ? Math.round(baseline.rootIncomingTotals[cell] * settings.upstreamPerturbation.sample(random))
+			  : Math.round(processed[previous * scenariosCount + j] * baseline.routingFractions[cell]);
+		  final long power = isHumanPowered
+			  ? Math.round(baseline.processingPowers[cell] * settings.productivityPerturbation.sample(random))
+			  : baseline.processingPowers[cell];
+		  final var initial = queues[base + j];
+		  // like the exact estimators, the stages that are not human powered can't process the units that arrive during the step
+		  final var available = isHumanPowered ? initial + incoming : initial;
+		  final var processedTotal = Math.max(0, Math.min(power, available));
+		  processed[base + j] = processedTotal;
+		  queues[base + j] = initial + incoming - processedTotal;
+		  sketch.add(queues[base + j]);
+		}
+	  }
+	}
+  }
+
+  private static QuantileSketch[] merge(final QuantileSketch[] a, final QuantileSketch[] b) {
+	for (var i = 0; i < a.length; ++i) {
+	  a[i].merge(b[i]);
+	}
+	return a;
+  }
+
+  /**
+   * The totals of the baseline trajectory needed by the simulation, indexed by {@code stepIndex * stagesCount + stageIndex}.
+   */
+  private static class Baseline {
+	final WorkflowTrajectoryStep[] steps;
+	final int stepsCount;
+	final int stagesCount;
+	final int[] previousIndexes;
+	final boolean[] humanPowered;
+	final long[] initialTotals;
+	final long[] rootIncomingTotals;
+	final long[] processingPowers;
+	final double[] routingFractions;
+
+	Baseline(final Stage[] stages, final WorkflowTrajectoryStep[] steps) {
+	  this.steps = steps;
+	  this.stepsCount = steps.length;
+	  this.stagesCount = stages.length;
+	  this.previousIndexes = new int[stagesCount];
+	  this.humanPowered = new boolean[stagesCount];
+	  this.initialTotals = new long[stagesCount];
+	  this.rootIncomingTotals = new long[stepsCount * stagesCount];
+	  this.processingPowers = new long[stepsCount * stagesCount];
+	  this.routingFractions = new double[stepsCount * stagesCount];
+
+	  for (var s = 0; s < stagesCount; ++s) {
+		final var stage = stages[s];
+		previousIndexes[s] = indexOf(stages, stage.previousStage());
+		if (stage.previousStage() != null && previousIndexes[s] >= s) {
+		  throw new IllegalArgumentException(String.format("The stage %s comes before the one that feeds it", stage));
+		}
+		humanPowered[s] = stage.isHumanPowered();
+		final var firstStageStep = stepsCount == 0 ? null : steps[0].stagesStep().get(stage);
+		initialTotals[s] = firstStageStep == null ? 0 : firstStageStep.initialQueue().total();
+	  }
+
+	  for (var t = 0; t < stepsCount; ++t) {
+		final var stagesStep = steps[t].stagesStep();
+		for (var s = 0; s < stagesCount; ++s) {
+		  final var cell = t * stagesCount + s;
+		  final var stage = stages[s];
+		  final var stageStep = stagesStep.get(stage);
+		  if (stageStep != null) {
+			processingPowers[cell] = stageStep.processedTotal() + stageStep.queueShortage();
+			rootIncomingTotals[cell] = stageStep.incomingQueue().total();
+		  }
+		  final var previousStage = stage.previousStage();
+		  if (previousStage != null) {
+			final var previousStep = stagesStep.get(previousStage);
+			final var destinationsCount = previousStage.nextStages().length;
+			if (previousStep == null || previousStep.processedTotal() == 0) {
+			  routingFractions[cell] = 1.0 / destinationsCount;
+			} else {
+			  final var routed = previousStep.processedQueueByDestinationStage().get(stage);
+			  routingFractions[cell] = routed == null
+				  ? (destinationsCount == 1 ? 1.0 : 0.0)
+				  : (double) routed.total() / previousStep.processedTotal();
+			}
+		  }
+		}
+	  }
+	}
+
+	private static int indexOf(final Stage[] stages, final Stage stage) {
+	  for (var i = 0; i < stages.length; ++i) {
+		if (stages[i] == stage) {
+		  return i;
+		}
+	  }
+	  return -1;
+	}
+  }
+}
@@ -0,0 +1,43 @@
+package design.backlogprojection.montecarlo;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A distribution of the multiplicative factors applied to a single-point forecast to get a scenario.
+ */
+@FunctionalInterface
+public interface Perturbation {
+
+  /**
+   * Samples a non-negative factor.
+   */
+  double sample(RandomGenerator random);
+
+  /**
+   * The factor is always one: the forecast is not perturbed.
+   */
+  static Perturbation none() {
+	return random -> 1;
+  }
+
+  /**
+   * A log-normal distribution with mean one and the specified standard deviation of the logarithm.
+   */
+  static Perturbation logNormal(final double sigma) {
+	if (sigma < 0) {
+	  throw new IllegalArgumentException(String.format("Invalid sigma: %s", sigma));
+	}
+	final var mu = -sigma * sigma / 2;
+	return random -> Math.exp(mu + sigma * random.nextGaussian());
+  }
+
+  /**
+   * A uniform distribution on the specified interval.
+   */
+  static Perturbation uniform(final double lowerBound, final double upperBound) {
+	if (lowerBound < 0 || upperBound < lowerBound) {
+	  throw new IllegalArgumentException(String.format("Invalid bounds: [%s, %s]", lowerBound, upperBound));
+	}
+	return random -> lowerBound + (upperBound - lowerBound) * random.nextDouble();
+  }
+}
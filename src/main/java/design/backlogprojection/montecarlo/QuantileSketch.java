@@ -0,0 +1,114 @@
+package design.backlogprojection.montecarlo;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch of the distribution of non-negative integers that answers quantile queries with a bounded relative error, using
+ * memory proportional to the logarithm of the ratio between the greatest and the smallest added value.
+ * <p>The values are counted in buckets whose bounds grow geometrically: bucket {@code i} counts the values in
+ * {@code (gamma^(i-1), gamma^i]}, where {@code gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy)}. Zeros are counted apart.
+ * <p>Instances are not thread safe. Concurrent producers should use an instance each and {@link #merge} them afterwards.
+ */
+public final class QuantileSketch {
+  private static final int[] NO_COUNTS = new int[0];
+
+  private final double gamma;
+  private final double logGamma;
+  private long zerosCount;
+  private long count;
+  /** The count of bucket {@code i} is at {@code counts[i - offset]}. */
+  private int[] counts = NO_COUNTS;
+  private int offset;
+
+  /**
+   * @param relativeAccuracy the maximum relative error of the values returned by {@link #quantile(double)}. Should be in (0, 1).
+   */
+  public QuantileSketch(final double relativeAccuracy) {
+	if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+	  throw new IllegalArgumentException(String.format("Invalid relative accuracy: %s", relativeAccuracy));
+	}
+	this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+	this.logGamma = Math.log(gamma);
+  }
+
+  public long count() {
+	return count;
+  }
+
+  public void add(final long value) {
+	if (value < 0) {
+	  throw new IllegalArgumentException(String.format("Negative value: %d", value));
+	}
+	count += 1;
+	if (value == 0) {
+	  zerosCount += 1;
+	} else {
+	  final var index = (int) Math.ceil(Math.log(value) / logGamma);
+	  ensureCapacity(index, index);
+	  counts[index - offset] += 1;
+	}
+  }
+
+  /**
+   * Adds the values counted by the specified sketch to this one. Both sketches should have the same relative accuracy.
+   */
+  public void merge(final QuantileSketch other) {
+	if (other.gamma != gamma) {
+	  throw new IllegalArgumentException("The sketches have different relative accuracies");
+	}
+	count += other.count;
+	zerosCount += other.zerosCount;
+	if (other.counts.length > 0) {
+	  ensureCapacity(other.offset, other.offset + other.counts.length - 1);
+	  for (var i = 0; i < other.counts.length; ++i) {
+		counts[other.offset + i - offset] += other.counts[i];
+	  }
+	}
+  }
+
+  /**
+   * Gives an approximation of the specified quantile of the added values, whose relative error is not greater than the relative accuracy
+   * this sketch was created with.
+   * @param level the quantile level, in [0, 1].
+   * @return the approximated quantile, or zero if no value was added.
+   */
+  public long quantile(final double level) {
+	if (level < 0 || level > 1) {
+	  throw new IllegalArgumentException(String.format("Invalid quantile level: %s", level));
+	}
+	if (count == 0) {
+	  return 0;
+	}
+	final var rank = (long) Math.floor(level * (count - 1));
+	var accumulated = zerosCount;
+	if (rank < accumulated) {
+	  return 0;
+	}
+	for (var i = 0; i < counts.length; ++i) {
+	  accumulated += counts[i];
+	  if (rank < accumulated) {
+		return Math.round(2 * Math.pow(gamma, i + offset) / (gamma + 1));
+	  }
+	}
+	throw new AssertionError("unreachable");
+  }
+
+  private void ensureCapacity(final int minIndex, final int maxIndex) {
+	if (counts.length == 0) {
+	  counts = new int[maxIndex - minIndex + 1];
+	  offset = minIndex;
+	} else if (minIndex < offset || maxIndex >= offset + counts.length) {
+	  final var newOffset = Math.min(offset, minIndex);
+	  final var newLength = Math.max(offset + counts.length, maxIndex + 1) - newOffset;
+	  final var newCounts = new int[newLength];
+	  System.arraycopy(counts, 0, newCounts, offset - newOffset, counts.length);
+	  counts = newCounts;
+	  offset = newOffset;
+	}
+  }
+
+  @Override
+  public String toString() {
+	return String.format("QuantileSketch{count=%d, zeros=%d, offset=%d, counts=%s}", count, zerosCount, offset, Arrays.toString(counts));
+  }
+}
@@ -4,6 +4,8 @@ import design.backlogprojection.BacklogTrajectoryEstimator.ProcessingOrderCriter
 import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
 import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
 import design.backlogprojection.processingcriterias.SlaDiscriminatedPoc.SlaQueue;
+import design.global.ImmutableEnumMap;
+import design.global.Interner;
 import design.global.Workflow.QueueType;
 import design.global.Workflow.Stage;
 
@@ -13,35 +15,232 @@ import fj.data.List;
 import fj.data.TreeMap;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.ObjLongConsumer;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
+/**
+ * A {@link ProcessingOrderCriteria} whose FIFO queues discriminate the units by batch and SLA, and whose FEFO queues discriminate them by
+ * SLA.
+ * <p>The queues, heaps and piles created by this criteria are hash-consed: equal instances are shared, within and across the steps of a
+ * trajectory, which reduces the retained heap of long trajectories and allows comparing them by identity.
+ * <p>The heaps of the FIFO queues may be merged according to a {@link HeapCompactionPolicy} before deciding, which bounds the cost of a
+ * step regardless of the trajectory's length.
+ */
 public class BatchDiscriminatedPoc implements ProcessingOrderCriteria {
+  private final Interner<Pile> piles = new Interner<>();
+  private final Interner<Heap> heaps = new Interner<>();
+  private final Interner<Queue> queues = new Interner<>();
+  private final HeapCompactionPolicy compactionPolicy;
+  private final HeapCompactionPolicy.Listener compactionListener;
+
+  public BatchDiscriminatedPoc() {
+	this(HeapCompactionPolicy.NONE, HeapCompactionPolicy.Listener.NONE);
+  }
+
+  public BatchDiscriminatedPoc(final HeapCompactionPolicy compactionPolicy, final HeapCompactionPolicy.Listener compactionListener) {
+	this.compactionPolicy = compactionPolicy;
+	this.compactionListener = compactionListener;
+  }
 
   @Override
   public SplitQueue decide(
 	  Stage stage, Queue queue, long toProcessQuantity, Instant start, Instant end, TreeMap<Instant, List<Sla>> nextSlasByDeadline
   ) {
-	if (stage.inQueueType() == QueueType.FIFO && queue instanceof BatchQueue initialQueue) {
-	  return consumeProportionally(initialQueue.total, initialQueue.heaps, toProcessQuantity, 0, List.nil());
+	if (stage.inQueueType() == QueueType.FIFO && queue instanceof BatchQueue uncompactedQueue) {
+	  final var initialQueue = compact(stage, uncompactedQueue);
+	  if (toProcessQuantity == 0) {
+		// an untouched queue stays the same instance
+		return routed(stage, initialQueue, BatchQueue.EMPTY);
+	  } else {
+		final var split = consumeProportionally(initialQueue, toProcessQuantity);
+		return routed(stage, split._1(), split._2());
+	  }
 	} else if (stage.inQueueType() == QueueType.FEFO && queue instanceof SlaQueue initialQueue) {
-	  return consumeNearDeadlineSlasFirst(initialQueue.quantityBySla(), toProcessQuantity, nextSlasByDeadline);
+	  return toProcessQuantity == 0
+		  ? routed(stage, initialQueue, BatchQueue.EMPTY)
+		  : consumeNearDeadlineSlasFirst(stage, initialQueue.quantityBySla(), toProcessQuantity, slasByDeadline(nextSlasByDeadline));
 	} else {
 	  throw new IllegalArgumentException(String.format("Invalid queue type: %s", queue.getClass()));
 	}
   }
 
+  /**
+   * Gives a {@link StepDecider} that sorts the SLAs by deadline once per step, instead of once per FEFO stage.
+   */
+  @Override
+  public StepDecider beginStep(final Instant start, final Instant end, final TreeMap<Instant, List<Sla>> nextSlasByDeadline) {
+	final var slas = slasByDeadline(nextSlasByDeadline);
+	return (stage, queue, toProcessQuantity) -> {
+	  if (stage.inQueueType() == QueueType.FEFO && queue instanceof SlaQueue initialQueue && toProcessQuantity > 0) {
+		return consumeNearDeadlineSlasFirst(stage, initialQueue.quantityBySla(), toProcessQuantity, slas);
+	  } else {
+		return decide(stage, queue, toProcessQuantity, start, end, nextSlasByDeadline);
+	  }
+	};
+  }
+
+  private static Sla[] slasByDeadline(final TreeMap<Instant, List<Sla>> nextSlasByDeadline) {
+	return List.join(nextSlasByDeadline.values()).toJavaList().toArray(Sla[]::new);
+  }
+
   @Override
   public Stream<Instant> getInflectionPointsBetween(Instant from, Instant to) {
 	return Stream.empty();
   }
 
-  private SplitQueue consumeProportionally(
+  /**
+   * A {@link design.backlogprojection.SlaBreakdown} of the queues created by this criteria.
+   */
+  public static void forEachPile(final Queue queue, final ObjLongConsumer<Sla> consumer) {
+	if (queue instanceof BatchQueue batchQueue) {
+	  for (Heap heap : batchQueue.heaps) {
+		for (Pile pile : heap.quantityBySla) {
+		  consumer.accept(pile.sla, pile.quantity);
+		}
+	  }
+	} else if (queue instanceof SlaQueue slaQueue) {
+	  slaQueue.quantityBySla().forEach(consumer::accept);
+	} else {
+	  throw new IllegalArgumentException(String.format("Invalid queue type: %s", queue.getClass()));
+	}
+  }
+
+  /**
+   * A {@link design.backlogprojection.SlaRelabeling} of the queues created by this criteria. The heaps keep their order, and the relabeled
+   * queues, heaps and piles are hash-consed like those this criteria creates when deciding.
+   */
+  public Queue relabel(final Queue queue, final UnaryOperator<Sla> mapping) {
+	if (queue instanceof BatchQueue batchQueue) {
+	  return batchQueue(batchQueue.total, batchQueue.heaps.map(heap -> heaps.intern(heap.relabeled(mapping, piles))));
+	} else if (queue instanceof SlaQueue slaQueue) {
+	  return queues.intern(slaQueue.relabeled(mapping));
+	} else {
+	  throw new IllegalArgumentException(String.format("Invalid queue type: %s", queue.getClass()));
+	}
+  }
+
+  /**
+   * A FIFO queue of this criteria made of a single batch with the specified quantity of each SLA, like the backlog of a stage that has
+   * just been waved.
+   */
+  public static Queue batchOf(final Map<Sla, Long> quantityBySla) {
+	final var piles = List.iterableList(quantityBySla.entrySet())
+		.filter(entry -> entry.getValue() > 0)
+		.map(entry -> new Pile(entry.getKey(), entry.getValue()));
+	final var total = piles.foldLeft((accum, pile) -> accum + pile.quantity, 0L);
+	return total == 0 ? BatchQueue.EMPTY : new BatchQueue(total, List.single(new Heap(total, piles)));
+  }
+
+  /**
+   * The number of heaps a queue created by this criteria is made of. Zero for queues that are not discriminated by batch.
+   * <p>A {@link design.backlogprojection.QueueFragmentation} of the queues created by this criteria.
+   */
+  public static int heapsCount(final Queue queue) {
+	return queue instanceof BatchQueue batchQueue ? batchQueue.heaps.length() : 0;
+  }
+
+  /**
+   * Merges the adjacent heaps of the specified queue according to the {@link #compactionPolicy}.
+   * @return the specified queue if no heaps were merged.
+   */
+  private BatchQueue compact(final Stage stage, final BatchQueue queue) {
+	final var heapsBefore = queue.heaps.length();
+	if (!compactionPolicy.isEnabled()
+		|| heapsBefore < 2
+		|| compactionPolicy.tolerance() == 0 && heapsBefore <= compactionPolicy.maxHeaps()) {
+	  return queue;
+	}
+
+	final var compacted = new ArrayList<CompactedHeap>(heapsBefore);
+	var orderingError = 0.0;
+	for (Heap heap : queue.heaps) {
+	  final var next = new CompactedHeap(heap);
+	  final var lastIndex = compacted.size() - 1;
+	  if (lastIndex >= 0 && compactionPolicy.tolerance() > 0) {
+		final var last = compacted.get(lastIndex);
+		final var distance = last.compositionDistance(next);
+		if (distance <= compactionPolicy.tolerance()) {
+		  orderingError += last.mergeError(next, distance);
+		  compacted.set(lastIndex, last.merge(next, piles));
+		  continue;
+		}
+	  }
+	  compacted.add(next);
+	}
+	if (compacted.size() > compactionPolicy.maxHeaps()) {
+	  // the merge error of each adjacent pair, of which only the two around a merge change
+	  final var mergeErrors = new ArrayList<Double>(compacted.size());
+	  for (var index = 0; index < compacted.size() - 1; ++index) {
+		mergeErrors.add(compacted.get(index).mergeError(compacted.get(index + 1)));
+	  }
+	  while (compacted.size() > compactionPolicy.maxHeaps()) {
+		var cheapestIndex = 0;
+		for (var index = 1; index < mergeErrors.size(); ++index) {
+		  if (mergeErrors.get(index) < mergeErrors.get(cheapestIndex)) {
+			cheapestIndex = index;
+		  }
+		}
+		orderingError += mergeErrors.remove(cheapestIndex);
+		compacted.set(cheapestIndex, compacted.get(cheapestIndex).merge(compacted.remove(cheapestIndex + 1), piles));
+		if (cheapestIndex > 0) {
+		  mergeErrors.set(cheapestIndex - 1, compacted.get(cheapestIndex - 1).mergeError(compacted.get(cheapestIndex)));
+		}
+		if (cheapestIndex < mergeErrors.size()) {
+		  mergeErrors.set(cheapestIndex, compacted.get(cheapestIndex).mergeError(compacted.get(cheapestIndex + 1)));
+		}
+	  }
+	}
+
+	if (compacted.size() == heapsBefore) {
+	  return queue;
+	} else {
+	  compactionListener.compacted(stage, heapsBefore, compacted.size(), orderingError);
+	  return batchQueue(queue.total, List.iterableList(compacted).map(compactedHeap -> heaps.intern(compactedHeap.heap())));
+	}
+  }
+
+  /**
+   * Routes the units processed by the specified stage to its next stages. This criteria doesn't know how the flow divides between the
+   * branches, so each branch receives an equal part, the first ones taking the oldest units. The units processed by a final stage have no
+   * destination.
+   */
+  private SplitQueue routed(final Stage stage, final Queue remaining, final BatchQueue processed) {
+	final var nextStages = stage.nextStages();
+	final var processedByDestination = ImmutableEnumMap.<Stage, Queue>builder(Stage.values());
+	var undistributed = processed;
+	for (var i = 0; i < nextStages.length; ++i) {
+	  if (i == nextStages.length - 1) {
+		processedByDestination.add(nextStages[i], undistributed);
+	  } else {
+		final var share = processed.total / nextStages.length + (i < processed.total % nextStages.length ? 1 : 0);
+		final var split = consumeProportionally(undistributed, share);
+		processedByDestination.add(nextStages[i], split._2());
+		undistributed = split._1();
+	  }
+	}
+	return new SplitQueue(remaining, processedByDestination.build());
+  }
+
+  /**
+   * Takes the specified quantity from the front of the queue, splitting the heap at the boundary proportionally to its SLAs.
+   * @return the remaining queue and the taken one, whose heaps keep their order.
+   */
+  private P2<BatchQueue, BatchQueue> consumeProportionally(final BatchQueue queue, final long toProcessQuantity) {
+	return toProcessQuantity == 0
+		? P.p(queue, BatchQueue.EMPTY)
+		: consumeProportionally(queue.total, queue.heaps, toProcessQuantity, 0, List.nil());
+  }
+
+  private P2<BatchQueue, BatchQueue> consumeProportionally(
 	  long waitingQuantity, List<Heap> waitingHeaps, long toProcessQuantity, long processedQuantity, List<Heap> processedHeaps
   ) {
 	if (toProcessQuantity == 0) {
-	  return new SplitQueue(new BatchQueue(waitingQuantity, waitingHeaps), new BatchQueue(processedQuantity, processedHeaps));
+	  return P.p(batchQueue(waitingQuantity, waitingHeaps), batchQueue(processedQuantity, processedHeaps.reverse()));
 	} else {
 	  assert toProcessQuantity > 0;
 	  var nextHeap = waitingHeaps.head();
@@ -51,69 +250,88 @@ public class BatchDiscriminatedPoc implements ProcessingOrderCriteria {
 			List.cons(nextHeap, processedHeaps)
 		);
 	  } else {
-		var split = nextHeap.split(toProcessQuantity);
-		return new SplitQueue(
-			new BatchQueue(waitingQuantity - toProcessQuantity, List.cons(split._1(), waitingHeaps.tail())),
-			new BatchQueue(processedQuantity + toProcessQuantity, List.cons(split._2(), processedHeaps))
+		var split = nextHeap.split(toProcessQuantity, piles);
+		return P.p(
+			batchQueue(waitingQuantity - toProcessQuantity, List.cons(heaps.intern(split._1()), waitingHeaps.tail())),
+			batchQueue(processedQuantity + toProcessQuantity, List.cons(heaps.intern(split._2()), processedHeaps).reverse())
 		);
 	  }
 	}
   }
 
   private SplitQueue consumeNearDeadlineSlasFirst(
+	  final Stage stage,
 	  final Map<Sla, Long> waitingQuantityBySla,
 	  long toProcessQuantity,
-	  final TreeMap<Instant, List<Sla>> nextSlasByDeadline
+	  final Sla[] slasByDeadline
   ) {
 	if (toProcessQuantity == 0) {
-	  return new SplitQueue(new SlaQueue(waitingQuantityBySla), BatchQueue.EMPTY);
+	  return routed(stage, queues.intern(new SlaQueue(waitingQuantityBySla)), BatchQueue.EMPTY);
 	} else {
 	  assert toProcessQuantity > 0;
 
 	  final var newWaitingQuantityBySla = new HashMap<>(waitingQuantityBySla);
 	  List<Pile> processedQuantityBySla = List.nil();
-	  for (P2<Instant, List<Sla>> nextSlasEntry : nextSlasByDeadline) {
-		final var nextSlas = nextSlasEntry._2();
-		for (Sla nextSla : nextSlas) {
-		  final var nextSlaWaitingQuantity = newWaitingQuantityBySla.get(nextSla);
-		  if (nextSlaWaitingQuantity != null) {
-			if (nextSlaWaitingQuantity <= toProcessQuantity) {
-			  newWaitingQuantityBySla.remove(nextSla);
-			  toProcessQuantity -= nextSlaWaitingQuantity;
-			  processedQuantityBySla = List.cons(new Pile(nextSla, nextSlaWaitingQuantity), processedQuantityBySla);
-			} else {
-			  newWaitingQuantityBySla.put(nextSla, nextSlaWaitingQuantity - toProcessQuantity);
-			  toProcessQuantity = 0;
-			  processedQuantityBySla = List.cons(new Pile(nextSla, toProcessQuantity), processedQuantityBySla);
-			}
+	  var processedQuantity = 0L;
+	  for (var index = 0; index < slasByDeadline.length && toProcessQuantity > 0; ++index) {
+		final var nextSla = slasByDeadline[index];
+		final var nextSlaWaitingQuantity = newWaitingQuantityBySla.get(nextSla);
+		if (nextSlaWaitingQuantity != null) {
+		  final var nextSlaProcessedQuantity = Math.min(nextSlaWaitingQuantity, toProcessQuantity);
+		  if (nextSlaProcessedQuantity == nextSlaWaitingQuantity) {
+			newWaitingQuantityBySla.remove(nextSla);
+		  } else {
+			newWaitingQuantityBySla.put(nextSla, nextSlaWaitingQuantity - nextSlaProcessedQuantity);
 		  }
+		  toProcessQuantity -= nextSlaProcessedQuantity;
+		  processedQuantity += nextSlaProcessedQuantity;
+		  processedQuantityBySla = List.cons(piles.intern(new Pile(nextSla, nextSlaProcessedQuantity)), processedQuantityBySla);
 		}
 	  }
-	  return new SplitQueue(
-		  new SlaQueue(newWaitingQuantityBySla),
-		  new BatchQueue(
-			  toProcessQuantity,
-			  List.single(new Heap(toProcessQuantity, processedQuantityBySla))
-		  )
+	  return routed(
+		  stage,
+		  queues.intern(new SlaQueue(newWaitingQuantityBySla)),
+		  batchQueue(processedQuantity, List.single(heaps.intern(new Heap(processedQuantity, processedQuantityBySla))))
 	  );
 	}
   }
 
 
+  private BatchQueue batchQueue(final long total, final List<Heap> heaps) {
+	return (BatchQueue) queues.intern(total == 0 ? BatchQueue.EMPTY : new BatchQueue(total, heaps));
+  }
+
   /**
    * A {@link Queue} where the units are discriminated by batch and SLA.
+   * <p>Equality is structural, and the hash code is cached given the instances are hash-consed.
    */
   private static class BatchQueue implements Queue {
 	static final BatchQueue EMPTY = new BatchQueue(0, List.nil());
 
 	private final long total;
 	private final List<Heap> heaps;
+	private final int hashCode;
 
 	BatchQueue(long total, final List<Heap> heaps) {
 	  assert heaps.forall(heap -> heap.total > 0);
 	  assert heaps.foldLeft((accum, heap) -> accum + heap.total, 0L) == total;
 	  this.total = total;
 	  this.heaps = heaps;
+	  this.hashCode = 31 * Long.hashCode(total) + heaps.hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+	  return this == other
+		  || other instanceof BatchQueue that
+		  && this.hashCode == that.hashCode
+		  && this.total == that.total
+		  && this.heaps.equals(that.heaps);
+	}
+
+	@Override
+	public int hashCode() {
+	  return hashCode;
 	}
 
 	public long total() {
@@ -127,10 +345,115 @@ public class BatchDiscriminatedPoc implements ProcessingOrderCriteria {
 	}
   }
 
-  private record Heap(long total, List<Pile> quantityBySla) {
+  /**
+   * A {@link Heap} being compacted, with its quantity by SLA, which is calculated once instead of for each comparison with its neighbours.
+   */
+  private record CompactedHeap(Heap heap, Map<Sla, Long> quantities) {
+	CompactedHeap(final Heap heap) {
+	  this(heap, heap.quantitiesBySla());
+	}
+
+	/**
+	 * The total variation distance between the SLA compositions of this heap and the specified one: zero when the SLAs are in the same
+	 * proportions, and one when they have no SLAs in common.
+	 */
+	double compositionDistance(final CompactedHeap other) {
+	  var sum = 0.0;
+	  for (Map.Entry<Sla, Long> entry : quantities.entrySet()) {
+		final var otherQuantity = other.quantities.getOrDefault(entry.getKey(), 0L);
+		sum += Math.abs((double) entry.getValue() / heap.total - (double) otherQuantity / other.heap.total);
+	  }
+	  for (Map.Entry<Sla, Long> entry : other.quantities.entrySet()) {
+		if (!quantities.containsKey(entry.getKey())) {
+		  sum += (double) entry.getValue() / other.heap.total;
+		}
+	  }
+	  return sum / 2;
+	}
+
+	/**
+	 * The maximum number of units whose SLA changes, for any quantity consumed from the front of these two heaps, when this heap is
+	 * merged with the following one.
+	 */
+	double mergeError(final CompactedHeap following) {
+	  return mergeError(following, compositionDistance(following));
+	}
+
+	/**
+	 * @param distance the {@link #compositionDistance} of the heaps.
+	 */
+	double mergeError(final CompactedHeap following, final double distance) {
+	  return (double) heap.total * following.heap.total / (heap.total + following.heap.total) * distance;
+	}
+
+	/**
+	 * Merges this heap with the following one. The quantity of each SLA is the sum of its quantities in both heaps.
+	 * @param piles the interner of the piles of the resulting heap.
+	 */
+	CompactedHeap merge(final CompactedHeap following, final Interner<Pile> piles) {
+	  final var mergedQuantities = new LinkedHashMap<>(quantities);
+	  following.quantities.forEach((sla, quantity) -> mergedQuantities.merge(sla, quantity, Long::sum));
+	  final var mergedPiles = List.iterableList(mergedQuantities.entrySet())
+		  .map(entry -> piles.intern(new Pile(entry.getKey(), entry.getValue())));
+	  return new CompactedHeap(new Heap(heap.total + following.heap.total, mergedPiles), mergedQuantities);
+	}
+  }
+
+  /**
+   * A batch of units broken down by SLA.
+   * <p>Equality is structural, and the hash code is cached given the instances are hash-consed.
+   */
+  private static final class Heap {
 	static final Heap EMPTY = new Heap(0, List.nil());
 
-	P2<Heap, Heap> split(long rightTotal) {
+	private final long total;
+	private final List<Pile> quantityBySla;
+	private final int hashCode;
+
+	Heap(final long total, final List<Pile> quantityBySla) {
+	  this.total = total;
+	  this.quantityBySla = quantityBySla;
+	  this.hashCode = 31 * Long.hashCode(total) + quantityBySla.hashCode();
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+	  return this == other
+		  || other instanceof Heap that && this.hashCode == that.hashCode && this.total == that.total
+		  && this.quantityBySla.equals(that.quantityBySla);
+	}
+
+	@Override
+	public int hashCode() {
+	  return hashCode;
+	}
+
+	/**
+	 * @param piles the interner of the piles of the resulting heap.
+	 */
+	Heap relabeled(final UnaryOperator<Sla> mapping, final Interner<Pile> piles) {
+	  final var quantities = new LinkedHashMap<Sla, Long>();
+	  for (Pile pile : quantityBySla) {
+		quantities.merge(mapping.apply(pile.sla), pile.quantity, Long::sum);
+	  }
+	  return new Heap(
+		  total,
+		  List.iterableList(quantities.entrySet()).map(entry -> piles.intern(new Pile(entry.getKey(), entry.getValue())))
+	  );
+	}
+
+	private LinkedHashMap<Sla, Long> quantitiesBySla() {
+	  final var quantities = new LinkedHashMap<Sla, Long>();
+	  for (Pile pile : quantityBySla) {
+		quantities.merge(pile.sla, pile.quantity, Long::sum);
+	  }
+	  return quantities;
+	}
+
+	/**
+	 * @param piles the interner of the piles of the resulting heaps.
+	 */
+	P2<Heap, Heap> split(long rightTotal, final Interner<Pile> piles) {
 	  if (rightTotal == 0) {
 		return P.p(this, EMPTY);
 	  } else if (rightTotal == total) {
@@ -152,12 +475,12 @@ public class BatchDiscriminatedPoc implements ProcessingOrderCriteria {
 		  var rightQuantity = expectedAccumRight - accumRight;
 		  accumRight += rightQuantity;
 		  if (rightQuantity > 0) {
-			rightPiles = List.cons(new Pile(initialPile.sla, rightQuantity), rightPiles);
+			rightPiles = List.cons(piles.intern(new Pile(initialPile.sla, rightQuantity)), rightPiles);
 		  }
 
 		  var leftQuantity = initialPile.quantity - rightQuantity;
 		  if (leftQuantity > 0) {
-			leftPiles = List.cons(new Pile(initialPile.sla, leftQuantity), leftPiles);
+			leftPiles = List.cons(piles.intern(new Pile(initialPile.sla, leftQuantity)), leftPiles);
 		  }
 		  accumLeft += leftQuantity;
 
@@ -0,0 +1,46 @@
+package design.backlogprojection.processingcriterias;
+
+import design.global.Workflow.Stage;
+
+/**
+ * Tells how the {@link BatchDiscriminatedPoc} merges the adjacent heaps of its FIFO queues, which otherwise grow by one heap per step.
+ * <p>Two adjacent heaps are merged when the total variation distance between their SLA compositions is not greater than the
+ * {@link #tolerance}. Then, while the queue has more than {@link #maxHeaps} heaps, the adjacent pair whose merge introduces the least
+ * ordering error is merged. The quantity of each SLA is conserved exactly; only the order in which the units of the merged heaps are
+ * consumed is lost.
+ * @param tolerance the maximum total variation distance, between 0 and 1, of the SLA compositions of two adjacent heaps for them to be
+ * merged regardless of the heaps count. Zero disables the merging by composition.
+ * @param maxHeaps the maximum number of heaps of a FIFO queue.
+ */
+public record HeapCompactionPolicy(double tolerance, int maxHeaps) {
+  /** A policy that never merges heaps. */
+  public static final HeapCompactionPolicy NONE = new HeapCompactionPolicy(0, Integer.MAX_VALUE);
+
+  public HeapCompactionPolicy {
+	if (tolerance < 0 || tolerance > 1) {
+	  throw new IllegalArgumentException(String.format("tolerance=%f", tolerance));
+	}
+	if (maxHeaps < 1) {
+	  throw new IllegalArgumentException(String.format("maxHeaps=%d", maxHeaps));
+	}
+  }
+
+  boolean isEnabled() {
+	return tolerance > 0 || maxHeaps < Integer.MAX_VALUE;
+  }
+
+  /**
+   * Receives the outcome of each compaction that merged at least one pair of heaps.
+   */
+  @FunctionalInterface
+  public interface Listener {
+	Listener NONE = (stage, heapsBefore, heapsAfter, orderingError) -> {};
+
+	/**
+	 * @param orderingError an upper bound of the number of units that may be attributed to a different SLA than without the compaction,
+	 * for any quantity consumed from the compacted queue. Merging a heap of total {@code a} with the following heap of total {@code b}
+	 * contributes {@code a * b / (a + b)} times the total variation distance of their compositions.
+	 */
+	void compacted(Stage stage, int heapsBefore, int heapsAfter, double orderingError);
+  }
+}
@@ -11,6 +11,7 @@ import fj.data.TreeMap;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -58,6 +59,15 @@ public class SlaDiscriminatedPoc implements ProcessingOrderCriteria {
 	  return this.append(other.negated());
 	}
 
+	/**
+	 * Gives a queue with the units of each SLA belonging to the SLA the mapping gives for it.
+	 */
+	public SlaQueue relabeled(final UnaryOperator<Sla> mapping) {
+	  return new SlaQueue(
+		  quantityBySla.entrySet().stream().collect(Collectors.toMap(e -> mapping.apply(e.getKey()), Map.Entry::getValue, Long::sum))
+	  );
+	}
+
 	public SlaQueue negated() {
 	  return new SlaQueue(
 		  this.quantityBySla.entrySet().stream().collect(Collectors.toMap(
@@ -0,0 +1,438 @@
+package design.backlogprojection.web;
+
+import design.backlogprojection.BacklogProjectionUseCase;
+import design.backlogprojection.BacklogTrajectoryEstimator.CoalescedTrajectory;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StaffingPlan;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.backlogprojection.BacklogTrajectoryOverseer;
+import design.backlogprojection.BacklogTrajectoryOverseer.WorkflowTrajectoryOversawStep;
+import design.backlogprojection.PararealEstimator;
+import design.backlogprojection.PararealEstimator.PararealTrajectory;
+import design.backlogprojection.ProjectionTimings;
+import design.backlogprojection.ProjectionTimings.Phase;
+import design.backlogprojection.ScenarioTree;
+import design.backlogprojection.SlaBreakdown;
+import design.backlogprojection.SlaBuckets;
+import design.backlogprojection.SlaPivot;
+import design.backlogprojection.SlaRelabeling;
+import design.backlogprojection.StepCoalescing;
+import design.backlogprojection.TrajectoryIndex;
+import design.backlogprojection.montecarlo.MonteCarloProjector;
+import design.backlogprojection.montecarlo.MonteCarloProjector.ProbabilisticTrajectory;
+import design.backlogprojection.montecarlo.Perturbation;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import fj.data.List;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/workflows/{workflow}/backlog-projection")
+public class BacklogProjectionController {
+  /** The scenarios count above which a probabilistic projection would hold a projection thread for too long. */
+  static final int MAX_SCENARIOS = 10_000;
+
+  private final BacklogProjectionUseCase backlogProjectionUseCase;
+  private final ProjectionExecutor projectionExecutor;
+  private final SlaBreakdown slaBreakdown;
+  private final SlaRelabeling slaRelabeling;
+  private final Function<Sla, String> slaIdentifier;
+
+  /**
+   * Gives the backlog trajectory of the specified workflow. JSON is the default encoding; clients that accept the
+   * {@link TrajectoryColumnarEncoder#MEDIA_TYPE} get the compact binary one.
+   * <p>When the view date is not specified, the instant the request was received, according to the {@link RequestClock}, is used.
+   * <p>When the horizon is specified, only the steps that start before the view date plus said number of hours are simulated and returned.
+   */
+  @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, TrajectoryColumnarEncoder.MEDIA_TYPE_VALUE})
+  public Mono<List<WorkflowTrajectoryStep>> project(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate,
+	  @RequestParam(required = false) final Integer horizonHours
+  ) {
+	requireParameter(horizonHours == null || horizonHours > 0, "horizonHours should be positive: %d", horizonHours);
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(() -> horizonHours == null
+		  ? backlogProjectionUseCase.execute(workflow, effectiveViewDate, timings)
+		  : backlogProjectionUseCase.executeUntil(
+			  workflow,
+			  effectiveViewDate,
+			  effectiveViewDate.plus(horizonHours, ChronoUnit.HOURS),
+			  timings
+		  )
+	  );
+	});
+  }
+
+  /**
+   * The backlog trajectory followed by the breakdown of the time spent and bytes allocated computing it.
+   */
+  public record ProfiledTrajectory(List<WorkflowTrajectoryStep> steps, Profile profile) {}
+
+  /**
+   * @param millisByPhase the time spent in each {@link Phase}, in milliseconds.
+   * @param allocatedBytesByPhase the bytes allocated by each {@link Phase} on the thread that ran it, without those of the work forked to
+   * other threads. Zero if the JVM doesn't support measuring them.
+   */
+  public record Profile(
+	  Map<Phase, Double> millisByPhase,
+	  Map<Phase, Long> allocatedBytesByPhase,
+	  long stepsCount,
+	  long allocatedBytes
+  ) {
+	static Profile of(final ProjectionTimings timings) {
+	  final var millisByPhase = new EnumMap<Phase, Double>(Phase.class);
+	  final var allocatedBytesByPhase = new EnumMap<Phase, Long>(Phase.class);
+	  for (Phase phase : Phase.values()) {
+		millisByPhase.put(phase, timings.nanosOf(phase) / 1e6);
+		allocatedBytesByPhase.put(phase, timings.allocatedBytesOf(phase));
+	  }
+	  return new Profile(millisByPhase, allocatedBytesByPhase, timings.stepsCount(), timings.totalAllocatedBytes());
+	}
+  }
+
+  /**
+   * Same as {@link #project} but the response also contains the {@link Profile} of the projection.
+   */
+  @GetMapping(params = "profile=true", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<ProfiledTrajectory> projectProfiled(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate
+  ) {
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(() -> {
+		final var steps = backlogProjectionUseCase.execute(workflow, effectiveViewDate, timings);
+		return new ProfiledTrajectory(steps, Profile.of(timings));
+	  });
+	});
+  }
+
+  /**
+   * Gives the backlog trajectory of the specified workflow with, at each step, the minimum headcount each stage needs to keep up with the
+   * downstream throughput and the desired buffer.
+   * @see BacklogTrajectoryOverseer
+   */
+  @GetMapping(path = "/oversight", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<List<WorkflowTrajectoryOversawStep>> projectOverseen(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate
+  ) {
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(() -> backlogProjectionUseCase.executeOverseen(workflow, effectiveViewDate, timings));
+	});
+  }
+
+  /**
+   * The {@link SlaPivot} of a trajectory, whose SLAs are referenced by identifier.
+   * @param unitsByStage for each stage, the units indexed by {@code [bucket][sla]}.
+   */
+  public record PivotView(Instant origin, Duration bucketLength, java.util.List<String> slas, Map<Stage, long[][]> unitsByStage) {}
+
+  /**
+   * Same as {@link #project} but, instead of the steps, the response contains the units of each SLA in the queue of each stage at the end
+   * of each time bucket, which is what the dashboards need.
+   */
+  @GetMapping(params = "view=pivot", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<PivotView> projectPivot(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate,
+	  @RequestParam(required = false) final Integer horizonHours,
+	  @RequestParam(defaultValue = "60") final long bucketMinutes
+  ) {
+	requireParameter(horizonHours == null || horizonHours > 0, "horizonHours should be positive: %d", horizonHours);
+	requireParameter(bucketMinutes > 0, "bucketMinutes should be positive: %d", bucketMinutes);
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(() -> {
+		final var steps = horizonHours == null
+			? backlogProjectionUseCase.execute(workflow, effectiveViewDate, timings)
+			: backlogProjectionUseCase.executeUntil(
+				workflow,
+				effectiveViewDate,
+				effectiveViewDate.plus(horizonHours, ChronoUnit.HOURS),
+				timings
+			);
+		final var pivotBuilder =
+			new SlaPivot.Builder(effectiveViewDate, Duration.ofMinutes(bucketMinutes), workflow.stages(), slaBreakdown);
+		steps.forEach(pivotBuilder);
+		return pivotViewOf(pivotBuilder.build());
+	  });
+	});
+  }
+
+  /**
+   * Same as {@link #projectPivot} but the SLAs are mapped into deadline buckets of the specified length before the simulation, which is
+   * cheaper when there are many SLAs. The units of each bucket are split back among its SLAs in proportion to the actual backlog, so the
+   * pivot is an approximation of the exact one.
+   * @see SlaBuckets
+   */
+  @GetMapping(path = "/bucketed", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<PivotView> projectBucketed(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate,
+	  @RequestParam(defaultValue = "60") final long bucketMinutes
+  ) {
+	requireParameter(bucketMinutes > 0, "bucketMinutes should be positive: %d", bucketMinutes);
+	final var bucketLength = Duration.ofMinutes(bucketMinutes);
+	final var slaBuckets = new SlaBuckets(bucketLength, slaRelabeling);
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(() -> {
+		final var trajectory = backlogProjectionUseCase.executeBucketed(workflow, effectiveViewDate, slaBuckets, slaBreakdown, timings);
+		final var pivotBuilder =
+			new SlaPivot.Builder(effectiveViewDate, bucketLength, workflow.stages(), trajectory.deaggregatingBreakdown());
+		trajectory.steps().forEach(pivotBuilder);
+		return pivotViewOf(pivotBuilder.build());
+	  });
+	});
+  }
+
+  private PivotView pivotViewOf(final SlaPivot pivot) {
+	return new PivotView(
+		pivot.origin(),
+		pivot.bucketLength(),
+		pivot.slas().stream().map(slaIdentifier).toList(),
+		pivot.unitsByStage()
+	);
+  }
+
+  /**
+   * The queue total of each stage at each of the requested instants, sorted.
+   * @param quantitiesBySlaByStage for each stage, the quantity of units of each SLA, referenced by identifier, in the queue at each of the
+   * 	requested instants. Empty unless the breakdown by SLA was requested.
+   */
+  public record QueueTotals(
+	  Instant[] instants,
+	  Map<Stage, long[]> totalsByStage,
+	  Map<Stage, java.util.List<Map<String, Long>>> quantitiesBySlaByStage
+  ) {}
+
+  /**
+   * Gives the queue total of each stage of the specified workflow at each of the specified instants. When interpolation is requested the
+   * totals are linearly interpolated inside the steps. When the breakdown by SLA is requested, the response also contains the quantity of
+   * each SLA in the queues, which is never interpolated.
+   * @see TrajectoryIndex
+   */
+  @GetMapping(path = "/queues", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<QueueTotals> projectQueues(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate,
+	  @RequestParam final Instant[] at,
+	  @RequestParam(defaultValue = "false") final boolean interpolate,
+	  @RequestParam(defaultValue = "false") final boolean bySla
+  ) {
+	final var instants = at.clone();
+	Arrays.sort(instants);
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(() -> {
+		// the steps after the last requested instant are not needed
+		final var horizon = instants.length == 0 ? effectiveViewDate : instants[instants.length - 1].plusMillis(1);
+		final var steps = backlogProjectionUseCase.executeUntil(workflow, effectiveViewDate, horizon, timings);
+		final var totalsByStage = new EnumMap<Stage, long[]>(Stage.class);
+		final var quantitiesBySlaByStage = new EnumMap<Stage, java.util.List<Map<String, Long>>>(Stage.class);
+		if (steps.isNotEmpty()) {
+		  final var index = TrajectoryIndex.of(steps);
+		  for (Stage stage : workflow.stages()) {
+			totalsByStage.put(stage, index.queueTotalsAt(stage, instants, interpolate));
+			if (bySla) {
+			  quantitiesBySlaByStage.put(stage, Arrays.stream(instants).map(instant -> identified(
+				  index.quantitiesBySlaAt(stage, instant, slaBreakdown)
+			  )).toList());
+			}
+		  }
+		}
+		return new QueueTotals(instants, totalsByStage, quantitiesBySlaByStage);
+	  });
+	});
+  }
+
+  private Map<String, Long> identified(final Map<Sla, Long> quantitiesBySla) {
+	final var quantitiesBySlaIdentifier = new TreeMap<String, Long>();
+	quantitiesBySla.forEach((sla, quantity) -> quantitiesBySlaIdentifier.merge(slaIdentifier.apply(sla), quantity, Long::sum));
+	return quantitiesBySlaIdentifier;
+  }
+
+  /**
+   * Gives a coarse backlog trajectory of the specified workflow whose steps are merged according to the specified tolerance or maximum
+   * steps count. When both are specified the tolerance is ignored. The response tells the length of the longest merged step, which bounds
+   * the time resolution lost.
+   */
+  @GetMapping(path = "/coarse", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<CoalescedTrajectory> projectCoarse(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate,
+	  @RequestParam(required = false) final Integer maxSteps,
+	  @RequestParam(defaultValue = "15") final long toleranceMinutes
+  ) {
+	final var stepCoalescing = maxSteps != null
+		? StepCoalescing.boundedTo(maxSteps)
+		: StepCoalescing.mergingStepsShorterThan(Duration.ofMinutes(toleranceMinutes));
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(
+		  () -> backlogProjectionUseCase.executeCoalesced(workflow, effectiveViewDate, stepCoalescing, timings)
+	  );
+	});
+  }
+
+  /**
+   * Gives the quantiles of the backlog of each stage of the specified workflow at each step, estimated by sampling scenarios whose upstream
+   * throughput and productivity deviate from the forecasts according to log-normal distributions with the specified sigmas.
+   */
+  @GetMapping(path = "/probabilistic", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<ProbabilisticTrajectory> projectProbabilistic(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate,
+	  @RequestParam(defaultValue = "1000") final int scenarios,
+	  @RequestParam(defaultValue = "0.1") final double upstreamSigma,
+	  @RequestParam(defaultValue = "0.1") final double productivitySigma,
+	  @RequestParam(defaultValue = "0.1,0.5,0.9") final double[] quantiles,
+	  @RequestParam(defaultValue = "0") final long seed
+  ) {
+	requireParameter(scenarios > 0 && scenarios <= MAX_SCENARIOS, "scenarios should be in [1, %d]: %d", MAX_SCENARIOS, scenarios);
+	requireParameter(upstreamSigma >= 0, "upstreamSigma should not be negative: %f", upstreamSigma);
+	requireParameter(productivitySigma >= 0, "productivitySigma should not be negative: %f", productivitySigma);
+	requireParameter(quantiles.length > 0, "at least one quantile is required");
+	for (var quantile : quantiles) {
+	  requireParameter(quantile >= 0 && quantile <= 1, "quantiles should be in [0, 1]: %f", quantile);
+	}
+	final var settings = new MonteCarloProjector.Settings(
+		scenarios,
+		Perturbation.logNormal(upstreamSigma),
+		Perturbation.logNormal(productivitySigma),
+		quantiles,
+		0.01,
+		seed
+	);
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(
+		  () -> backlogProjectionUseCase.executeProbabilistic(workflow, effectiveViewDate, settings, timings)
+	  );
+	});
+  }
+
+  /**
+   * Same as {@link #project} but the horizon is split in segments of the specified length that are simulated in parallel. The response
+   * tells the iterations that were needed and whether the trajectory is exact, which it is when the tolerance is negative.
+   * @see PararealEstimator
+   */
+  @GetMapping(path = "/parareal", produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<PararealTrajectory> projectParareal(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate,
+	  @RequestParam(defaultValue = "6") final long segmentHours,
+	  @RequestParam(defaultValue = "60") final long coarseStepMinutes,
+	  @RequestParam(defaultValue = "-1") final long tolerance,
+	  @RequestParam(defaultValue = "8") final int maxIterations
+  ) {
+	requireParameter(segmentHours > 0, "segmentHours should be positive: %d", segmentHours);
+	requireParameter(coarseStepMinutes > 0, "coarseStepMinutes should be positive: %d", coarseStepMinutes);
+	requireParameter(maxIterations > 0, "maxIterations should be positive: %d", maxIterations);
+	final var settings = new PararealEstimator.Settings(
+		Duration.ofHours(segmentHours),
+		Duration.ofMinutes(coarseStepMinutes),
+		tolerance,
+		maxIterations,
+		ForkJoinPool.commonPool()
+	);
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(() -> backlogProjectionUseCase.executeParareal(workflow, effectiveViewDate, settings, timings));
+	});
+  }
+
+  /**
+   * A {@link ScenarioTree.Variant} whose staffing plan is, from the divergence instant on, a constant throughput of each processing stage.
+   * @param parentName the name of the parent scenario: {@link ScenarioTree#BASELINE} or a variant declared before this one.
+   */
+  public record ScenarioVariant(String name, String parentName, Instant divergesAt, Map<Stage, Double> unitsPerHourByStage) {
+	ScenarioTree.Variant toVariant() {
+	  final StaffingPlan staffingPlan = (stage, from, to) ->
+		  unitsPerHourByStage.get(stage) * Duration.between(from, to).toMillis() / ChronoUnit.HOURS.getDuration().toMillis();
+	  return new ScenarioTree.Variant(name, parentName, divergesAt, staffingPlan);
+	}
+  }
+
+  /**
+   * Gives the backlog trajectory of the specified workflow for the baseline scenario and for each of the specified variants, by scenario
+   * name. The variants are simulated from the step their staffing plan diverges at, so comparing many of them is cheap.
+   * @see ScenarioTree
+   */
+  @PostMapping(path = "/scenarios", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Map<String, List<WorkflowTrajectoryStep>>> projectScenarios(
+	  @PathVariable final Workflow workflow,
+	  @RequestParam(required = false) final Instant viewDate,
+	  @RequestBody final java.util.List<ScenarioVariant> variants
+  ) {
+	final var declaredNames = new HashSet<String>();
+	declaredNames.add(ScenarioTree.BASELINE);
+	for (var variant : variants) {
+	  requireParameter(variant.name() != null && declaredNames.add(variant.name()), "duplicated scenario: %s", variant.name());
+	  requireParameter(declaredNames.contains(variant.parentName()), "unknown parent scenario: %s", variant.parentName());
+	  requireParameter(variant.divergesAt() != null, "the scenario %s should have a divergence instant", variant.name());
+	  for (var stage : workflow.processingStages()) {
+		final var unitsPerHour = variant.unitsPerHourByStage() == null ? null : variant.unitsPerHourByStage().get(stage);
+		requireParameter(
+			unitsPerHour != null && unitsPerHour >= 0,
+			"the throughput of %s in the scenario %s should not be negative: %s",
+			stage,
+			variant.name(),
+			unitsPerHour
+		);
+	  }
+	}
+	final var treeVariants = variants.stream().map(ScenarioVariant::toVariant).toList();
+	return Mono.deferContextual(context -> {
+	  final var timings = ServerTimingWebFilter.timingsOf(context);
+	  final var effectiveViewDate = viewDate != null ? viewDate : RequestClock.nowOf(context);
+	  return projectionExecutor.submit(() -> backlogProjectionUseCase.executeScenarios(workflow, effectiveViewDate, treeVariants, timings));
+	});
+  }
+
+  /**
+   * Rejects the request with a 400 response if the specified condition about its parameters doesn't hold.
+   */
+  private static void requireParameter(final boolean condition, final String format, final Object... args) {
+	if (!condition) {
+	  throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(format, args));
+	}
+  }
+}
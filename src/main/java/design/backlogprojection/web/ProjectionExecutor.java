@@ -0,0 +1,135 @@
+package design.backlogprojection.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded executor dedicated to the projections computation, so that the CPU-bound simulation never runs on the event loop and the number
+ * of concurrent projections does not exceed the number of cores.
+ * <p>The tasks that don't fit in the queue are rejected immediately with a 503 response whose {@code Retry-After} header tells when to
+ * retry, which keeps the latency of the admitted requests stable when the service is saturated.
+ */
+@Component
+public class ProjectionExecutor implements DisposableBean {
+  static final String PREFIX = "backlog.projection.executor";
+
+  private final ThreadPoolExecutor executor;
+  private final Duration retryAfter;
+  private final Timer queueWaitTimer;
+  private final Counter rejectionsCounter;
+
+  /**
+   * @param threads the number of projections computed concurrently. Zero means as many as available processors.
+   * @param queueCapacity the number of projections that can wait for a thread before new ones are rejected.
+   * @param retryAfter the delay suggested to the clients whose request was rejected.
+   */
+  public ProjectionExecutor(
+	  @Value("${backlog-projection.executor.threads:0}") final int threads,
+	  @Value("${backlog-projection.executor.queue-capacity:16}") final int queueCapacity,
+	  @Value("${backlog-projection.executor.retry-after:PT1S}") final Duration retryAfter,
+	  final MeterRegistry registry
+  ) {
+	final var poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	this.executor = new ThreadPoolExecutor(
+		poolSize,
+		poolSize,
+		0,
+		TimeUnit.MILLISECONDS,
+		new ArrayBlockingQueue<>(queueCapacity),
+		daemonThreadFactory(),
+		new ThreadPoolExecutor.AbortPolicy()
+	);
+	this.retryAfter = retryAfter;
+	this.queueWaitTimer = Timer.builder(PREFIX + ".queue.wait")
+		.description("Time a projection waited for a thread")
+		.publishPercentileHistogram()
+		.register(registry);
+	this.rejectionsCounter = Counter.builder(PREFIX + ".rejections")
+		.description("Projections rejected because the executor was saturated")
+		.register(registry);
+	registry.gauge(PREFIX + ".queue.size", executor.getQueue(), Collection::size);
+	registry.gauge(PREFIX + ".active", executor, ThreadPoolExecutor::getActiveCount);
+  }
+
+  /**
+   * Gives a {@link Mono} that, when subscribed, computes the specified task in this executor. If this executor is saturated the
+   * {@link Mono} fails with a {@link ProjectionRejectedException}. Cancelling the subscription removes the task from the queue if it
+   * hasn't started yet.
+   */
+  public <T> Mono<T> submit(final Callable<T> task) {
+	return Mono.create(sink -> {
+	  final var enqueuingNanos = System.nanoTime();
+	  final var future = new FutureTask<Void>(() -> {
+		queueWaitTimer.record(System.nanoTime() - enqueuingNanos, TimeUnit.NANOSECONDS);
+		try {
+		  sink.success(task.call());
+		} catch (Exception e) {
+		  sink.error(e);
+		}
+	  }, null);
+	  try {
+		executor.execute(future);
+		sink.onCancel(() -> {
+		  future.cancel(false);
+		  // a cancelled task stays in the queue, taking the place of an admissible one, until a thread polls it
+		  executor.remove(future);
+		});
+	  } catch (RejectedExecutionException e) {
+		rejectionsCounter.increment();
+		sink.error(new ProjectionRejectedException(retryAfter));
+	  }
+	});
+  }
+
+  @Override
+  public void destroy() {
+	executor.shutdownNow();
+  }
+
+  private static ThreadFactory daemonThreadFactory() {
+	final var threadsCounter = new AtomicInteger();
+	return runnable -> {
+	  final var thread = new Thread(runnable, "projection-" + threadsCounter.incrementAndGet());
+	  thread.setDaemon(true);
+	  return thread;
+	};
+  }
+
+  /**
+   * Signals that a projection was not admitted because the {@link ProjectionExecutor} was saturated.
+   */
+  public static class ProjectionRejectedException extends ResponseStatusException {
+	private final Duration retryAfter;
+
+	ProjectionRejectedException(final Duration retryAfter) {
+	  super(HttpStatus.SERVICE_UNAVAILABLE, "The projections executor is saturated");
+	  this.retryAfter = retryAfter;
+	}
+
+	@Override
+	public HttpHeaders getResponseHeaders() {
+	  final var headers = new HttpHeaders();
+	  headers.set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, retryAfter.toSeconds())));
+	  return headers;
+	}
+  }
+}
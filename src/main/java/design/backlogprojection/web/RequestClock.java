@@ -0,0 +1,44 @@
+package design.backlogprojection.web;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Instant;
+
+/**
+ * A frozen clock for each request.
+ * <p>The instant is captured once, when the request is received, and carried in the Reactor context of the request's pipeline instead of
+ * being bound to the request thread. So every stage of the pipeline sees the same instant regardless of the thread it runs on.
+ */
+@Component
+public class RequestClock implements WebFilter {
+  private static final Object KEY = RequestClock.class;
+
+  @Override
+  public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+	final var requestInstant = Instant.now();
+	return chain.filter(exchange)
+		.contextWrite(context -> context.put(KEY, requestInstant));
+  }
+
+  /**
+   * Gives the instant when the request whose pipeline is subscribing was received.
+   * @return a {@link Mono} with the instant when the request was received, or the current instant if the subscriber is not part of a
+   * request's pipeline.
+   */
+  public Mono<Instant> now() {
+	return Mono.deferContextual(context -> Mono.just(nowOf(context)));
+  }
+
+  /**
+   * Gives the instant when the request, to whose pipeline the specified context belongs, was received.
+   * @return the instant when the request was received, or the current instant if the context is not part of a request's pipeline.
+   */
+  public static Instant nowOf(final ContextView context) {
+	return context.getOrDefault(KEY, Instant.now());
+  }
+}
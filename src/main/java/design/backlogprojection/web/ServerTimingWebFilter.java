@@ -0,0 +1,59 @@
+package design.backlogprojection.web;
+
+import design.backlogprojection.ProjectionTimings;
+import design.backlogprojection.ProjectionTimings.Phase;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.Locale;
+
+/**
+ * Creates a {@link ProjectionTimings} for each request, carries it in the Reactor context, and adds its breakdown to the response in a
+ * {@code Server-Timing} header just before the response is committed.
+ * <p>The serialization of the body starts after the header is committed, so its duration can not be part of the header. The allocated
+ * bytes are those of the threads that ran the phases, so the allocations of the work forked to the pools are not part of it either.
+ */
+@Component
+public class ServerTimingWebFilter implements WebFilter {
+  static final String SERVER_TIMING = "Server-Timing";
+
+  /**
+   * Gives the {@link ProjectionTimings} of the request the specified context belongs to, or {@link ProjectionTimings#NONE} if there is
+   * none.
+   */
+  public static ProjectionTimings timingsOf(final ContextView context) {
+	return context.getOrDefault(ProjectionTimings.class, ProjectionTimings.NONE);
+  }
+
+  @Override
+  public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+	final var timings = new ProjectionTimings();
+	exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() -> {
+	  // the phases that are not simulations, like the oversight or the failed ones, have no steps but are worth reporting
+	  if (!timings.isEmpty()) {
+		exchange.getResponse().getHeaders().add(SERVER_TIMING, format(timings));
+	  }
+	}));
+	return chain.filter(exchange)
+		.contextWrite(context -> context.put(ProjectionTimings.class, timings));
+  }
+
+  static String format(final ProjectionTimings timings) {
+	final var header = new StringBuilder();
+	for (Phase phase : Phase.values()) {
+	  final var nanos = timings.nanosOf(phase);
+	  if (nanos > 0) {
+		header.append(phase.name())
+			.append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6))
+			.append(";desc=\"").append(phase.description).append("\", ");
+	  }
+	}
+	header.append("steps;desc=\"").append(timings.stepsCount()).append("\", ")
+		.append("alloc;desc=\"").append(timings.totalAllocatedBytes()).append(" bytes\"");
+	return header.toString();
+  }
+}
@@ -0,0 +1,25 @@
+package design.backlogprojection.web;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.SlaBreakdown;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+import java.util.function.Function;
+
+/**
+ * Registers the encodings of the backlog trajectories that are alternative to JSON.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class TrajectoryCodecsConfiguration implements WebFluxConfigurer {
+  private final SlaBreakdown slaBreakdown;
+  private final Function<Sla, String> slaIdentifier;
+
+  @Override
+  public void configureHttpMessageCodecs(final ServerCodecConfigurer configurer) {
+	configurer.customCodecs().register(new TrajectoryColumnarEncoder(slaBreakdown, slaIdentifier));
+  }
+}
@@ -0,0 +1,139 @@
+package design.backlogprojection.web;
+
+import design.global.Workflow.Stage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes the columnar binary format written by the {@link TrajectoryColumnarEncoder}, for the Java clients of the projection and to
+ * check the encoding. The decoded trajectory keeps the totals of each stage and the SLA breakdown of its final queues, which is all the
+ * format carries.
+ */
+public final class TrajectoryColumnarDecoder {
+  private static final Stage[] ALL_STAGES = Stage.values();
+  private static final int COLUMNS_COUNT = 5;
+
+  private TrajectoryColumnarDecoder() {}
+
+  public record DecodedTrajectory(List<DecodedSla> slas, List<DecodedStep> steps) {}
+
+  public record DecodedSla(Instant deadline, String identifier) {}
+
+  public record DecodedStep(Instant startingDate, Instant endingDate, Map<Stage, DecodedStageStep> stagesStep) {}
+
+  /**
+   * @param finalPiles the final queue broken down by the identifier of its SLAs.
+   */
+  public record DecodedStageStep(
+	  long initialTotal,
+	  long incomingTotal,
+	  long processedTotal,
+	  long finalTotal,
+	  long queueShortage,
+	  Map<String, Long> finalPiles
+  ) {}
+
+  public static DecodedTrajectory decode(final ByteBuffer buffer) {
+	final var magic = buffer.getInt();
+	if (magic != TrajectoryColumnarEncoder.MAGIC) {
+	  throw new IllegalArgumentException(String.format("Not a columnar trajectory: magic=%x", magic));
+	}
+	final var stepsCount = (int) readVarLong(buffer);
+
+	final var slasCount = (int) readVarLong(buffer);
+	final var slas = new ArrayList<DecodedSla>(slasCount);
+	var deadline = 0L;
+	for (var i = 0; i < slasCount; ++i) {
+	  deadline += readZigZag(buffer);
+	  final var identifier = new byte[(int) readVarLong(buffer)];
+	  buffer.get(identifier);
+	  slas.add(new DecodedSla(Instant.ofEpochMilli(deadline), new String(identifier, StandardCharsets.UTF_8)));
+	}
+
+	final var startingDates = new long[stepsCount];
+	final var endingDates = new long[stepsCount];
+	var previousEnding = 0L;
+	for (var i = 0; i < stepsCount; ++i) {
+	  startingDates[i] = previousEnding + readZigZag(buffer);
+	  endingDates[i] = startingDates[i] + readVarLong(buffer);
+	  previousEnding = endingDates[i];
+	}
+	final var stagesSteps = new ArrayList<Map<Stage, DecodedStageStep>>(stepsCount);
+	for (var i = 0; i < stepsCount; ++i) {
+	  stagesSteps.add(new EnumMap<>(Stage.class));
+	}
+
+	final var stagesCount = (int) readVarLong(buffer);
+	for (var s = 0; s < stagesCount; ++s) {
+	  readStageColumns(buffer, stepsCount, slas, stagesSteps);
+	}
+
+	final var steps = new ArrayList<DecodedStep>(stepsCount);
+	for (var i = 0; i < stepsCount; ++i) {
+	  steps.add(new DecodedStep(Instant.ofEpochMilli(startingDates[i]), Instant.ofEpochMilli(endingDates[i]), stagesSteps.get(i)));
+	}
+	return new DecodedTrajectory(slas, steps);
+  }
+
+  private static void readStageColumns(
+	  final ByteBuffer buffer,
+	  final int stepsCount,
+	  final List<DecodedSla> slas,
+	  final List<Map<Stage, DecodedStageStep>> stagesSteps
+  ) {
+	final var stage = ALL_STAGES[buffer.get()];
+	final var presenceBitmap = new byte[(stepsCount + 7) / 8];
+	buffer.get(presenceBitmap);
+	var presentCount = 0;
+	final var presentSteps = new int[stepsCount];
+	for (var i = 0; i < stepsCount; ++i) {
+	  if ((presenceBitmap[i / 8] & (1 << (i % 8))) != 0) {
+		presentSteps[presentCount++] = i;
+	  }
+	}
+
+	final var columns = new long[COLUMNS_COUNT][presentCount];
+	for (var column : columns) {
+	  var value = 0L;
+	  for (var j = 0; j < presentCount; ++j) {
+		value += readZigZag(buffer);
+		column[j] = value;
+	  }
+	}
+
+	for (var j = 0; j < presentCount; ++j) {
+	  final var pilesCount = (int) readVarLong(buffer);
+	  final var piles = new LinkedHashMap<String, Long>();
+	  for (var p = 0; p < pilesCount; ++p) {
+		piles.put(slas.get((int) readVarLong(buffer)).identifier(), readZigZag(buffer));
+	  }
+	  stagesSteps.get(presentSteps[j]).put(
+		  stage,
+		  new DecodedStageStep(columns[0][j], columns[1][j], columns[2][j], columns[3][j], columns[4][j], piles)
+	  );
+	}
+  }
+
+  static long readVarLong(final ByteBuffer buffer) {
+	var value = 0L;
+	for (var shift = 0; ; shift += 7) {
+	  final var b = buffer.get();
+	  value |= (long) (b & 0x7F) << shift;
+	  if ((b & 0x80) == 0) {
+		return value;
+	  }
+	}
+  }
+
+  static long readZigZag(final ByteBuffer buffer) {
+	final var encoded = readVarLong(buffer);
+	return (encoded >>> 1) ^ -(encoded & 1);
+  }
+}
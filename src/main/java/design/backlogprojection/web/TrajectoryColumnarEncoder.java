@@ -0,0 +1,266 @@
+package design.backlogprojection.web;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StageTrajectoryStep;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.backlogprojection.SlaBreakdown;
+import design.global.Workflow.Stage;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+
+import fj.data.List;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Encodes a backlog trajectory in a compact columnar binary format, an alternative to JSON for the clients that accept the
+ * {@link #MEDIA_TYPE}. The stages' values are laid out as one column per stage and field, delta-encoded between consecutive steps; the
+ * timestamps are delta-encoded too; and the SLAs are written once in a dictionary and referenced by index.
+ * <p>The layout, where {@code varint} is an unsigned LEB128 number and {@code zigzag} is a zigzag-encoded {@code varint}:
+ * <pre>
+ * int magic, varint stepsCount
+ * varint slasCount, slasCount × (zigzag deadlineEpochMillisDelta, varint identifierLength, byte[identifierLength] utf8Identifier)
+ * zigzag firstStartingEpochMillis, stepsCount × (zigzag startingDateDelta, varint durationMillis)
+ * varint stagesCount, stagesCount × stageColumns
+ * stageColumns: byte stageOrdinal, byte[(stepsCount + 7) / 8] presenceBitmap,
+ *               5 × presentStepsCount × zigzag valueDelta     (initial, incoming, processed and final totals, and queue shortage)
+ *               presentStepsCount × (varint pilesCount, pilesCount × (varint slaIndex, zigzag quantity))
+ * </pre>
+ * The deadline delta of an SLA is relative to the deadline of the previous SLA in the dictionary, the starting date delta of a step is
+ * relative to the ending date of the previous step, and each value delta is relative to the value of the same column in the previous
+ * step where the stage is present. The piles break down the final queue of the stage by SLA.
+ * <p>The buffers are allocated with the server's {@link DataBufferFactory}, so under Reactor Netty the encoding is written directly into
+ * Netty buffers.
+ * @see TrajectoryColumnarDecoder
+ */
+public class TrajectoryColumnarEncoder extends AbstractEncoder<List<WorkflowTrajectoryStep>> {
+  public static final String MEDIA_TYPE_VALUE = "application/vnd.backlog-trajectory.columnar";
+  public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_VALUE);
+
+  static final int MAGIC = 0x42544331; // "BTC1"
+
+  private static final Stage[] ALL_STAGES = Stage.values();
+  private static final java.util.List<ToLongFunction<StageTrajectoryStep>> COLUMNS = java.util.List.of(
+	  stageStep -> stageStep.initialQueue().total(),
+	  stageStep -> stageStep.incomingQueue().total(),
+	  StageTrajectoryStep::processedTotal,
+	  stageStep -> stageStep.finalQueue().total(),
+	  StageTrajectoryStep::queueShortage
+  );
+
+  private final SlaBreakdown slaBreakdown;
+  private final Function<Sla, String> slaIdentifier;
+
+  /**
+   * @param slaBreakdown knows how to break down the final queues of the encoded steps.
+   * @param slaIdentifier gives the identifier of an SLA that is written in the dictionary.
+   */
+  public TrajectoryColumnarEncoder(final SlaBreakdown slaBreakdown, final Function<Sla, String> slaIdentifier) {
+	super(MEDIA_TYPE);
+	this.slaBreakdown = slaBreakdown;
+	this.slaIdentifier = slaIdentifier;
+  }
+
+  @Override
+  public boolean canEncode(final ResolvableType elementType, @Nullable final MimeType mimeType) {
+	return List.class.isAssignableFrom(elementType.toClass())
+		&& WorkflowTrajectoryStep.class.isAssignableFrom(elementType.getGeneric(0).toClass())
+		&& super.canEncode(elementType, mimeType);
+  }
+
+  @Override
+  public Flux<DataBuffer> encode(
+	  final Publisher<? extends List<WorkflowTrajectoryStep>> inputStream,
+	  final DataBufferFactory bufferFactory,
+	  final ResolvableType elementType,
+	  @Nullable final MimeType mimeType,
+	  @Nullable final Map<String, Object> hints
+  ) {
+	return Flux.from(inputStream).map(steps -> encodeValue(steps, bufferFactory, elementType, mimeType, hints));
+  }
+
+  @Override
+  public DataBuffer encodeValue(
+	  final List<WorkflowTrajectoryStep> steps,
+	  final DataBufferFactory bufferFactory,
+	  final ResolvableType valueType,
+	  @Nullable final MimeType mimeType,
+	  @Nullable final Map<String, Object> hints
+  ) {
+	final var stepsCount = steps.length();
+
+	// first pass: build the SLAs dictionary and find out which stages are present
+	final var slaIndexes = new HashMap<Sla, Integer>();
+	final var slas = new ArrayList<Sla>();
+	final var presentStages = new boolean[ALL_STAGES.length];
+	for (var step : steps) {
+	  for (var stage : ALL_STAGES) {
+		final var stageStep = step.stagesStep().get(stage);
+		if (stageStep != null) {
+		  presentStages[stage.ordinal()] = true;
+		  slaBreakdown.forEachPile(stageStep.finalQueue(), (sla, quantity) -> slaIndexes.computeIfAbsent(sla, newSla -> {
+			slas.add(newSla);
+			return slas.size() - 1;
+		  }));
+		}
+	  }
+	}
+
+	final var buffer = bufferFactory.allocateBuffer(256 + 64 * stepsCount);
+	var release = true;
+	try {
+	  writeInt(buffer, MAGIC);
+	  writeVarLong(buffer, stepsCount);
+
+	  writeVarLong(buffer, slas.size());
+	  var previousDeadline = 0L;
+	  for (var sla : slas) {
+		final var deadline = sla.getDeadline().toEpochMilli();
+		writeZigZag(buffer, deadline - previousDeadline);
+		previousDeadline = deadline;
+		final var identifier = slaIdentifier.apply(sla).getBytes(StandardCharsets.UTF_8);
+		writeVarLong(buffer, identifier.length);
+		buffer.write(identifier);
+	  }
+
+	  var previousEnding = 0L;
+	  for (var step : steps) {
+		final var starting = step.startingDate().toEpochMilli();
+		final var ending = step.endingDate().toEpochMilli();
+		writeZigZag(buffer, starting - previousEnding);
+		writeVarLong(buffer, ending - starting);
+		previousEnding = ending;
+	  }
+
+	  var stagesCount = 0;
+	  for (var present : presentStages) {
+		stagesCount += present ? 1 : 0;
+	  }
+	  writeVarLong(buffer, stagesCount);
+	  final var piles = new PilesScratch(slaIndexes);
+	  for (var stage : ALL_STAGES) {
+		if (presentStages[stage.ordinal()]) {
+		  writeStageColumns(buffer, stage, steps, stepsCount, piles);
+		}
+	  }
+	  release = false;
+	  return buffer;
+	} finally {
+	  if (release) {
+		DataBufferUtils.release(buffer);
+	  }
+	}
+  }
+
+  private void writeStageColumns(
+	  final DataBuffer buffer,
+	  final Stage stage,
+	  final List<WorkflowTrajectoryStep> steps,
+	  final int stepsCount,
+	  final PilesScratch piles
+  ) {
+	buffer.write((byte) stage.ordinal());
+	final var presenceBitmap = new byte[(stepsCount + 7) / 8];
+	var stepIndex = 0;
+	for (var step : steps) {
+	  if (step.stagesStep().get(stage) != null) {
+		presenceBitmap[stepIndex / 8] |= (byte) (1 << (stepIndex % 8));
+	  }
+	  stepIndex += 1;
+	}
+	buffer.write(presenceBitmap);
+
+	for (var column : COLUMNS) {
+	  var previousValue = 0L;
+	  for (var step : steps) {
+		final var stageStep = step.stagesStep().get(stage);
+		if (stageStep != null) {
+		  final var value = column.applyAsLong(stageStep);
+		  writeZigZag(buffer, value - previousValue);
+		  previousValue = value;
+		}
+	  }
+	}
+
+	for (var step : steps) {
+	  final var stageStep = step.stagesStep().get(stage);
+	  if (stageStep != null) {
+		slaBreakdown.forEachPile(stageStep.finalQueue(), piles);
+		piles.writeAndReset(buffer);
+	  }
+	}
+  }
+
+  static void writeInt(final DataBuffer buffer, final int value) {
+	buffer.write((byte) (value >>> 24));
+	buffer.write((byte) (value >>> 16));
+	buffer.write((byte) (value >>> 8));
+	buffer.write((byte) value);
+  }
+
+  static void writeVarLong(final DataBuffer buffer, long value) {
+	while ((value & ~0x7FL) != 0) {
+	  buffer.write((byte) ((value & 0x7F) | 0x80));
+	  value >>>= 7;
+	}
+	buffer.write((byte) value);
+  }
+
+  static void writeZigZag(final DataBuffer buffer, final long value) {
+	writeVarLong(buffer, (value << 1) ^ (value >> 63));
+  }
+
+  /**
+   * Accumulates the piles of a queue by SLA index, reusing its arrays for every queue.
+   */
+  private static final class PilesScratch implements ObjLongConsumer<Sla> {
+	private final Map<Sla, Integer> slaIndexes;
+	private final long[] quantities;
+	private final boolean[] touchedFlags;
+	private final int[] touched;
+	private int touchedCount;
+
+	PilesScratch(final Map<Sla, Integer> slaIndexes) {
+	  this.slaIndexes = slaIndexes;
+	  this.quantities = new long[slaIndexes.size()];
+	  this.touchedFlags = new boolean[slaIndexes.size()];
+	  this.touched = new int[slaIndexes.size()];
+	}
+
+	@Override
+	public void accept(final Sla sla, final long quantity) {
+	  final int slaIndex = slaIndexes.get(sla);
+	  if (!touchedFlags[slaIndex]) {
+		touchedFlags[slaIndex] = true;
+		touched[touchedCount++] = slaIndex;
+	  }
+	  quantities[slaIndex] += quantity;
+	}
+
+	void writeAndReset(final DataBuffer buffer) {
+	  writeVarLong(buffer, touchedCount);
+	  for (var i = 0; i < touchedCount; ++i) {
+		final var slaIndex = touched[i];
+		writeVarLong(buffer, slaIndex);
+		writeZigZag(buffer, quantities[slaIndex]);
+		quantities[slaIndex] = 0;
+		touchedFlags[slaIndex] = false;
+	  }
+	  touchedCount = 0;
+	}
+  }
+}
@@ -0,0 +1,205 @@
+package design.global;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A step function with the same semantics as {@link Trajectory}, backed by primitive arrays instead of a {@link TreeMap}. It has no
+ * consecutive points with the same value, and keeps the prefix integrals of its points, so any integral takes a single binary search.
+ * <p>It supports combining trajectories point-wise: the combinations of many trajectories are calculated in a single merge over their
+ * sorted points, instead of looking up the value of every trajectory at every point of the others.
+ */
+public final class CompactTrajectory implements IntegrableTrajectory {
+  public static final CompactTrajectory ZERO = new CompactTrajectory(new long[0], new long[0]);
+
+  /** The instants of the points, in microseconds since the epoch, sorted in ascending order. */
+  private final long[] instants;
+  private final long[] values;
+  /** The integral, in value-microseconds, from the first point to each point. */
+  private final long[] prefixes;
+
+  private CompactTrajectory(final long[] instants, final long[] values) {
+	this.instants = instants;
+	this.values = values;
+	this.prefixes = new long[instants.length];
+	for (var i = 1; i < instants.length; ++i) {
+	  prefixes[i] = prefixes[i - 1] + values[i - 1] * (instants[i] - instants[i - 1]);
+	}
+  }
+
+  public static CompactTrajectory of(final TreeMap<Instant, Long> points) {
+	final var builder = new PointsBuilder(points.size());
+	for (Map.Entry<Instant, Long> point : points.entrySet()) {
+	  builder.add(EpochMicros.of(point.getKey()), point.getValue());
+	}
+	return builder.build();
+  }
+
+  public int pointsCount() {
+	return instants.length;
+  }
+
+  public Trajectory toTrajectory() {
+	final var points = new TreeMap<Instant, Long>();
+	for (var i = 0; i < instants.length; ++i) {
+	  points.put(EpochMicros.toInstant(instants[i]), values[i]);
+	}
+	return new Trajectory(points);
+  }
+
+  @Override
+  public double integrate(final Instant from, final Instant to, final TimeUnit timeUnit) {
+	return (cumulative(EpochMicros.of(to)) - cumulative(EpochMicros.of(from))) / (double) timeUnit.toMicros(1);
+  }
+
+  /**
+   * The integral from the first point to the specified instant, which is negative for the instants before it.
+   */
+  private long cumulative(final long instant) {
+	if (instants.length == 0) {
+	  return 0;
+	}
+	final var searched = Arrays.binarySearch(instants, instant);
+	final var index = searched >= 0 ? searched : -searched - 2;
+	return index < 0
+		? values[0] * (instant - instants[0])
+		: prefixes[index] + values[index] * (instant - instants[index]);
+  }
+
+  /**
+   * The point-wise sum of the specified trajectories.
+   */
+  public static CompactTrajectory sum(final CompactTrajectory... trajectories) {
+	return merge(Math::addExact, trajectories);
+  }
+
+  /**
+   * The point-wise minimum of the specified trajectories, like a throughput capped by the capacity of each equipment.
+   */
+  public static CompactTrajectory min(final CompactTrajectory... trajectories) {
+	return merge(Math::min, trajectories);
+  }
+
+  public static CompactTrajectory max(final CompactTrajectory... trajectories) {
+	return merge(Math::max, trajectories);
+  }
+
+  /**
+   * The point-wise product of the specified trajectories, like a headcount times a productivity.
+   */
+  public static CompactTrajectory product(final CompactTrajectory... trajectories) {
+	return merge(Math::multiplyExact, trajectories);
+  }
+
+  /**
+   * Combines the values of the specified trajectories at each instant with the specified associative operator, in a single merge over
+   * their points. The cost is proportional to the total number of points times the number of trajectories, which is small.
+   */
+  public static CompactTrajectory merge(final LongBinaryOperator operator, final CompactTrajectory... trajectories) {
+	if (trajectories.length == 0) {
+	  return ZERO;
+	}
+	final var cursors = new int[trajectories.length];
+	final var currentValues = new long[trajectories.length];
+	var pointsCount = 0;
+	for (var i = 0; i < trajectories.length; ++i) {
+	  final var trajectory = trajectories[i];
+	  // before its first point, a trajectory has the value of its first point
+	  currentValues[i] = trajectory.values.length > 0 ? trajectory.values[0] : 0;
+	  pointsCount += trajectory.instants.length;
+	}
+
+	final var builder = new PointsBuilder(pointsCount);
+	while (true) {
+	  var next = Long.MAX_VALUE;
+	  for (var i = 0; i < trajectories.length; ++i) {
+		if (cursors[i] < trajectories[i].instants.length) {
+		  next = Math.min(next, trajectories[i].instants[cursors[i]]);
+		}
+	  }
+	  if (next == Long.MAX_VALUE) {
+		return builder.build();
+	  }
+	  var value = 0L;
+	  for (var i = 0; i < trajectories.length; ++i) {
+		final var trajectory = trajectories[i];
+		if (cursors[i] < trajectory.instants.length && trajectory.instants[cursors[i]] == next) {
+		  currentValues[i] = trajectory.values[cursors[i]];
+		  ++cursors[i];
+		}
+		value = i == 0 ? currentValues[0] : operator.applyAsLong(value, currentValues[i]);
+	  }
+	  builder.add(next, value);
+	}
+  }
+
+  /**
+   * This trajectory multiplied by the specified factor, rounding the values to the nearest integer.
+   */
+  public CompactTrajectory scale(final double factor) {
+	return mapValues(value -> Math.round(value * factor));
+  }
+
+  /**
+   * This trajectory with its values limited to the specified range.
+   */
+  public CompactTrajectory clamp(final long min, final long max) {
+	if (min > max) {
+	  throw new IllegalArgumentException(String.format("min=%d, max=%d", min, max));
+	}
+	return mapValues(value -> Math.max(min, Math.min(max, value)));
+  }
+
+  /**
+   * This trajectory moved forward in time by the specified duration, or backward if it is negative.
+   */
+  public CompactTrajectory shift(final Duration duration) {
+	final var shiftMicros = EpochMicros.of(Instant.EPOCH.plus(duration));
+	final var shiftedInstants = new long[instants.length];
+	for (var i = 0; i < instants.length; ++i) {
+	  shiftedInstants[i] = Math.addExact(instants[i], shiftMicros);
+	}
+	return new CompactTrajectory(shiftedInstants, values);
+  }
+
+  private CompactTrajectory mapValues(final LongUnaryOperator mapping) {
+	final var builder = new PointsBuilder(instants.length);
+	for (var i = 0; i < instants.length; ++i) {
+	  builder.add(instants[i], mapping.applyAsLong(values[i]));
+	}
+	return builder.build();
+  }
+
+  /**
+   * Accumulates points in ascending order of instant, skipping those that don't change the value.
+   */
+  private static final class PointsBuilder {
+	private final long[] instants;
+	private final long[] values;
+	private int size;
+
+	PointsBuilder(final int capacity) {
+	  instants = new long[capacity];
+	  values = new long[capacity];
+	}
+
+	void add(final long instant, final long value) {
+	  assert size == 0 || instant > instants[size - 1];
+	  if (size == 0 || values[size - 1] != value) {
+		instants[size] = instant;
+		values[size] = value;
+		++size;
+	  }
+	}
+
+	CompactTrajectory build() {
+	  return size == 0 ? ZERO : new CompactTrajectory(Arrays.copyOf(instants, size), Arrays.copyOf(values, size));
+	}
+  }
+}
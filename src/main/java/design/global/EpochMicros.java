@@ -0,0 +1,19 @@
+package design.global;
+
+import java.time.Instant;
+
+/**
+ * Converts between the {@link Instant}s and the microseconds since the epoch, which is how the trajectories backed by primitive arrays
+ * keep their instants.
+ */
+final class EpochMicros {
+  private EpochMicros() {}
+
+  static long of(final Instant instant) {
+	return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+  }
+
+  static Instant toInstant(final long micros) {
+	return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+  }
+}
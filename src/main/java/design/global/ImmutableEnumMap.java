@@ -76,10 +76,16 @@ public class ImmutableEnumMap<K extends Enum<K>, V> implements ImmutableMap<K, V
 	return new ImmutableEnumMap<>(this.size, newEntries);
   }
 
+  /**
+   * Gives the entries of this map whose key is one of the specified, in the order of the specified keys.
+   */
   public Stream<ImmutableMap.Entry<K, V>> toStream(final K[] enumValues) {
 	var builder = Stream.<ImmutableMap.Entry<K, V>>builder();
-	for (var i = 0; i < this.entries.length; ++i) {
-	  builder.accept(new EntryImpl<>(enumValues[i], this.entries[i]));
+	for (K k : enumValues) {
+	  final var v = get(k);
+	  if (v != null) {
+		builder.accept(new EntryImpl<>(k, v));
+	  }
 	}
 	return builder.build();
   }
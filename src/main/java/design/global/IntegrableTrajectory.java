@@ -0,0 +1,27 @@
+package design.global;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scalar trajectory, like a throughput, that can be integrated on any interval.
+ */
+public interface IntegrableTrajectory {
+  /**
+   * Calculates the definite integral of this trajectory on the specified interval, whose length is measured in the specified unit.
+   */
+  double integrate(Instant from, Instant to, TimeUnit timeUnit);
+
+  /**
+   * Calculates the integrals of this trajectory on each of the intervals between consecutive elements of the specified boundaries. The
+   * element {@code i} of the result should be equal to {@code integrate(boundaries[i], boundaries[i + 1], timeUnit)}.
+   * @param boundaries the intervals' boundaries, sorted in ascending order.
+   */
+  default double[] integrateConsecutively(final Instant[] boundaries, final TimeUnit timeUnit) {
+	final var integrals = new double[Math.max(0, boundaries.length - 1)];
+	for (var i = 0; i < integrals.length; ++i) {
+	  integrals[i] = integrate(boundaries[i], boundaries[i + 1], timeUnit);
+	}
+	return integrals;
+  }
+}
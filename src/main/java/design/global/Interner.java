@@ -0,0 +1,65 @@
+package design.global;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Hash-conses immutable values: {@link #intern} gives the same instance for all the values that are equal. So the equal structures are
+ * shared instead of duplicated, and values given by the same interner can be compared by identity.
+ * <p>The interned instances are referenced weakly, so an interner doesn't retain the values nobody else uses. Instances are thread-safe:
+ * the values are spread by hash over segments that are locked independently, so the threads that intern different values, like those
+ * estimating the concurrent branches of a workflow, rarely wait for each other.
+ * @param <T> the type of the values. Their {@code equals} and {@code hashCode} methods should be structural.
+ */
+public final class Interner<T> {
+  private static final int SEGMENTS_COUNT = 16;
+
+  private final Segment<T>[] segments;
+
+  @SuppressWarnings("unchecked")
+  public Interner() {
+	segments = new Segment[SEGMENTS_COUNT];
+	for (var i = 0; i < SEGMENTS_COUNT; ++i) {
+	  segments[i] = new Segment<>();
+	}
+  }
+
+  /**
+   * Gives the canonical instance of the values equal to the specified one. If there is none, the specified value becomes it.
+   */
+  public T intern(final T value) {
+	final var hash = value.hashCode();
+	// as in HashMap, the high bits are mixed in so that the hash codes that differ only in them are spread too
+	return segments[(hash ^ (hash >>> 16)) & (SEGMENTS_COUNT - 1)].intern(value);
+  }
+
+  /**
+   * The number of canonical instances that are still referenced.
+   */
+  public int size() {
+	var size = 0;
+	for (var segment : segments) {
+	  size += segment.size();
+	}
+	return size;
+  }
+
+  private static final class Segment<T> {
+	private final WeakHashMap<T, WeakReference<T>> instances = new WeakHashMap<>();
+
+	synchronized T intern(final T value) {
+	  final var reference = instances.get(value);
+	  final var canonical = reference != null ? reference.get() : null;
+	  if (canonical != null) {
+		return canonical;
+	  } else {
+		instances.put(value, new WeakReference<>(value));
+		return value;
+	  }
+	}
+
+	synchronized int size() {
+	  return instances.size();
+	}
+  }
+}
@@ -0,0 +1,169 @@
+package design.global;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A step function that repeats a template every period, except on the intervals where it is overridden. It is the natural shape of a
+ * staffing plan made of weekly shift templates, and its size depends on the template and the overrides instead of on the horizon.
+ * <p>The template and the overrides are stored with their prefix integrals, so the integral on any interval takes a couple of binary
+ * searches: the whole periods are integrated analytically, and the overrides intersecting the interval are added as differences with the
+ * template.
+ */
+public final class PeriodicTrajectory implements IntegrableTrajectory {
+  private final long originMicros;
+  private final long periodMicros;
+  /** The offsets of the template's points from the start of the period, sorted in ascending order. */
+  private final long[] offsets;
+  private final long[] values;
+  /** The integral of the template from the start of the period to each offset. */
+  private final long[] templatePrefixes;
+  private final long periodIntegral;
+  /** The value on {@code [0, offsets[0])}, which is the value of the last point of the previous period. */
+  private final long wrappedValue;
+
+  private final long[] overridesFrom;
+  private final long[] overridesTo;
+  private final long[] overridesValue;
+  /** The element {@code i} is the sum of the differences with the template of the overrides before the override {@code i}. */
+  private final long[] overrideDeltaPrefixes;
+
+  /**
+   * Replaces the value of the trajectory on the interval {@code [from, to)}.
+   */
+  public record OverrideInterval(Instant from, Instant to, long value) {
+	public OverrideInterval {
+	  if (!from.isBefore(to)) {
+		throw new IllegalArgumentException(String.format("from=%s, to=%s", from, to));
+	  }
+	}
+  }
+
+  /**
+   * @param origin the start of a period. The trajectory extends periodically to both sides of it.
+   * @param template the points of a single period, all in {@code [origin, origin + period)}. The value before the first of them is the
+   * value of the last of them, as in the previous period.
+   * @param overrides the intervals where the template doesn't apply. They should not overlap.
+   */
+  public PeriodicTrajectory(
+	  final Instant origin,
+	  final Duration period,
+	  final TreeMap<Instant, Long> template,
+	  final List<OverrideInterval> overrides
+  ) {
+	if (period.isNegative() || period.isZero()) {
+	  throw new IllegalArgumentException(String.format("period=%s", period));
+	}
+	this.originMicros = EpochMicros.of(origin);
+	this.periodMicros = EpochMicros.of(origin.plus(period)) - originMicros;
+
+	final var pointsCount = template.size();
+	this.offsets = new long[pointsCount];
+	this.values = new long[pointsCount];
+	var index = 0;
+	for (var entry : template.entrySet()) {
+	  final var offset = EpochMicros.of(entry.getKey()) - originMicros;
+	  if (offset < 0 || offset >= periodMicros) {
+		throw new IllegalArgumentException(String.format("The template point %s is outside the first period", entry.getKey()));
+	  }
+	  offsets[index] = offset;
+	  values[index] = entry.getValue();
+	  ++index;
+	}
+	this.wrappedValue = pointsCount == 0 ? 0 : values[pointsCount - 1];
+	this.templatePrefixes = new long[pointsCount];
+	for (var i = 0; i < pointsCount; ++i) {
+	  templatePrefixes[i] = i == 0
+		  ? wrappedValue * offsets[0]
+		  : templatePrefixes[i - 1] + values[i - 1] * (offsets[i] - offsets[i - 1]);
+	}
+	this.periodIntegral = pointsCount == 0
+		? 0
+		: templatePrefixes[pointsCount - 1] + values[pointsCount - 1] * (periodMicros - offsets[pointsCount - 1]);
+
+	final var sortedOverrides = overrides.stream().sorted(Comparator.comparing(OverrideInterval::from)).toArray(OverrideInterval[]::new);
+	this.overridesFrom = new long[sortedOverrides.length];
+	this.overridesTo = new long[sortedOverrides.length];
+	this.overridesValue = new long[sortedOverrides.length];
+	this.overrideDeltaPrefixes = new long[sortedOverrides.length + 1];
+	for (var i = 0; i < sortedOverrides.length; ++i) {
+	  overridesFrom[i] = EpochMicros.of(sortedOverrides[i].from());
+	  overridesTo[i] = EpochMicros.of(sortedOverrides[i].to());
+	  overridesValue[i] = sortedOverrides[i].value();
+	  if (i > 0 && overridesFrom[i] < overridesTo[i - 1]) {
+		throw new IllegalArgumentException(String.format("The overrides %s and %s overlap", sortedOverrides[i - 1], sortedOverrides[i]));
+	  }
+	  overrideDeltaPrefixes[i + 1] = overrideDeltaPrefixes[i] + overrideDelta(i, overridesFrom[i], overridesTo[i]);
+	}
+  }
+
+  @Override
+  public double integrate(final Instant from, final Instant to, final TimeUnit timeUnit) {
+	if (from.isAfter(to)) {
+	  return -integrate(to, from, timeUnit);
+	} else {
+	  return integrateMicros(EpochMicros.of(from), EpochMicros.of(to)) / (double) timeUnit.toMicros(1);
+	}
+  }
+
+  /**
+   * The integral on {@code [from, to]}, in value-microseconds. Assumes {@code from <= to}.
+   */
+  private long integrateMicros(final long from, final long to) {
+	var integral = templateIntegral(from, to);
+	// the overrides intersecting the interval are those from the first that ends after it starts to the last that starts before it ends
+	final var first = firstIndexGreaterThan(overridesTo, from);
+	final var last = firstIndexGreaterThan(overridesFrom, to - 1) - 1;
+	if (first <= last) {
+	  integral += overrideDelta(first, Math.max(from, overridesFrom[first]), Math.min(to, overridesTo[first]));
+	  if (last > first) {
+		integral += overrideDeltaPrefixes[last] - overrideDeltaPrefixes[first + 1];
+		integral += overrideDelta(last, overridesFrom[last], Math.min(to, overridesTo[last]));
+	  }
+	}
+	return integral;
+  }
+
+  /**
+   * The difference between the override {@code i} and the template on the interval {@code [from, to]}, which should be inside the
+   * override.
+   */
+  private long overrideDelta(final int i, final long from, final long to) {
+	return overridesValue[i] * (to - from) - templateIntegral(from, to);
+  }
+
+  private long templateIntegral(final long from, final long to) {
+	return templateCumulative(to) - templateCumulative(from);
+  }
+
+  /**
+   * The integral of the template from the origin to the specified instant, which is negative for the instants before the origin.
+   */
+  private long templateCumulative(final long instant) {
+	final var periods = Math.floorDiv(instant - originMicros, periodMicros);
+	final var offset = instant - originMicros - periods * periodMicros;
+	final var index = firstIndexGreaterThan(offsets, offset) - 1;
+	final var withinPeriod = index < 0
+		? wrappedValue * offset
+		: templatePrefixes[index] + values[index] * (offset - offsets[index]);
+	return periods * periodIntegral + withinPeriod;
+  }
+
+  /**
+   * The index of the first element of the sorted array that is greater than the key, or the array's length if there is none.
+   */
+  private static int firstIndexGreaterThan(final long[] sorted, final long key) {
+	final var index = Arrays.binarySearch(sorted, key);
+	if (index < 0) {
+	  return -index - 1;
+	} else {
+	  // the elements are distinct
+	  return index + 1;
+	}
+  }
+}
@@ -0,0 +1,137 @@
+package design.global;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A trajectory made of constant and linear segments. The ramps, like the warm-up of a shift or a forecast curve, are described by the
+ * two points at their ends, which is exact and much smaller than sampling them as steps.
+ * <p>As in {@link Trajectory}, the value before the first point is the value of the first point, and the value after the last point is
+ * the value of the last point. Instances are built incrementally with a {@link Builder}, and are immutable.
+ */
+public final class PiecewiseLinearTrajectory implements IntegrableTrajectory {
+  /** The instants of the points, in microseconds since the epoch, sorted in ascending order. Only the first {@link #size} are used. */
+  private final long[] instants;
+  private final long[] values;
+  /** Whether the segment that ends at each point is linear. The element {@code 0} is not used. */
+  private final boolean[] interpolated;
+  /** Twice the integral, in value-microseconds, from the first point to each point, which is an integer for linear segments too. */
+  private final long[] doubledPrefixes;
+  private final int size;
+
+  private PiecewiseLinearTrajectory(
+	  final long[] instants,
+	  final long[] values,
+	  final boolean[] interpolated,
+	  final long[] doubledPrefixes,
+	  final int size
+  ) {
+	this.instants = instants;
+	this.values = values;
+	this.interpolated = interpolated;
+	this.doubledPrefixes = doubledPrefixes;
+	this.size = size;
+  }
+
+  /**
+   * A point of a {@link PiecewiseLinearTrajectory}.
+   * @param interpolated whether the value goes linearly from the previous point's value to this one's, instead of jumping at this point.
+   */
+  public record Point(Instant instant, long value, boolean interpolated) {}
+
+  public int pointsCount() {
+	return size;
+  }
+
+  @Override
+  public double integrate(final Instant from, final Instant to, final TimeUnit timeUnit) {
+	return (cumulative(EpochMicros.of(to)) - cumulative(EpochMicros.of(from))) / timeUnit.toMicros(1);
+  }
+
+  /**
+   * The integral from the first point to the specified instant, in value-microseconds, which is negative for the instants before it.
+   */
+  private double cumulative(final long instant) {
+	if (size == 0) {
+	  return 0;
+	}
+	final var searched = Arrays.binarySearch(instants, 0, size, instant);
+	final var index = searched >= 0 ? searched : -searched - 2;
+	if (index < 0) {
+	  return (double) values[0] * (instant - instants[0]);
+	}
+	final var elapsed = instant - instants[index];
+	final var prefix = doubledPrefixes[index] / 2.0;
+	if (index == size - 1 || !interpolated[index + 1]) {
+	  return prefix + (double) values[index] * elapsed;
+	} else {
+	  final var slope = (double) (values[index + 1] - values[index]) / (instants[index + 1] - instants[index]);
+	  return prefix + values[index] * (double) elapsed + slope * elapsed * elapsed / 2;
+	}
+  }
+
+  /**
+   * Builds a {@link PiecewiseLinearTrajectory} from points received in ascending order of instant, like those of a stream of staffing or
+   * forecast updates. Appending a point takes constant amortized time, because the prefix integral of the new segment is added to the
+   * last one instead of being recalculated.
+   * <p>The {@link #build} method can be called at any time: the trajectories it gives share the arrays of this builder, which only
+   * appends to them, and are not affected by the points appended later. Instances are not thread-safe.
+   */
+  public static final class Builder implements Consumer<Point> {
+	private long[] instants = new long[16];
+	private long[] values = new long[16];
+	private boolean[] interpolated = new boolean[16];
+	private long[] doubledPrefixes = new long[16];
+	private int size;
+
+	/**
+	 * Appends a point whose value holds until the next point.
+	 */
+	public Builder stepTo(final Instant instant, final long value) {
+	  append(EpochMicros.of(instant), value, false);
+	  return this;
+	}
+
+	/**
+	 * Appends a point whose value is reached linearly from the value of the previous point.
+	 */
+	public Builder linearTo(final Instant instant, final long value) {
+	  append(EpochMicros.of(instant), value, true);
+	  return this;
+	}
+
+	@Override
+	public void accept(final Point point) {
+	  append(EpochMicros.of(point.instant()), point.value(), point.interpolated());
+	}
+
+	public PiecewiseLinearTrajectory build() {
+	  return new PiecewiseLinearTrajectory(instants, values, interpolated, doubledPrefixes, size);
+	}
+
+	private void append(final long instant, final long value, final boolean isInterpolated) {
+	  if (size > 0 && instant <= instants[size - 1]) {
+		throw new IllegalArgumentException(String.format("The points should be appended in ascending order of instant: %d", instant));
+	  }
+	  if (size == instants.length) {
+		// the already built trajectories keep the old arrays, whose used slots are never written again
+		final var capacity = size * 2;
+		instants = Arrays.copyOf(instants, capacity);
+		values = Arrays.copyOf(values, capacity);
+		interpolated = Arrays.copyOf(interpolated, capacity);
+		doubledPrefixes = Arrays.copyOf(doubledPrefixes, capacity);
+	  }
+	  if (size > 0) {
+		final var previous = size - 1;
+		final var elapsed = instant - instants[previous];
+		doubledPrefixes[size] = doubledPrefixes[previous] + (isInterpolated ? values[previous] + value : 2 * values[previous]) * elapsed;
+	  }
+	  instants[size] = instant;
+	  values[size] = value;
+	  interpolated[size] = isInterpolated;
+	  ++size;
+	}
+  }
+}
@@ -15,11 +15,16 @@ public class StaffingPlanSupplier implements BiFunction<Workflow, Instant, Staff
 	throw new AssertionError("not implemented");
   }
 
-  public record Plan(Map<Stage, Trajectory> unitsProcessedPerHourTrajectoriesByStage) implements StaffingPlan {
+  public record Plan(Map<Stage, ? extends IntegrableTrajectory> unitsProcessedPerHourTrajectoriesByStage) implements StaffingPlan {
 
 	@Override
 	public double integrateThroughputOf(Stage stage, Instant from, Instant to) {
 	  return unitsProcessedPerHourTrajectoriesByStage.get(stage).integrate(from, to, TimeUnit.HOURS);
 	}
+
+	@Override
+	public double[] integrateThroughputsOf(Stage stage, Instant[] boundaries) {
+	  return unitsProcessedPerHourTrajectoriesByStage.get(stage).integrateConsecutively(boundaries, TimeUnit.HOURS);
+	}
   }
 }
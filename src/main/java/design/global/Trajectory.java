@@ -5,7 +5,12 @@ import java.time.temporal.ChronoUnit;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
-public record Trajectory(TreeMap<Instant, Long> map) {
+/**
+ * A step function: the value at an instant is the value of the last point not after it, or the value of the first point for the instants
+ * before it.
+ */
+public record Trajectory(TreeMap<Instant, Long> map) implements IntegrableTrajectory {
+  @Override
   public double integrate(final Instant from, final Instant to, final TimeUnit timeUnit) {
 	if (from.isAfter(to)) {
 	  return -integrate(to, from, timeUnit);
@@ -29,4 +34,48 @@ public record Trajectory(TreeMap<Instant, Long> map) {
 	  return accum / (double) timeUnit.toMicros(1);
 	}
   }
+
+  /**
+   * Calculates the integrals of this trajectory on each of the intervals between consecutive elements of the specified boundaries, in a
+   * single sweep over the points of this trajectory. The element {@code i} of the result is equal to
+   * {@code integrate(boundaries[i], boundaries[i + 1], timeUnit)}.
+   * @param boundaries the intervals' boundaries, sorted in ascending order.
+   */
+  @Override
+  public double[] integrateConsecutively(final Instant[] boundaries, final TimeUnit timeUnit) {
+	final var integrals = new double[Math.max(0, boundaries.length - 1)];
+	if (integrals.length == 0) {
+	  return integrals;
+	}
+	final var unitMicros = (double) timeUnit.toMicros(1);
+	final var entries = map.entrySet().iterator();
+	var nextEntry = entries.hasNext() ? entries.next() : null;
+	long value = nextEntry != null ? nextEntry.getValue() : 0;
+	// skip the points that are not after the first boundary, keeping the value of the last of them
+	while (nextEntry != null && !nextEntry.getKey().isAfter(boundaries[0])) {
+	  value = nextEntry.getValue();
+	  nextEntry = entries.hasNext() ? entries.next() : null;
+	}
+	for (var i = 0; i < integrals.length; ++i) {
+	  final var to = boundaries[i + 1];
+	  var start = boundaries[i];
+	  long accum = 0;
+	  while (nextEntry != null && to.isAfter(nextEntry.getKey())) {
+		accum += value * ChronoUnit.MICROS.between(start, nextEntry.getKey());
+		start = nextEntry.getKey();
+		value = nextEntry.getValue();
+		nextEntry = entries.hasNext() ? entries.next() : null;
+	  }
+	  accum += value * ChronoUnit.MICROS.between(start, to);
+	  integrals[i] = accum / unitMicros;
+	}
+	return integrals;
+  }
+
+  /**
+   * This trajectory backed by primitive arrays, which is cheaper to integrate and to combine with other trajectories.
+   */
+  public CompactTrajectory compact() {
+	return CompactTrajectory.of(map);
+  }
 }
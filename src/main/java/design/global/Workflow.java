@@ -11,19 +11,36 @@ public enum Workflow {
   inbound,
   outbound;
 
-  public final Stage[] stages;
-  public final List<Stage> processingStages;
-  public final List<Stage> finalStages;
+  public Stage[] stages() {
+	return Topology.BY_WORKFLOW[ordinal()].stages;
+  }
+
+  public List<Stage> processingStages() {
+	return Topology.BY_WORKFLOW[ordinal()].processingStages;
+  }
 
-  Workflow() {
-	this.stages = Arrays.stream(Stage.values())
-		.filter(stage -> stage.workflow == this)
-		.toArray(Stage[]::new);
-	final var stagesList = List.arrayList(this.stages);
-	this.processingStages = stagesList
-		.filter(stage -> stage.isHumanPowered);
-	this.finalStages = stagesList
-		.filter(candidate -> Arrays.stream(stages).noneMatch(stage -> stage.previousStage == stage));
+  public List<Stage> finalStages() {
+	return Topology.BY_WORKFLOW[ordinal()].finalStages;
+  }
+
+  /**
+   * The stages of each workflow. They are calculated apart because the {@link Stage} constants reference the {@link Workflow} constants, so
+   * the initialization of neither enum can access the other one.
+   */
+  private record Topology(Stage[] stages, List<Stage> processingStages, List<Stage> finalStages) {
+	private static final Topology[] BY_WORKFLOW = Arrays.stream(Workflow.values()).map(Topology::of).toArray(Topology[]::new);
+
+	private static Topology of(final Workflow workflow) {
+	  final var stages = Arrays.stream(Stage.values())
+		  .filter(stage -> stage.workflow == workflow)
+		  .toArray(Stage[]::new);
+	  final var stagesList = List.arrayList(stages);
+	  return new Topology(
+		  stages,
+		  stagesList.filter(stage -> stage.isHumanPowered),
+		  stagesList.filter(candidate -> Arrays.stream(stages).noneMatch(stage -> stage.previousStage == candidate))
+	  );
+	}
   }
 
   public enum QueueType {
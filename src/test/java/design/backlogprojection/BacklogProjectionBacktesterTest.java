@@ -0,0 +1,132 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionBacktester.HorizonError;
+import design.backlogprojection.BacklogProjectionUseCase.StrategyByWorkflow;
+import design.backlogprojection.TextSnapshotReader.DeadlineSla;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.OptionalLong;
+
+import static design.backlogprojection.BacklogTrajectoryEstimator.estimateWorkflowTrajectory;
+import static design.backlogprojection.EstimationFixtures.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BacklogProjectionBacktesterTest {
+  private static final String SNAPSHOT = """
+	  # a small outbound snapshot
+	  workflow outbound
+	  viewDate 2022-01-01T00:00:00Z
+	  sla 2022-01-01T06:00:00Z
+	  sla 2022-01-01T12:00:00Z
+	  backlog waving 2022-01-01T06:00:00Z 300
+	  backlog waving 2022-01-01T12:00:00Z 200
+	  backlog picking 2022-01-01T06:00:00Z 80
+	  backlog packingDirect 2022-01-01T06:00:00Z 40
+	  throughput picking 2022-01-01T00:00:00Z 120
+	  throughput picking 2022-01-01T02:00:00Z 60
+	  throughput packingDirect 2022-01-01T00:00:00Z 50
+	  throughput walling 2022-01-01T00:00:00Z 30
+	  throughput packingWalled 2022-01-01T00:00:00Z 30
+	  upstream 2022-01-01T12:00:00Z 2022-01-01T00:00:00Z 90
+	  """;
+
+  private static final TextSnapshotReader READER = new TextSnapshotReader(
+	  quantityBySla -> new TotalQueue(quantityBySla.values().stream().mapToLong(Long::longValue).sum()),
+	  (workflow, viewDate) -> CRITERIA,
+	  (workflow, viewDate) -> BOUNDS_DECIDER
+  );
+
+  @Example
+  void theReaderShouldParseTheRecordsOfTheSnapshot() throws IOException {
+	final var file = Files.createTempFile("snapshot", ".txt");
+	try {
+	  Files.writeString(file, SNAPSHOT + "actual picking 2022-01-01T01:00:00Z 75\n");
+	  final var snapshot = READER.read(file);
+
+	  assertEquals(Workflow.outbound, snapshot.workflow());
+	  assertEquals(START, snapshot.viewDate());
+	  assertEquals(
+		  java.util.List.of(new DeadlineSla(START.plus(6, ChronoUnit.HOURS)), new DeadlineSla(START.plus(12, ChronoUnit.HOURS))),
+		  snapshot.nextKnownSlas().toList()
+	  );
+	  assertEquals(500, snapshot.backlog().getQueueAt(Stage.waving).total());
+	  assertEquals(0, snapshot.backlog().getQueueAt(Stage.walling).total());
+	  assertEquals(300.0, snapshot.staffingPlan().integrateThroughputOf(Stage.picking, START, START.plus(3, ChronoUnit.HOURS)), 1e-9);
+	  assertEquals(45, snapshot.upstreamThroughputTrajectory().integral(START, START.plus(30, ChronoUnit.MINUTES)).total());
+	  assertEquals(OptionalLong.of(75), snapshot.actualBacklogTrajectory().totalAt(Stage.picking, START.plus(1, ChronoUnit.HOURS)));
+	  assertEquals(OptionalLong.empty(), snapshot.actualBacklogTrajectory().totalAt(Stage.picking, START.plus(2, ChronoUnit.HOURS)));
+	} finally {
+	  Files.delete(file);
+	}
+  }
+
+  @Example
+  void theErrorsShouldBeAggregatedByStageAndHorizonBucketAcrossTheSnapshots() throws IOException {
+	final var directory = Files.createTempDirectory("snapshots");
+	try {
+	  final var baseFile = directory.resolve("base.txt");
+	  Files.writeString(baseFile, SNAPSHOT);
+	  final var snapshot = READER.read(baseFile);
+	  final var projected = estimateWorkflowTrajectory(
+		  START,
+		  snapshot.backlog(),
+		  snapshot.nextKnownSlas(),
+		  StrategyByWorkflow.outbound.stepEstimator,
+		  new BacklogTrajectoryEstimator.StepTranscendentalInvariants(
+			  Workflow.outbound.stages(),
+			  Workflow.outbound.processingStages(),
+			  snapshot.upstreamThroughputTrajectory(),
+			  snapshot.staffingPlan(),
+			  CRITERIA,
+			  BOUNDS_DECIDER,
+			  BranchesParallelism.SEQUENTIAL
+		  )
+	  );
+	  Files.delete(baseFile);
+
+	  // the projection overestimates the picking backlog by 10 in one snapshot and underestimates it by 30 in the other
+	  final var overestimated = new StringBuilder(SNAPSHOT);
+	  final var underestimated = new StringBuilder(SNAPSHOT);
+	  var firstHourSamples = 0;
+	  for (var step : projected) {
+		if (!step.endingDate().isAfter(START.plus(2, ChronoUnit.HOURS))) {
+		  final var total = step.stagesStep().get(Stage.picking).finalQueue().total();
+		  overestimated.append(String.format("actual picking %s %d%n", step.endingDate(), total - 10));
+		  underestimated.append(String.format("actual picking %s %d%n", step.endingDate(), total + 30));
+		  if (step.endingDate().isBefore(START.plus(1, ChronoUnit.HOURS))) {
+			++firstHourSamples;
+		  }
+		}
+	  }
+	  Files.writeString(directory.resolve("a.txt"), overestimated);
+	  Files.writeString(directory.resolve("b.txt"), underestimated);
+
+	  final var report = new BacklogProjectionBacktester(READER, Duration.ofHours(1), Duration.ofHours(2), 2).backtest(directory);
+
+	  assertEquals(2, report.snapshotsCount());
+	  assertEquals(2, report.errors().length());
+	  final HorizonError firstHour = report.errors().head();
+	  assertEquals(Stage.picking, firstHour.stage());
+	  assertEquals(Duration.ZERO, firstHour.horizonOffset());
+	  assertEquals(2L * firstHourSamples, firstHour.samplesCount());
+	  assertEquals(-10.0, firstHour.bias(), 1e-9);
+	  assertEquals(20.0, firstHour.meanAbsoluteError(), 1e-9);
+	  assertEquals(Math.sqrt(500), firstHour.rootMeanSquaredError(), 1e-9);
+	  assertEquals(Duration.ofHours(1), report.errors().index(1).horizonOffset());
+	} finally {
+	  try (var files = Files.list(directory)) {
+		for (Path file : (Iterable<Path>) files::iterator) {
+		  Files.delete(file);
+		}
+	  }
+	  Files.delete(directory);
+	}
+  }
+}
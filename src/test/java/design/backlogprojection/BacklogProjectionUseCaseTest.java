@@ -2,29 +2,47 @@ package design.backlogprojection;
 
 import design.backlogprojection.BacklogTrajectoryEstimator.BacklogBoundsDecider;
 import design.backlogprojection.BacklogTrajectoryEstimator.ProcessingOrderCriteria;
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
 import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
 import design.backlogprojection.BacklogTrajectoryEstimator.StaffingPlan;
 import design.backlogprojection.BacklogTrajectoryEstimator.UpstreamThroughputTrajectory;
 import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowBacklog;
 import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
 import design.global.TrajectoryTest;
+import design.backlogprojection.montecarlo.MonteCarloProjector;
+import design.backlogprojection.montecarlo.Perturbation;
+import design.backlogprojection.processingcriterias.BatchDiscriminatedPoc;
+import design.backlogprojection.processingcriterias.SlaDiscriminatedPoc.SlaQueue;
 import design.global.Workflow;
+import design.global.Workflow.Stage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.jqwik.api.Arbitraries;
 import net.jqwik.api.Arbitrary;
 import net.jqwik.api.Combinators;
+import net.jqwik.api.Example;
 import net.jqwik.api.ForAll;
 import net.jqwik.api.Property;
 import net.jqwik.api.Provide;
 import net.jqwik.time.api.constraints.DateTimeRange;
 
 import fj.data.List;
+import fj.data.TreeMap;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 import static design.backlogprojection.BacklogProjectionUseCase.SCOPE_IN_HOURS;
+import static design.backlogprojection.EstimationFixtures.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class BacklogProjectionUseCaseTest {
 
@@ -36,13 +54,195 @@ class BacklogProjectionUseCaseTest {
 		(w, i) -> sd.nextKnownSlas,
 		(w, i) -> sd.processingOrderCriteria,
 		(w, i) -> sd.backlogBoundsDecider,
-		() -> sd.upstreamThroughputTrajectory
+		() -> sd.upstreamThroughputTrajectory,
+		(w, i) -> null,
+		(w, i) -> null,
+		new ProjectionMetrics(new SimpleMeterRegistry(), queue -> 0),
+		BranchesParallelism.SEQUENTIAL
 	);
 
 	List<WorkflowTrajectoryStep> workflowTrajectory = bpuc.execute(sd.workflow, sd.viewDate);
 	// TODO
   }
 
+  @Example
+  void theOverseenTrajectoryShouldHaveTheHeadcountTheDownstreamDemandNeeds() {
+	final var registry = new SimpleMeterRegistry();
+	final var boundsDecidersCount = new AtomicInteger();
+	final Sla sla = () -> START.plus(12, ChronoUnit.HOURS);
+	final var useCase = new BacklogProjectionUseCase(
+		(from, to, stages) -> (stage, stepStart, stepEnd) -> throughputIntegral(3 + stage.ordinal(), stepStart, stepEnd),
+		(w, i) -> stage -> new TotalQueue(100),
+		(w, i) -> Stream.of(sla),
+		(w, i) -> CRITERIA,
+		(w, i) -> {
+		  boundsDecidersCount.incrementAndGet();
+		  return BOUNDS_DECIDER;
+		},
+		() -> (from, to) -> new TotalQueue(throughputIntegral(7, from, to)),
+		(w, i) -> new BacklogTrajectoryOverseer.StaffingPlan() {
+		  @Override
+		  public double integrateThroughputOf(final Stage stage, final Instant from, final Instant to) {
+			return throughputIntegral(3 + stage.ordinal(), from, to);
+		  }
+
+		  @Override
+		  public double getAverageProductivity(final Stage stage, final Instant from, final Instant to) {
+			return 10;
+		  }
+		},
+		(w, i) -> (finalStage, from, to) -> new SlaQueue(Map.of(sla, 60L)),
+		new ProjectionMetrics(registry, queue -> 0),
+		BranchesParallelism.SEQUENTIAL
+	);
+
+	final var oversawSteps = useCase.executeOverseen(Workflow.inbound, START, ProjectionTimings.NONE);
+
+	assertTrue(oversawSteps.isNotEmpty());
+	oversawSteps.forEach(step -> assertEquals(6, step.stagesStep().get(Stage.putAway).optimumHeadcount()));
+	assertEquals(1, registry.get(ProjectionMetrics.PREFIX + ".oversight").timer().count());
+	assertEquals(1, registry.get(ProjectionMetrics.PREFIX + ".execution").timer().count());
+	// the overseer uses the bounds decider fetched with the other inputs
+	assertEquals(1, boundsDecidersCount.get());
+  }
+
+  @Example
+  void everyProjectionModeShouldBeTimedAndRecordedAsAnExecution() {
+	final var registry = new SimpleMeterRegistry();
+	final var useCase = new BacklogProjectionUseCase(
+		(from, to, stages) -> (stage, stepStart, stepEnd) -> throughputIntegral(3 + stage.ordinal(), stepStart, stepEnd),
+		(w, i) -> stage -> new TotalQueue(100),
+		(w, i) -> slas(),
+		(w, i) -> CRITERIA,
+		(w, i) -> BOUNDS_DECIDER,
+		() -> (from, to) -> new TotalQueue(throughputIntegral(7, from, to)),
+		(w, i) -> null,
+		(w, i) -> null,
+		new ProjectionMetrics(registry, queue -> 0),
+		BranchesParallelism.SEQUENTIAL
+	);
+
+	final var timings = new ProjectionTimings();
+	final var allSteps = useCase.execute(Workflow.outbound, START, timings);
+	final var firstSteps = useCase.executeUntil(Workflow.outbound, START, START.plus(6, ChronoUnit.HOURS), timings);
+	useCase.executeScenarios(Workflow.outbound, START, java.util.List.of(), timings);
+	useCase.executeParareal(
+		Workflow.outbound,
+		START,
+		new PararealEstimator.Settings(Duration.ofHours(6), Duration.ofHours(1), -1, 8, ForkJoinPool.commonPool()),
+		timings
+	);
+	useCase.executeProbabilistic(
+		Workflow.outbound,
+		START,
+		new MonteCarloProjector.Settings(10, Perturbation.logNormal(0.1), Perturbation.logNormal(0.1), new double[] {0.5}, 0.01, 0),
+		timings
+	);
+
+	assertEquals(5, registry.get(ProjectionMetrics.PREFIX + ".execution").timer().count());
+	assertEquals(5, registry.get(ProjectionMetrics.PREFIX + ".steps").summary().count());
+	// only the steps that start before the horizon were simulated
+	assertTrue(firstSteps.length() < allSteps.length());
+	assertTrue(firstSteps.last().startingDate().isBefore(START.plus(6, ChronoUnit.HOURS)));
+  }
+
+  @Example
+  void theBucketedTrajectoryShouldHaveTheBucketTotalsOfTheExactOne() {
+	final var slas = java.util.List.<Sla>of(
+		() -> START.plus(30, ChronoUnit.MINUTES),
+		() -> START.plus(40, ChronoUnit.MINUTES),
+		() -> START.plus(6, ChronoUnit.HOURS),
+		() -> START.plus(380, ChronoUnit.MINUTES),
+		() -> START.plus(12, ChronoUnit.HOURS)
+	);
+	final var criteria = new BatchDiscriminatedPoc();
+	// the deadlines and the bucket ends are inflection points of the criteria, so both trajectories have the same steps
+	final var steppedCriteria = new ProcessingOrderCriteria() {
+	  @Override
+	  public SplitQueue decide(
+		  final Stage stage,
+		  final Queue initialQueue,
+		  final long toProcessQuantity,
+		  final Instant start,
+		  final Instant end,
+		  final TreeMap<Instant, List<Sla>> nextSlasByDeadline
+	  ) {
+		return criteria.decide(stage, initialQueue, toProcessQuantity, start, end, nextSlasByDeadline);
+	  }
+
+	  @Override
+	  public Stream<Instant> getInflectionPointsBetween(final Instant from, final Instant to) {
+		return CRITERIA.getInflectionPointsBetween(from, to);
+	  }
+	};
+	// the processing stages have more units than they can process until the last deadline, and the desired buffer of the first one is
+	// long enough for the waving to release part of its queue at every step
+	final var backlog = Map.<Stage, Queue>of(
+		Stage.waving,
+		new SlaQueue(Map.of(slas.get(0), 1000L, slas.get(1), 1000L, slas.get(2), 3000L, slas.get(3), 3000L, slas.get(4), 3000L)),
+		Stage.picking, fifoQueue(slas.get(0), slas.get(1)),
+		Stage.packingDirect, fifoQueue(slas.get(1), slas.get(2)),
+		Stage.walling, fifoQueue(slas.get(0), slas.get(3)),
+		Stage.packingWalled, fifoQueue(slas.get(2), slas.get(4))
+	);
+	final var boundsDecider = new BacklogBoundsDecider() {
+	  @Override
+	  public Duration getDesiredBufferSize(final Stage stage, final Instant when, final TreeMap<Instant, List<Sla>> nextSlasByDeadline) {
+		return Duration.ofHours(48);
+	  }
+
+	  @Override
+	  public Stream<Instant> getInflectionPointsBetween(final Instant from, final Instant to) {
+		return Stream.empty();
+	  }
+	};
+	final var useCase = new BacklogProjectionUseCase(
+		(from, to, stages) -> (stage, stepStart, stepEnd) -> throughputIntegral(3 + stage.ordinal(), stepStart, stepEnd),
+		(w, i) -> backlog::get,
+		(w, i) -> slas.stream(),
+		(w, i) -> steppedCriteria,
+		(w, i) -> boundsDecider,
+		() -> (from, to) -> new SlaQueue(Map.of(slas.get(4), throughputIntegral(7, from, to))),
+		(w, i) -> null,
+		(w, i) -> null,
+		new ProjectionMetrics(new SimpleMeterRegistry(), queue -> 0),
+		BranchesParallelism.SEQUENTIAL
+	);
+	final var slaBuckets = new SlaBuckets(Duration.ofHours(1), criteria::relabel);
+
+	final var exactSteps = useCase.execute(Workflow.outbound, START);
+	final var bucketedSteps = useCase
+		.executeBucketed(Workflow.outbound, START, slaBuckets, BatchDiscriminatedPoc::forEachPile, ProjectionTimings.NONE)
+		.steps();
+
+	assertEquals(exactSteps.length(), bucketedSteps.length());
+	exactSteps.zip(bucketedSteps).forEach(steps -> {
+	  assertSameTotals(Workflow.outbound, steps._1(), steps._2());
+	  for (var stage : Workflow.outbound.stages()) {
+		assertEquals(
+			breakDownByBucket(steps._1().stagesStep().get(stage).finalQueue(), slaBuckets),
+			breakDownByBucket(steps._2().stagesStep().get(stage).finalQueue(), slaBuckets)
+		);
+	  }
+	});
+	// the bucket of the SLAs due within the hour that follows the view date is waved first, and completely
+	final var firstWave = bucketedSteps.head().stagesStep().get(Stage.waving).processedQueueByDestinationStage().get(Stage.picking);
+	assertEquals(2000, (long) breakDownByBucket(firstWave, slaBuckets).get(slaBuckets.bucketOf(slas.get(0))));
+  }
+
+  /**
+   * A FIFO queue of the {@link BatchDiscriminatedPoc} made of a heap of 4000 units of each of the specified SLAs.
+   */
+  private static Queue fifoQueue(final Sla first, final Sla second) {
+	return BatchDiscriminatedPoc.batchOf(Map.of(first, 4000L)).append(BatchDiscriminatedPoc.batchOf(Map.of(second, 4000L)));
+  }
+
+  private static Map<Sla, Long> breakDownByBucket(final Queue queue, final SlaBuckets slaBuckets) {
+	final var totalsByBucket = new HashMap<Sla, Long>();
+	BatchDiscriminatedPoc.forEachPile(queue, (sla, quantity) -> totalsByBucket.merge(slaBuckets.bucketOf(sla), quantity, Long::sum));
+	return totalsByBucket;
+  }
+
   record SampleData(
 	  StaffingPlan staffingPlan,
 	  WorkflowBacklog actualWorkflowBacklog,
@@ -60,7 +260,7 @@ class BacklogProjectionUseCaseTest {
   ) {
 	final Arbitrary<StaffingPlan> staffingPlanArbitrary =
 		TrajectoryTest.buildTrajectoryArbitrary(SCOPE_IN_HOURS, 99, viewDate, viewDate.plusSeconds(SCOPE_IN_HOURS * 3600))
-			.list().ofSize(workflow.stages.length)
+			.list().ofSize(workflow.stages().length)
 			.map(trajectories -> (stage, from, to) -> trajectories.get(stage.ordinal()).integrate(from, to, TimeUnit.HOURS));
 
 //	TODO
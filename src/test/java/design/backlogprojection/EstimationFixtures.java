@@ -0,0 +1,131 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.BacklogBoundsDecider;
+import design.backlogprojection.BacklogTrajectoryEstimator.ProcessingOrderCriteria;
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StepTranscendentalInvariants;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.global.ImmutableEnumMap;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The inputs of the {@link BacklogTrajectoryEstimator} shared by the tests of the estimation: queues that only keep totals, a criteria
+ * and a bounds decider with regular inflection points, throughputs that change every hour, and SLAs every six hours.
+ */
+final class EstimationFixtures {
+  private EstimationFixtures() {}
+
+  static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+  private static final Stage[] ALL_STAGES = Stage.values();
+
+  record TotalQueue(long total) implements Queue {
+	@Override
+	public Queue append(final Queue other) {
+	  return new TotalQueue(total + other.total());
+	}
+  }
+
+  /**
+   * A criteria that only keeps totals, sends all the processed units to the next stage, and whose inflection points are every ten minutes.
+   */
+  static final ProcessingOrderCriteria CRITERIA = new ProcessingOrderCriteria() {
+	@Override
+	public SplitQueue decide(
+		final Stage stage,
+		final Queue initialQueue,
+		final long toProcessQuantity,
+		final Instant start,
+		final Instant end,
+		final TreeMap<Instant, List<Sla>> nextSlasByDeadline
+	) {
+	  final var nextStages = stage.nextStages();
+	  final var processed = ImmutableEnumMap.<Stage, Queue>builder(ALL_STAGES);
+	  for (var i = 0; i < nextStages.length; ++i) {
+		final var share = toProcessQuantity / nextStages.length + (i < toProcessQuantity % nextStages.length ? 1 : 0);
+		processed.add(nextStages[i], new TotalQueue(share));
+	  }
+	  return new SplitQueue(new TotalQueue(initialQueue.total() - toProcessQuantity), processed.build());
+	}
+
+	@Override
+	public Stream<Instant> getInflectionPointsBetween(final Instant from, final Instant to) {
+	  return Stream.iterate(
+		  from.truncatedTo(ChronoUnit.HOURS),
+		  instant -> instant.isBefore(to),
+		  instant -> instant.plus(10, ChronoUnit.MINUTES)
+	  ).filter(instant -> instant.isAfter(from));
+	}
+  };
+
+  static final BacklogBoundsDecider BOUNDS_DECIDER = new BacklogBoundsDecider() {
+	@Override
+	public Duration getDesiredBufferSize(final Stage stage, final Instant when, final TreeMap<Instant, List<Sla>> nextSlasByDeadline) {
+	  return Duration.ofMinutes(30);
+	}
+
+	@Override
+	public Stream<Instant> getInflectionPointsBetween(final Instant from, final Instant to) {
+	  return Stream.empty();
+	}
+  };
+
+  static StepTranscendentalInvariants transcendentals(final Workflow workflow) {
+	return transcendentals(workflow, BranchesParallelism.SEQUENTIAL);
+  }
+
+  static StepTranscendentalInvariants transcendentals(final Workflow workflow, final BranchesParallelism branchesParallelism) {
+	return new StepTranscendentalInvariants(
+		workflow.stages(),
+		workflow.processingStages(),
+		(from, to) -> new TotalQueue(throughputIntegral(7, from, to)),
+		(stage, from, to) -> throughputIntegral(3 + stage.ordinal(), from, to),
+		CRITERIA,
+		BOUNDS_DECIDER,
+		branchesParallelism
+	);
+  }
+
+  /**
+   * The integral of a throughput that changes every hour, in units per minute.
+   */
+  static long throughputIntegral(final int seed, final Instant from, final Instant to) {
+	var integral = 0L;
+	for (var minute = from; minute.isBefore(to); minute = minute.plus(1, ChronoUnit.MINUTES)) {
+	  integral += (seed * (minute.getEpochSecond() / 3600 + 1)) % 11;
+	}
+	return integral;
+  }
+
+  static Stream<Sla> slas() {
+	return IntStream.range(1, 5).mapToObj(hours -> (Sla) () -> START.plus(hours * 6L, ChronoUnit.HOURS));
+  }
+
+  static void assertSameTotals(
+	  final Workflow workflow,
+	  final WorkflowTrajectoryStep expected,
+	  final WorkflowTrajectoryStep actual
+  ) {
+	assertEquals(expected.startingDate(), actual.startingDate());
+	assertEquals(expected.endingDate(), actual.endingDate());
+	for (Stage stage : workflow.stages()) {
+	  final var expectedStageStep = expected.stagesStep().get(stage);
+	  final var actualStageStep = actual.stagesStep().get(stage);
+	  assertEquals(expectedStageStep.initialQueue().total(), actualStageStep.initialQueue().total());
+	  assertEquals(expectedStageStep.processedTotal(), actualStageStep.processedTotal());
+	  assertEquals(expectedStageStep.finalQueue().total(), actualStageStep.finalQueue().total());
+	}
+  }
+}
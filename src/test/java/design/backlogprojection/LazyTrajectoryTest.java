@@ -0,0 +1,56 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionUseCase.StrategyByWorkflow;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowBacklog;
+import design.backlogprojection.EstimationFixtures.TotalQueue;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import java.time.temporal.ChronoUnit;
+
+import static design.backlogprojection.EstimationFixtures.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LazyTrajectoryTest {
+
+  /**
+   * Simulating the trajectory by parts, resuming from the last simulated step, should give the same steps as simulating it at once.
+   */
+  @Example
+  void theStepsSimulatedOnDemandShouldBeEqualToTheEagerlySimulatedOnes() {
+	for (Workflow workflow : Workflow.values()) {
+	  final var strategy = StrategyByWorkflow.from(workflow);
+	  final WorkflowBacklog startingBacklog = stage -> new TotalQueue(100L * (stage.ordinal() + 1));
+	  final var eager = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		  START, startingBacklog, slas(), strategy.stepEstimator, transcendentals(workflow)
+	  ).toJavaList();
+
+	  final var lazy = LazyTrajectory.of(
+		  START, startingBacklog, slas(), strategy.stepEstimator, transcendentals(workflow), ProjectionTimings.NONE
+	  );
+	  final var horizon = START.plus(4, ChronoUnit.HOURS).plus(5, ChronoUnit.MINUTES);
+	  final var firstSteps = lazy.stepsUntil(horizon);
+	  assertFalse(lazy.isComplete());
+	  assertTrue(firstSteps.forall(step -> step.startingDate().isBefore(horizon)));
+	  assertTrue(firstSteps.last().endingDate().isAfter(horizon));
+
+	  final var allSteps = lazy.allSteps().toJavaList();
+	  assertTrue(lazy.isComplete());
+	  assertEquals(eager.size(), allSteps.size());
+	  for (var index = 0; index < eager.size(); ++index) {
+		final var expected = eager.get(index);
+		final var actual = allSteps.get(index);
+		assertEquals(expected.startingDate(), actual.startingDate());
+		assertEquals(expected.endingDate(), actual.endingDate());
+		assertEquals(expected.nextSlasByDeadline().size(), actual.nextSlasByDeadline().size());
+		for (Stage stage : workflow.stages()) {
+		  assertEquals(expected.stagesStep().get(stage).processedTotal(), actual.stagesStep().get(stage).processedTotal());
+		  assertEquals(expected.stagesStep().get(stage).finalQueue().total(), actual.stagesStep().get(stage).finalQueue().total());
+		}
+	  }
+	}
+  }
+}
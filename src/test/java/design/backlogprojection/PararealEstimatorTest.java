@@ -0,0 +1,82 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionUseCase.StrategyByWorkflow;
+import design.global.Workflow;
+import net.jqwik.api.Example;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+
+import static design.backlogprojection.EstimationFixtures.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PararealEstimatorTest {
+  @Example
+  void withANegativeToleranceTheResultShouldBeEqualToTheSequentialEstimation() {
+	for (Workflow workflow : Workflow.values()) {
+	  final var strategy = StrategyByWorkflow.from(workflow);
+	  final var slas = slas().toList();
+	  final BacklogTrajectoryEstimator.WorkflowBacklog startingBacklog = stage -> new TotalQueue(100L * (stage.ordinal() + 1));
+
+	  final var sequential = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		  START, startingBacklog, slas.stream(), strategy.stepEstimator, transcendentals(workflow)
+	  );
+	  final var parallel = PararealEstimator.estimateWorkflowTrajectory(
+		  START,
+		  startingBacklog,
+		  slas.stream(),
+		  strategy.stepEstimator,
+		  transcendentals(workflow),
+		  new PararealEstimator.Settings(Duration.ofHours(3), Duration.ofHours(1), -1, Integer.MAX_VALUE, ForkJoinPool.commonPool())
+	  );
+
+	  assertTrue(parallel.exact());
+	  assertEquals(sequential.length(), parallel.steps().length());
+	  sequential.zip(parallel.steps()).forEach(pair -> assertSameTotals(workflow, pair._1(), pair._2()));
+	}
+  }
+
+  @Example
+  void withATolerantSettingEachIterationShouldSettleTheWholeWindowAndKeepTheStepsOfTheSequentialEstimation() {
+	final var pool = new ForkJoinPool(2);
+	try {
+	  for (Workflow workflow : Workflow.values()) {
+		final var strategy = StrategyByWorkflow.from(workflow);
+		final var slas = slas().toList();
+		final BacklogTrajectoryEstimator.WorkflowBacklog startingBacklog = stage -> new TotalQueue(100L * (stage.ordinal() + 1));
+
+		final var sequential = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+			START, startingBacklog, slas.stream(), strategy.stepEstimator, transcendentals(workflow)
+		);
+		final var exact = PararealEstimator.estimateWorkflowTrajectory(
+			START,
+			startingBacklog,
+			slas.stream(),
+			strategy.stepEstimator,
+			transcendentals(workflow),
+			new PararealEstimator.Settings(Duration.ofHours(3), Duration.ofHours(1), -1, Integer.MAX_VALUE, pool)
+		);
+		final var tolerant = PararealEstimator.estimateWorkflowTrajectory(
+			START,
+			startingBacklog,
+			slas.stream(),
+			strategy.stepEstimator,
+			transcendentals(workflow),
+			new PararealEstimator.Settings(Duration.ofHours(3), Duration.ofHours(1), Long.MAX_VALUE, Integer.MAX_VALUE, pool)
+		);
+
+		// the 24 hours until the last SLA are split in 8 segments of 3 hours, and each window of two is settled in a single iteration
+		assertEquals(4, tolerant.iterationsCount());
+		assertTrue(tolerant.iterationsCount() <= exact.iterationsCount());
+		assertEquals(sequential.length(), tolerant.steps().length());
+		sequential.zip(tolerant.steps()).forEach(pair -> {
+		  assertEquals(pair._1().startingDate(), pair._2().startingDate());
+		  assertEquals(pair._1().endingDate(), pair._2().endingDate());
+		});
+	  }
+	} finally {
+	  pool.shutdown();
+	}
+  }
+}
@@ -0,0 +1,122 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionUseCase.StrategyByWorkflow;
+import design.backlogprojection.BacklogTrajectoryEstimator.StaffingPlan;
+import design.backlogprojection.BacklogTrajectoryEstimator.StepTranscendentalInvariants;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowBacklog;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.backlogprojection.EstimationFixtures.TotalQueue;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import fj.data.List;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.EstimationFixtures.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ScenarioTreeTest {
+
+  /**
+   * Each variant should be equal to simulating it from scratch, and share the steps before its divergence with its parent.
+   */
+  @Example
+  void theVariantsShouldBeEqualToTheirIndependentSimulation() {
+	for (Workflow workflow : Workflow.values()) {
+	  final var strategy = StrategyByWorkflow.from(workflow);
+	  final WorkflowBacklog startingBacklog = stage -> new TotalQueue(100L * (stage.ordinal() + 1));
+	  final var baselineTranscendentals = transcendentals(workflow);
+	  final StaffingPlan doubled = (stage, from, to) -> 2 * throughputIntegral(3 + stage.ordinal(), from, to);
+	  final StaffingPlan halved = (stage, from, to) -> throughputIntegral(3 + stage.ordinal(), from, to) / 2.0;
+	  final var lateShift = new ScenarioTree.Variant("lateShift", ScenarioTree.BASELINE, START.plus(12, ChronoUnit.HOURS), doubled);
+	  final var lateCut = new ScenarioTree.Variant("lateCut", "lateShift", START.plus(18, ChronoUnit.HOURS), halved);
+
+	  final var trajectories = ScenarioTree.estimateWorkflowTrajectories(
+		  START, startingBacklog, slas(), strategy.stepEstimator, baselineTranscendentals, java.util.List.of(lateShift, lateCut)
+	  );
+
+	  final var lateShiftPlan =
+		  new ScenarioTree.DivergingStaffingPlan(baselineTranscendentals.staffingPlan(), lateShift.divergesAt(), doubled);
+	  final var lateCutPlan = new ScenarioTree.DivergingStaffingPlan(lateShiftPlan, lateCut.divergesAt(), halved);
+	  assertSameTotals(workflow, estimate(workflow, startingBacklog, baselineTranscendentals), trajectories.get(ScenarioTree.BASELINE));
+	  assertSameTotals(
+		  workflow,
+		  estimate(workflow, startingBacklog, withPlan(baselineTranscendentals, lateShiftPlan)),
+		  trajectories.get("lateShift")
+	  );
+	  assertSameTotals(
+		  workflow,
+		  estimate(workflow, startingBacklog, withPlan(baselineTranscendentals, lateCutPlan)),
+		  trajectories.get("lateCut")
+	  );
+
+	  final var baseline = trajectories.get(ScenarioTree.BASELINE).toJavaList();
+	  final var variant = trajectories.get("lateShift").toJavaList();
+	  assertSame(baseline.get(0), variant.get(0));
+	  assertNotSame(baseline.get(baseline.size() - 1), variant.get(variant.size() - 1));
+	}
+  }
+
+  /**
+   * The integrals of many intervals should be those of each interval, wherever the divergence instant falls.
+   */
+  @Example
+  void theDivergingPlanShouldIntegrateManyIntervalsLikeEachOne() {
+	final StaffingPlan before = (stage, from, to) -> throughputIntegral(3, from, to);
+	final StaffingPlan after = (stage, from, to) -> throughputIntegral(5, from, to);
+	final var boundaries = Stream.iterate(START, instant -> instant.plus(45, ChronoUnit.MINUTES)).limit(9).toArray(Instant[]::new);
+
+	for (var minutes = -60; minutes <= 420; minutes += 15) {
+	  final var plan = new ScenarioTree.DivergingStaffingPlan(before, START.plus(minutes, ChronoUnit.MINUTES), after);
+	  final var integrals = plan.integrateThroughputsOf(Stage.picking, boundaries);
+
+	  assertEquals(boundaries.length - 1, integrals.length);
+	  for (var i = 0; i < integrals.length; ++i) {
+		assertEquals(plan.integrateThroughputOf(Stage.picking, boundaries[i], boundaries[i + 1]), integrals[i], 1e-9);
+	  }
+	}
+  }
+
+  private static List<WorkflowTrajectoryStep> estimate(
+	  final Workflow workflow,
+	  final WorkflowBacklog startingBacklog,
+	  final StepTranscendentalInvariants transcendentals
+  ) {
+	return BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		START, startingBacklog, slas(), StrategyByWorkflow.from(workflow).stepEstimator, transcendentals
+	);
+  }
+
+  private static StepTranscendentalInvariants withPlan(final StepTranscendentalInvariants transcendentals, final StaffingPlan plan) {
+	return new StepTranscendentalInvariants(
+		transcendentals.allStages(),
+		transcendentals.processingStages(),
+		transcendentals.upstreamThroughputTrajectory(),
+		plan,
+		transcendentals.processingOrderCriteria(),
+		transcendentals.backlogBoundsDecider(),
+		transcendentals.branchesParallelism()
+	);
+  }
+
+  private static void assertSameTotals(
+	  final Workflow workflow,
+	  final List<WorkflowTrajectoryStep> expected,
+	  final List<WorkflowTrajectoryStep> actual
+  ) {
+	assertEquals(expected.length(), actual.length());
+	expected.zip(actual).forEach(pair -> {
+	  assertEquals(pair._1().endingDate(), pair._2().endingDate());
+	  for (Stage stage : workflow.stages()) {
+		assertEquals(pair._1().stagesStep().get(stage).processedTotal(), pair._2().stagesStep().get(stage).processedTotal());
+		assertEquals(pair._1().stagesStep().get(stage).finalQueue().total(), pair._2().stagesStep().get(stage).finalQueue().total());
+	  }
+	});
+  }
+}
@@ -0,0 +1,78 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlaBucketsTest {
+  private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+  private static final Sla SLA_A = () -> START.plus(Duration.ofMinutes(70));
+  private static final Sla SLA_B = () -> START.plus(Duration.ofMinutes(110));
+  private static final Sla SLA_C = () -> START.plus(Duration.ofMinutes(130));
+
+  private record PilesQueue(Map<Sla, Long> piles) implements Queue {
+	@Override
+	public long total() {
+	  return piles.values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	@Override
+	public Queue append(final Queue other) {
+	  throw new UnsupportedOperationException();
+	}
+  }
+
+  private static final SlaBreakdown BREAKDOWN = (queue, consumer) -> ((PilesQueue) queue).piles().forEach(consumer::accept);
+
+  private static final SlaRelabeling RELABELING = (queue, mapping) -> new PilesQueue(
+	  ((PilesQueue) queue).piles().entrySet().stream()
+		  .collect(Collectors.toMap(entry -> mapping.apply(entry.getKey()), Map.Entry::getValue, Long::sum))
+  );
+
+  private static Map<Sla, Long> breakDown(final SlaBreakdown breakdown, final Queue queue) {
+	final var quantities = new HashMap<Sla, Long>();
+	breakdown.forEachPile(queue, (sla, quantity) -> quantities.merge(sla, quantity, Long::sum));
+	return quantities;
+  }
+
+  @Example
+  void theSlasShouldBeMappedToTheEndOfTheirDeadlineBucket() {
+	final var buckets = new SlaBuckets(Duration.ofHours(1), RELABELING);
+	final var firstBucket = new SlaBuckets.Bucket(START.plus(Duration.ofHours(2)));
+	final var secondBucket = new SlaBuckets.Bucket(START.plus(Duration.ofHours(3)));
+
+	assertEquals(firstBucket, buckets.bucketOf(SLA_A));
+	assertEquals(firstBucket, buckets.bucketOf(SLA_B));
+	assertEquals(secondBucket, buckets.bucketOf(SLA_C));
+	assertEquals(firstBucket, buckets.bucketOf(firstBucket));
+	assertEquals(2, buckets.bucket(Stream.of(SLA_A, SLA_B, SLA_C)).count());
+	assertEquals(
+		Map.of(firstBucket, 7L, secondBucket, 4L),
+		breakDown(BREAKDOWN, buckets.bucket(new PilesQueue(Map.of(SLA_A, 3L, SLA_B, 4L, SLA_C, 4L))))
+	);
+  }
+
+  @Example
+  void theDeaggregationShouldSplitEachBucketProportionallyAndConserveItsQuantity() {
+	final var buckets = new SlaBuckets(Duration.ofHours(1), RELABELING);
+	final var backlog = new PilesQueue(Map.of(SLA_A, 1L, SLA_B, 2L));
+	final var weights = SlaBuckets.weightsOf(stage -> backlog, new Stage[] {Stage.checkIn}, BREAKDOWN);
+	final var deaggregating = buckets.deaggregating(BREAKDOWN, weights);
+
+	final var bucketedQueue = buckets.bucket(new PilesQueue(Map.of(SLA_A, 4L, SLA_B, 6L, SLA_C, 5L)));
+	final var deaggregated = breakDown(deaggregating, bucketedQueue);
+
+	// 10 units in the first bucket split 1:2, with the remainder going to the largest fractional part
+	assertEquals(Map.of(SLA_A, 3L, SLA_B, 7L, buckets.bucketOf(SLA_C), 5L), deaggregated);
+  }
+}
@@ -0,0 +1,69 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StageTrajectoryStep;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.global.ImmutableEnumMap;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import fj.Ord;
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlaPivotTest {
+  private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+  private static final Sla SLA_A = () -> START.plus(Duration.ofHours(6));
+  private static final Sla SLA_B = () -> START.plus(Duration.ofHours(12));
+
+  private record PilesQueue(Map<Sla, Long> piles) implements Queue {
+	@Override
+	public long total() {
+	  return piles.values().stream().mapToLong(Long::longValue).sum();
+	}
+
+	@Override
+	public Queue append(final Queue other) {
+	  throw new UnsupportedOperationException();
+	}
+  }
+
+  private static final SlaBreakdown BREAKDOWN = (queue, consumer) -> ((PilesQueue) queue).piles().forEach(consumer::accept);
+
+  private static WorkflowTrajectoryStep step(final long fromMinutes, final long toMinutes, final Map<Sla, Long> finalPiles) {
+	final var queue = new PilesQueue(finalPiles);
+	return new WorkflowTrajectoryStep(
+		START.plus(Duration.ofMinutes(fromMinutes)),
+		START.plus(Duration.ofMinutes(toMinutes)),
+		ImmutableEnumMap.of(Stage.checkIn, new StageTrajectoryStep(Stage.checkIn, queue, queue, ImmutableEnumMap.of(), queue, 0, 0)),
+		TreeMap.<Instant, List<Sla>>empty(Ord.comparableOrd())
+	);
+  }
+
+  @Example
+  void eachBucketShouldHaveTheFinalQueueOfTheLastStepThatEndsInside() {
+	final var builder = new SlaPivot.Builder(START, Duration.ofHours(1), new Stage[] {Stage.checkIn}, BREAKDOWN);
+	builder.accept(step(0, 30, Map.of(SLA_A, 5L)));
+	builder.accept(step(30, 60, Map.of(SLA_A, 3L)));
+	builder.accept(step(60, 180, Map.of(SLA_A, 1L, SLA_B, 7L)));
+	final var pivot = builder.build();
+
+	assertEquals(2, pivot.slas().size());
+	final var indexOfB = pivot.slas().indexOf(SLA_B);
+	final var units = pivot.unitsByStage().get(Stage.checkIn);
+	assertEquals(3, units.length);
+	assertArrayEquals(indexOfB == 1 ? new long[] {3, 0} : new long[] {0, 3}, units[0]);
+	// no step ends during the second bucket, so it carries the queue of the first one
+	assertArrayEquals(units[0], units[1]);
+	assertEquals(1, units[2][1 - indexOfB]);
+	assertEquals(7, units[2][indexOfB]);
+  }
+}
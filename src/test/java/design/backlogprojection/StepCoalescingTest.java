@@ -0,0 +1,106 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionUseCase.StrategyByWorkflow;
+import design.backlogprojection.BacklogTrajectoryEstimator.BacklogBoundsDecider;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StepTranscendentalInvariants;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.EstimationFixtures.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StepCoalescingTest {
+  private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+
+  private static Instant minute(final int minutes) {
+	return START.plus(minutes, ChronoUnit.MINUTES);
+  }
+
+  private static final List<Instant> INFLECTION_POINTS = List.arrayList(
+	  minute(1), minute(2), minute(3), minute(30), minute(31), minute(60), minute(61), minute(120)
+  );
+
+  @Example
+  void theExactModeShouldKeepAllTheInflectionPoints() {
+	final var boundaries = StepCoalescing.exact().coalesce(START, INFLECTION_POINTS, point -> false);
+	assertEquals(INFLECTION_POINTS, boundaries.stepEndingDates());
+	assertEquals(Duration.ZERO, boundaries.errorBound());
+  }
+
+  @Example
+  void theToleranceModeShouldDropThePointsCloserThanTheToleranceExceptTheRequiredOnes() {
+	final var boundaries = StepCoalescing.mergingStepsShorterThan(Duration.ofMinutes(10))
+		.coalesce(START, INFLECTION_POINTS, point -> point.equals(minute(31)));
+	assertEquals(List.arrayList(minute(30), minute(31), minute(60), minute(120)), boundaries.stepEndingDates());
+	assertEquals(Duration.ofMinutes(60), boundaries.errorBound());
+  }
+
+  @Example
+  void theBoundedModeShouldMergeTheShortestStepsFirst() {
+	final var boundaries = StepCoalescing.boundedTo(4).coalesce(START, INFLECTION_POINTS, point -> point.equals(minute(60)));
+	assertEquals(4, boundaries.stepEndingDates().length());
+	assertEquals(List.arrayList(minute(31), minute(60), minute(61), minute(120)), boundaries.stepEndingDates());
+	assertEquals(Duration.ofMinutes(31), boundaries.errorBound());
+  }
+
+  @Example
+  void theBoundedModeShouldNeverDropTheRequiredPoints() {
+	final var boundaries = StepCoalescing.boundedTo(1).coalesce(START, INFLECTION_POINTS, point -> point.equals(minute(30)));
+	assertEquals(List.arrayList(minute(30), minute(120)), boundaries.stepEndingDates());
+  }
+
+  @Example
+  void theCoarseEstimationShouldKeepTheInflectionPointsOfTheCriteria() {
+	// the bounds decider has inflection points between those of the criteria, which are every ten minutes
+	final BacklogBoundsDecider boundsDecider = new BacklogBoundsDecider() {
+	  @Override
+	  public Duration getDesiredBufferSize(final Stage stage, final Instant when, final TreeMap<Instant, List<Sla>> nextSlasByDeadline) {
+		return Duration.ofMinutes(30);
+	  }
+
+	  @Override
+	  public Stream<Instant> getInflectionPointsBetween(final Instant from, final Instant to) {
+		return CRITERIA.getInflectionPointsBetween(from, to).map(instant -> instant.plus(5, ChronoUnit.MINUTES));
+	  }
+	};
+	final var transcendentals = new StepTranscendentalInvariants(
+		Workflow.inbound.stages(),
+		Workflow.inbound.processingStages(),
+		(from, to) -> new TotalQueue(throughputIntegral(7, from, to)),
+		(stage, from, to) -> throughputIntegral(3 + stage.ordinal(), from, to),
+		CRITERIA,
+		boundsDecider,
+		BranchesParallelism.SEQUENTIAL
+	);
+
+	final var trajectory = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		START,
+		stage -> new TotalQueue(100),
+		slas(),
+		StrategyByWorkflow.from(Workflow.inbound).stepEstimator,
+		transcendentals,
+		StepCoalescing.mergingStepsShorterThan(Duration.ofMinutes(30)),
+		ProjectionTimings.NONE
+	);
+
+	final var stepEndingDates = trajectory.steps().map(WorkflowTrajectoryStep::endingDate).toJavaList();
+	final var lastDeadline = stepEndingDates.get(stepEndingDates.size() - 1);
+	assertTrue(stepEndingDates.containsAll(CRITERIA.getInflectionPointsBetween(START, lastDeadline).collect(Collectors.toList())));
+	assertFalse(stepEndingDates.contains(START.plus(5, ChronoUnit.MINUTES)));
+	assertEquals(Duration.ofMinutes(10), trajectory.errorBound());
+  }
+}
@@ -0,0 +1,97 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionUseCase.StrategyByWorkflow;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowBacklog;
+import design.backlogprojection.EstimationFixtures.TotalQueue;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.EstimationFixtures.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrajectoryIndexTest {
+
+  @Example
+  void theIndexedQueriesShouldBeEqualToScanningTheSteps() {
+	final var workflow = Workflow.outbound;
+	final WorkflowBacklog startingBacklog = stage -> new TotalQueue(100L * (stage.ordinal() + 1));
+	final var steps = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		START, startingBacklog, slas(), StrategyByWorkflow.from(workflow).stepEstimator, transcendentals(workflow)
+	);
+	final var index = TrajectoryIndex.of(steps);
+	final var lastStep = steps.last();
+	final var instants = Stream.iterate(START.minus(1, ChronoUnit.HOURS), instant -> instant.plus(7, ChronoUnit.MINUTES))
+		.limit(300)
+		.toArray(Instant[]::new);
+
+	for (Stage stage : workflow.stages()) {
+	  final var expectedTotals = new long[instants.length];
+	  for (var i = 0; i < instants.length; ++i) {
+		final var instant = instants[i];
+		final var containingStep = steps.find(step -> !instant.isBefore(step.startingDate()) && instant.isBefore(step.endingDate()));
+		final var expected = containingStep.isSome()
+			? containingStep.some().stagesStep().get(stage).initialQueue().total()
+			: instant.isBefore(START)
+			? steps.head().stagesStep().get(stage).initialQueue().total()
+			: lastStep.stagesStep().get(stage).finalQueue().total();
+		expectedTotals[i] = expected;
+		assertEquals(expected, index.queueTotalAt(stage, instant, false));
+		assertEquals(expected, index.queueAt(stage, instant).total());
+	  }
+	  assertArrayEquals(expectedTotals, index.queueTotalsAt(stage, instants, false));
+	}
+  }
+
+  @Example
+  void theInterpolatedTotalShouldBeBetweenTheInitialAndFinalTotalsOfTheStep() {
+	final var workflow = Workflow.inbound;
+	final WorkflowBacklog startingBacklog = stage -> new TotalQueue(1000);
+	final var steps = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		START, startingBacklog, slas(), StrategyByWorkflow.from(workflow).stepEstimator, transcendentals(workflow)
+	);
+	final var index = TrajectoryIndex.of(steps);
+	final var firstStep = steps.head().stagesStep().get(Stage.checkIn);
+	final var middle = steps.head().startingDate().plus(5, ChronoUnit.MINUTES);
+	final var expected = (firstStep.initialQueue().total() + firstStep.finalQueue().total()) / 2.0;
+
+	assertEquals(Math.round(expected), index.queueTotalAt(Stage.checkIn, middle, true), 1);
+	assertArrayEquals(
+		new long[] {index.queueTotalAt(Stage.checkIn, middle, true)},
+		index.queueTotalsAt(Stage.checkIn, new Instant[] {middle}, true)
+	);
+  }
+
+  /**
+   * The quantities by SLA should be those of the queue at the instant, with the piles of the same SLA summed up.
+   */
+  @Example
+  void theQuantitiesBySlaShouldBeTheBreakdownOfTheQueueAtTheInstant() {
+	final var workflow = Workflow.outbound;
+	final WorkflowBacklog startingBacklog = stage -> new TotalQueue(100L * (stage.ordinal() + 1));
+	final var steps = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		START, startingBacklog, slas(), StrategyByWorkflow.from(workflow).stepEstimator, transcendentals(workflow)
+	);
+	final var index = TrajectoryIndex.of(steps);
+	final Sla sla = () -> START;
+	// reports each queue as two piles of the same SLA
+	final SlaBreakdown breakdown = (queue, consumer) -> {
+	  consumer.accept(sla, queue.total() / 2);
+	  consumer.accept(sla, queue.total() - queue.total() / 2);
+	};
+
+	final var end = steps.last().endingDate().plus(1, ChronoUnit.HOURS);
+	for (var instant = START.minus(1, ChronoUnit.HOURS); instant.isBefore(end); instant = instant.plus(13, ChronoUnit.MINUTES)) {
+	  for (Stage stage : workflow.stages()) {
+		assertEquals(Map.of(sla, index.queueAt(stage, instant).total()), index.quantitiesBySlaAt(stage, instant, breakdown));
+	  }
+	}
+  }
+}
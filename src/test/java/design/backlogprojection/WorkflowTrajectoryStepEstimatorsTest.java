@@ -0,0 +1,208 @@
+package design.backlogprojection;
+
+import design.backlogprojection.BacklogProjectionUseCase.StrategyByWorkflow;
+import design.backlogprojection.BacklogTrajectoryEstimator.ProcessingOrderCriteria;
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StepTranscendentalInvariants;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowBacklog;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.backlogprojection.EstimationFixtures.TotalQueue;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Instant;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static design.backlogprojection.EstimationFixtures.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkflowTrajectoryStepEstimatorsTest {
+
+  /**
+   * When the backlog is drained and nothing comes from upstream, the steps calculated in closed form should have the same totals as the
+   * steps estimated by the processing order criteria; and the consecutive steps whose inputs don't change should share their stage steps.
+   */
+  @Example
+  void theQuiescentStepsShouldBeEqualToTheSimulatedOnes() {
+	for (Workflow workflow : Workflow.values()) {
+	  final var strategy = StrategyByWorkflow.from(workflow);
+	  final var transcendentals = new StepTranscendentalInvariants(
+		  workflow.stages(),
+		  workflow.processingStages(),
+		  (from, to) -> new TotalQueue(0),
+		  (stage, from, to) -> throughputIntegral(3 + stage.ordinal(), from, to),
+		  CRITERIA,
+		  BOUNDS_DECIDER,
+		  BranchesParallelism.SEQUENTIAL
+	  );
+	  final var nextSlasByDeadline = BacklogTrajectoryEstimator.groupNextSlasByDeadline(START, slas());
+	  final WorkflowBacklog emptyBacklog = stage -> new TotalQueue(0);
+
+	  final var steps = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		  START, emptyBacklog, slas(), strategy.stepEstimator, transcendentals
+	  ).toJavaList();
+	  final var stepInputs = StepInputs.prepare(
+		  START,
+		  List.iterableList(steps).map(WorkflowTrajectoryStep::endingDate),
+		  nextSlasByDeadline,
+		  transcendentals
+	  );
+
+	  var sharedStepsCount = 0;
+	  for (var index = 1; index < steps.size(); ++index) {
+		final var previousStep = steps.get(index - 1);
+		final var quiescentStep = steps.get(index);
+		final var simulatedStep = strategy.stepEstimator.apply(new WorkflowTrajectoryStepEstimators(
+			previousStep.endingDate(),
+			quiescentStep.endingDate(),
+			stage -> previousStep.stagesStep().get(stage).finalQueue(),
+			nextSlasByDeadline.splitLookup(previousStep.endingDate())._3(),
+			transcendentals,
+			stepInputs,
+			index
+		));
+		for (Stage stage : workflow.stages()) {
+		  final var expected = simulatedStep.stagesStep().get(stage);
+		  final var actual = quiescentStep.stagesStep().get(stage);
+		  assertEquals(expected.initialQueue().total(), actual.initialQueue().total());
+		  assertEquals(expected.incomingQueue().total(), actual.incomingQueue().total());
+		  assertEquals(expected.processedTotal(), actual.processedTotal());
+		  assertEquals(expected.finalQueue().total(), actual.finalQueue().total());
+		  assertEquals(expected.queueShortage(), actual.queueShortage());
+		}
+		if (quiescentStep.stagesStep() == previousStep.stagesStep()) {
+		  sharedStepsCount += 1;
+		}
+	  }
+	  assertTrue(sharedStepsCount > 0);
+	}
+  }
+
+  /**
+   * The estimator should begin at most one step session per simulated step, and route all the decisions of the step through it.
+   */
+  @Example
+  void theDecisionsOfEachStepShouldGoThroughASingleStepDecider() {
+	final var beginStepCalls = new AtomicInteger();
+	final var stepDeciderCalls = new AtomicInteger();
+	final var countingCriteria = new ProcessingOrderCriteria() {
+	  @Override
+	  public SplitQueue decide(
+		  final Stage stage,
+		  final Queue initialQueue,
+		  final long toProcessQuantity,
+		  final Instant start,
+		  final Instant end,
+		  final TreeMap<Instant, List<Sla>> nextSlasByDeadline
+	  ) {
+		return CRITERIA.decide(stage, initialQueue, toProcessQuantity, start, end, nextSlasByDeadline);
+	  }
+
+	  @Override
+	  public StepDecider beginStep(final Instant start, final Instant end, final TreeMap<Instant, List<Sla>> nextSlasByDeadline) {
+		beginStepCalls.incrementAndGet();
+		final var stepDecider = CRITERIA.beginStep(start, end, nextSlasByDeadline);
+		return (stage, initialQueue, toProcessQuantity) -> {
+		  stepDeciderCalls.incrementAndGet();
+		  return stepDecider.decide(stage, initialQueue, toProcessQuantity);
+		};
+	  }
+
+	  @Override
+	  public Stream<Instant> getInflectionPointsBetween(final Instant from, final Instant to) {
+		return CRITERIA.getInflectionPointsBetween(from, to);
+	  }
+	};
+	final var workflow = Workflow.outbound;
+	final var transcendentals = new StepTranscendentalInvariants(
+		workflow.stages(),
+		workflow.processingStages(),
+		(from, to) -> new TotalQueue(throughputIntegral(7, from, to)),
+		(stage, from, to) -> throughputIntegral(3 + stage.ordinal(), from, to),
+		countingCriteria,
+		BOUNDS_DECIDER,
+		BranchesParallelism.SEQUENTIAL
+	);
+
+	final var steps = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+		START, stage -> new TotalQueue(1000), slas(), StrategyByWorkflow.from(workflow).stepEstimator, transcendentals
+	);
+
+	// quiescent steps skip the decisions altogether, so there may be fewer sessions than steps.
+	assertTrue(beginStepCalls.get() > 0 && beginStepCalls.get() <= steps.length());
+	assertEquals((long) beginStepCalls.get() * workflow.stages().length, stepDeciderCalls.get());
+  }
+
+  /**
+   * The concurrent estimation of the branches should give the same trajectory as the sequential one, and take place in the pool of the
+   * {@link BranchesParallelism}.
+   */
+  @Example
+  void estimatingTheBranchesConcurrentlyShouldGiveTheSameResultAsSequentially() {
+	final var pool = new ForkJoinPool(2);
+	try {
+	  for (Workflow workflow : Workflow.values()) {
+		final var strategy = StrategyByWorkflow.from(workflow);
+		final var slas = slas().toList();
+		final WorkflowBacklog startingBacklog = stage -> new TotalQueue(100L * (stage.ordinal() + 1));
+		final var decisionsInThePool = new AtomicInteger();
+		final var threadRecordingCriteria = new ProcessingOrderCriteria() {
+		  @Override
+		  public SplitQueue decide(
+			  final Stage stage,
+			  final Queue initialQueue,
+			  final long toProcessQuantity,
+			  final Instant start,
+			  final Instant end,
+			  final TreeMap<Instant, List<Sla>> nextSlasByDeadline
+		  ) {
+			if (Thread.currentThread() instanceof ForkJoinWorkerThread worker && worker.getPool() == pool) {
+			  decisionsInThePool.incrementAndGet();
+			}
+			return CRITERIA.decide(stage, initialQueue, toProcessQuantity, start, end, nextSlasByDeadline);
+		  }
+
+		  @Override
+		  public Stream<Instant> getInflectionPointsBetween(final Instant from, final Instant to) {
+			return CRITERIA.getInflectionPointsBetween(from, to);
+		  }
+		};
+
+		final var sequential = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+			START, startingBacklog, slas.stream(), strategy.stepEstimator, transcendentals(workflow)
+		);
+		final var concurrent = BacklogTrajectoryEstimator.estimateWorkflowTrajectory(
+			START,
+			startingBacklog,
+			slas.stream(),
+			strategy.stepEstimator,
+			new StepTranscendentalInvariants(
+				workflow.stages(),
+				workflow.processingStages(),
+				(from, to) -> new TotalQueue(throughputIntegral(7, from, to)),
+				(stage, from, to) -> throughputIntegral(3 + stage.ordinal(), from, to),
+				threadRecordingCriteria,
+				BOUNDS_DECIDER,
+				new BranchesParallelism(pool, 0)
+			)
+		);
+
+		assertEquals(sequential.length(), concurrent.length());
+		sequential.zip(concurrent).forEach(pair -> assertSameTotals(workflow, pair._1(), pair._2()));
+		// only the outbound workflow forks after picking
+		assertEquals(workflow == Workflow.outbound, decisionsInThePool.get() > 0);
+	  }
+	} finally {
+	  pool.shutdown();
+	}
+  }
+}
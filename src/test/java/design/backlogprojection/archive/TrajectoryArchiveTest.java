@@ -0,0 +1,112 @@
+package design.backlogprojection.archive;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StageTrajectoryStep;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.backlogprojection.processingcriterias.BatchDiscriminatedPoc;
+import design.backlogprojection.processingcriterias.SlaDiscriminatedPoc.SlaQueue;
+import design.global.ImmutableEnumMap;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import fj.Ord;
+import fj.data.TreeMap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrajectoryArchiveTest {
+  private static final Instant START = Instant.parse("2022-01-01T08:00:00Z");
+  private static final Sla EARLY_SLA = () -> START.plus(2, ChronoUnit.HOURS);
+  private static final Sla LATE_SLA = () -> START.plus(5, ChronoUnit.HOURS);
+  private static final Map<Sla, String> SLA_IDENTIFIERS = Map.of(EARLY_SLA, "early", LATE_SLA, "late");
+
+  @Example
+  void theArchivedStepsShouldBeReadBackInTheSameOrderWithTheirTotalsAndPiles() throws IOException {
+	final var path = Files.createTempFile("trajectory", ".archive");
+	try {
+	  try (var writer = TrajectoryArchiveWriter.openWithSlaPiles(path, BatchDiscriminatedPoc::forEachPile, SLA_IDENTIFIERS::get)) {
+		writer.append(buildStep(0, 10, 3));
+	  }
+	  // reopening the archive should append after the existing records and reuse the SLA ids
+	  try (var writer = TrajectoryArchiveWriter.openWithSlaPiles(path, BatchDiscriminatedPoc::forEachPile, SLA_IDENTIFIERS::get)) {
+		writer.append(buildStep(1, 7, 0));
+	  }
+
+	  try (var reader = TrajectoryArchiveReader.open(path)) {
+		assertTrue(reader.hasSlaPiles());
+		final var cursor = reader.cursor();
+
+		assertTrue(cursor.next());
+		assertEquals(START, cursor.startingDate());
+		assertEquals(START.plus(1, ChronoUnit.HOURS), cursor.endingDate());
+		assertEquals(2, cursor.stagesCount());
+		final var putAwayIndex = cursor.indexOf(Stage.putAway);
+		assertEquals(Stage.putAway, cursor.stageAt(putAwayIndex));
+		assertEquals(13, cursor.finalTotal(putAwayIndex));
+		assertEquals(5, cursor.processedTotal(putAwayIndex));
+		assertEquals(-1, cursor.indexOf(Stage.picking));
+		assertEquals(3, cursor.pilesCount());
+		assertEquals(2, cursor.slaIdentifiersCount());
+
+		assertTrue(cursor.next());
+		assertEquals(START.plus(1, ChronoUnit.HOURS), cursor.startingDate());
+		assertEquals(7, cursor.finalTotal(cursor.indexOf(Stage.putAway)));
+		assertEquals(2, cursor.pilesCount());
+		assertEquals(2, cursor.slaIdentifiersCount());
+		for (var pileIndex = 0; pileIndex < cursor.pilesCount(); ++pileIndex) {
+		  final var expectedIdentifier = cursor.pileStage(pileIndex) == Stage.checkIn ? "late" : "early";
+		  assertEquals(expectedIdentifier, cursor.slaIdentifier(cursor.pileSlaId(pileIndex)));
+		}
+
+		assertFalse(cursor.next());
+	  }
+	} finally {
+	  Files.deleteIfExists(path);
+	}
+  }
+
+  @Example
+  void aTotalsOnlyArchiveShouldHaveNoPiles() throws IOException {
+	final var path = Files.createTempFile("trajectory", ".archive");
+	try {
+	  try (var writer = TrajectoryArchiveWriter.openTotalsOnly(path)) {
+		writer.append(buildStep(0, 10, 3));
+	  }
+	  try (var reader = TrajectoryArchiveReader.open(path)) {
+		assertFalse(reader.hasSlaPiles());
+		final var cursor = reader.cursor();
+		assertTrue(cursor.next());
+		assertEquals(0, cursor.pilesCount());
+		assertEquals(3, cursor.finalTotal(cursor.indexOf(Stage.checkIn)));
+		assertFalse(cursor.next());
+	  }
+	} finally {
+	  Files.deleteIfExists(path);
+	}
+  }
+
+  private static WorkflowTrajectoryStep buildStep(final int hour, final long earlyQuantity, final long lateQuantity) {
+	final var queue = lateQuantity == 0
+		? new SlaQueue(Map.of(EARLY_SLA, earlyQuantity))
+		: new SlaQueue(Map.of(EARLY_SLA, earlyQuantity, LATE_SLA, lateQuantity));
+	final var emptyQueue = new SlaQueue(Map.of());
+	final var checkInStep = new StageTrajectoryStep(
+		Stage.checkIn, queue, emptyQueue, ImmutableEnumMap.of(Stage.putAway, emptyQueue), new SlaQueue(Map.of(LATE_SLA, 3L)), 5, 0
+	);
+	final var putAwayStep = new StageTrajectoryStep(Stage.putAway, queue, emptyQueue, ImmutableEnumMap.of(), queue, 5, 1);
+	return new WorkflowTrajectoryStep(
+		START.plus(hour, ChronoUnit.HOURS),
+		START.plus(hour + 1, ChronoUnit.HOURS),
+		ImmutableEnumMap.of(Stage.checkIn, checkInStep, Stage.putAway, putAwayStep),
+		TreeMap.empty(Ord.<Instant>comparableOrd())
+	);
+  }
+}
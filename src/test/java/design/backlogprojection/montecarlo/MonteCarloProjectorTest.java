@@ -0,0 +1,115 @@
+package design.backlogprojection.montecarlo;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.StageTrajectoryStep;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.global.ImmutableEnumMap;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import fj.Ord;
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonteCarloProjectorTest {
+  private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+  private static final double RELATIVE_ACCURACY = 0.01;
+  private static final double[] QUANTILE_LEVELS = {0, 0.5, 1};
+
+  record TotalQueue(long total) implements Queue {
+	@Override
+	public Queue append(final Queue other) {
+	  return new TotalQueue(total + other.total());
+	}
+  }
+
+  /**
+   * A consistent inbound trajectory: the check-in receives the upstream units and sends all it processes to the put-away.
+   */
+  private static final List<WorkflowTrajectoryStep> BASELINE = List.list(
+	  inboundStep(0, 100, 50, 80, 20, 30),
+	  inboundStep(1, 70, 10, 60, 70, 90),
+	  inboundStep(2, 20, 40, 55, 40, 40)
+  );
+
+  private static WorkflowTrajectoryStep inboundStep(
+	  final int hour,
+	  final long checkInInitial,
+	  final long upstream,
+	  final long checkInProcessed,
+	  final long putAwayInitial,
+	  final long putAwayProcessed
+  ) {
+	final var checkInStep = new StageTrajectoryStep(
+		Stage.checkIn,
+		new TotalQueue(checkInInitial),
+		new TotalQueue(upstream),
+		ImmutableEnumMap.of(Stage.putAway, new TotalQueue(checkInProcessed)),
+		new TotalQueue(checkInInitial + upstream - checkInProcessed),
+		checkInProcessed,
+		0
+	);
+	final var putAwayStep = new StageTrajectoryStep(
+		Stage.putAway,
+		new TotalQueue(putAwayInitial),
+		new TotalQueue(checkInProcessed),
+		ImmutableEnumMap.of(),
+		new TotalQueue(putAwayInitial + checkInProcessed - putAwayProcessed),
+		putAwayProcessed,
+		0
+	);
+	return new WorkflowTrajectoryStep(
+		START.plus(hour, ChronoUnit.HOURS),
+		START.plus(hour + 1, ChronoUnit.HOURS),
+		ImmutableEnumMap.of(Stage.checkIn, checkInStep, Stage.putAway, putAwayStep),
+		TreeMap.empty(Ord.<Instant>comparableOrd())
+	);
+  }
+
+  private static MonteCarloProjector.Settings settings(final Perturbation perturbation, final long seed) {
+	// more scenarios than fit in a chunk, so that the sketches of several chunks are merged
+	return new MonteCarloProjector.Settings(200, perturbation, perturbation, QUANTILE_LEVELS, RELATIVE_ACCURACY, seed);
+  }
+
+  @Example
+  void withoutPerturbationsEveryQuantileShouldBeTheBaselineTotal() {
+	final var trajectory = new MonteCarloProjector(settings(Perturbation.none(), 0)).project(Workflow.inbound.stages(), BASELINE);
+
+	assertEquals(200, trajectory.scenariosCount());
+	assertEquals(BASELINE.length(), trajectory.steps().length());
+	BASELINE.zip(trajectory.steps()).forEach(pair -> {
+	  assertEquals(pair._1().endingDate(), pair._2().endingDate());
+	  for (var stage : Workflow.inbound.stages()) {
+		final var expected = pair._1().stagesStep().get(stage).finalQueue().total();
+		for (var quantile : pair._2().finalTotalQuantiles().get(stage)) {
+		  assertTrue(
+			  Math.abs(quantile - expected) <= Math.ceil(expected * RELATIVE_ACCURACY),
+			  String.format("stage=%s, quantile=%d, expected=%d", stage, quantile, expected)
+		  );
+		}
+	  }
+	});
+  }
+
+  @Example
+  void theSameSeedShouldGiveTheSameQuantiles() {
+	final var first = new MonteCarloProjector(settings(Perturbation.logNormal(0.2), 7)).project(Workflow.inbound.stages(), BASELINE);
+	final var second = new MonteCarloProjector(settings(Perturbation.logNormal(0.2), 7)).project(Workflow.inbound.stages(), BASELINE);
+
+	first.steps().zip(second.steps()).forEach(pair -> {
+	  for (var stage : Workflow.inbound.stages()) {
+		assertEquals(
+			java.util.Arrays.toString(pair._1().finalTotalQuantiles().get(stage)),
+			java.util.Arrays.toString(pair._2().finalTotalQuantiles().get(stage))
+		);
+	  }
+	});
+  }
+}
@@ -0,0 +1,64 @@
+package design.backlogprojection.montecarlo;
+
+import net.jqwik.api.Example;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+  private static final double RELATIVE_ACCURACY = 0.01;
+
+  @Example
+  void theQuantilesShouldBeWithinTheRelativeAccuracy() {
+	final var random = new SplittableRandom(7);
+	final var values = new long[10_000];
+	final var sketch = new QuantileSketch(RELATIVE_ACCURACY);
+	for (var i = 0; i < values.length; ++i) {
+	  values[i] = random.nextLong(100_000);
+	  sketch.add(values[i]);
+	}
+	Arrays.sort(values);
+	for (double level : new double[]{0, 0.1, 0.5, 0.9, 0.99, 1}) {
+	  final var expected = values[(int) Math.floor(level * (values.length - 1))];
+	  final var actual = sketch.quantile(level);
+	  assertTrue(
+		  Math.abs(actual - expected) <= Math.ceil(expected * RELATIVE_ACCURACY),
+		  String.format("level=%s, actual=%d, expected=%d", level, actual, expected)
+	  );
+	}
+  }
+
+  @Example
+  void mergingShouldBeEquivalentToAddingAllTheValuesToASingleSketch() {
+	final var random = new SplittableRandom(11);
+	final var whole = new QuantileSketch(RELATIVE_ACCURACY);
+	final var low = new QuantileSketch(RELATIVE_ACCURACY);
+	final var high = new QuantileSketch(RELATIVE_ACCURACY);
+	for (var i = 0; i < 1_000; ++i) {
+	  final var lowValue = random.nextLong(100);
+	  final var highValue = 1_000 + random.nextLong(1_000_000);
+	  whole.add(lowValue);
+	  whole.add(highValue);
+	  low.add(lowValue);
+	  high.add(highValue);
+	}
+	low.merge(high);
+	assertEquals(whole.count(), low.count());
+	for (double level : new double[]{0, 0.25, 0.5, 0.75, 1}) {
+	  assertEquals(whole.quantile(level), low.quantile(level));
+	}
+  }
+
+  @Example
+  void zerosShouldBeExact() {
+	final var sketch = new QuantileSketch(RELATIVE_ACCURACY);
+	sketch.add(0);
+	sketch.add(0);
+	sketch.add(5);
+	assertEquals(0, sketch.quantile(0.5));
+	assertEquals(5, sketch.quantile(1));
+  }
+}
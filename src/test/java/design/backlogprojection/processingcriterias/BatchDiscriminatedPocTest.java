@@ -0,0 +1,161 @@
+package design.backlogprojection.processingcriterias;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Queue;
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.processingcriterias.SlaDiscriminatedPoc.SlaQueue;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+
+import fj.Ord;
+import fj.P;
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BatchDiscriminatedPocTest {
+  static final Instant START = Instant.parse("2022-01-01T08:00:00Z");
+  static final Instant END = START.plus(1, ChronoUnit.HOURS);
+  static final Sla SLA_A = () -> START.plus(2, ChronoUnit.HOURS);
+  static final Sla SLA_B = () -> START.plus(3, ChronoUnit.HOURS);
+  static final Sla SLA_C = () -> START.plus(4, ChronoUnit.HOURS);
+  static final TreeMap<Instant, List<Sla>> SLAS_BY_DEADLINE = TreeMap.<Instant, List<Sla>>empty(Ord.comparableOrd())
+	  .set(SLA_A.getDeadline(), List.single(SLA_A))
+	  .set(SLA_B.getDeadline(), List.single(SLA_B))
+	  .set(SLA_C.getDeadline(), List.single(SLA_C));
+
+  static Map<Sla, Long> quantitiesBySla(final Queue queue) {
+	final var quantities = new HashMap<Sla, Long>();
+	BatchDiscriminatedPoc.forEachPile(queue, (sla, quantity) -> quantities.merge(sla, quantity, Long::sum));
+	return quantities;
+  }
+
+  @Example
+  void theWavingShouldProcessTheNearDeadlineSlasFirstAndSendThemToPicking() {
+	final var criteria = new BatchDiscriminatedPoc();
+	final var split = criteria.decide(Stage.waving, new SlaQueue(Map.of(SLA_A, 5L, SLA_B, 10L)), 8, START, END, SLAS_BY_DEADLINE);
+
+	assertEquals(Map.of(SLA_B, 7L), quantitiesBySla(split.remaining()));
+	assertEquals(Map.of(SLA_A, 5L, SLA_B, 3L), quantitiesBySla(split.processed().get(Stage.picking)));
+	assertNull(split.processed().get(Stage.packingDirect));
+  }
+
+  @Example
+  void theUnitsProcessedByAForkingStageShouldBeSplitBetweenItsBranches() {
+	final var criteria = new BatchDiscriminatedPoc();
+	final var queue = BatchDiscriminatedPoc.batchOf(Map.of(SLA_A, 6L, SLA_B, 4L));
+
+	final var split = criteria.decide(Stage.picking, queue, 7, START, END, SLAS_BY_DEADLINE);
+
+	assertEquals(3, split.remaining().total());
+	assertEquals(4, split.processed().get(Stage.packingDirect).total());
+	assertEquals(3, split.processed().get(Stage.walling).total());
+	final var processed = quantitiesBySla(split.processed().get(Stage.packingDirect));
+	quantitiesBySla(split.processed().get(Stage.walling)).forEach((sla, quantity) -> processed.merge(sla, quantity, Long::sum));
+	quantitiesBySla(split.remaining()).forEach((sla, quantity) -> processed.merge(sla, quantity, Long::sum));
+	assertEquals(Map.of(SLA_A, 6L, SLA_B, 4L), processed);
+  }
+
+  @Example
+  void theUnitsProcessedByAFinalStageShouldHaveNoDestination() {
+	final var split = new BatchDiscriminatedPoc()
+		.decide(Stage.putAway, BatchDiscriminatedPoc.batchOf(Map.of(SLA_A, 6L)), 6, START, END, SLAS_BY_DEADLINE);
+
+	assertEquals(0, split.remaining().total());
+	assertEquals(0, split.processed().size());
+  }
+
+  @Example
+  void theRelabeledQueuesShouldBeHashConsed() {
+	final var criteria = new BatchDiscriminatedPoc();
+	final var queue = BatchDiscriminatedPoc.batchOf(Map.of(SLA_A, 6L, SLA_B, 4L));
+
+	final var relabeled = criteria.relabel(queue, sla -> SLA_C);
+
+	assertEquals(Map.of(SLA_C, 10L), quantitiesBySla(relabeled));
+	assertSame(relabeled, criteria.relabel(BatchDiscriminatedPoc.batchOf(Map.of(SLA_A, 3L, SLA_B, 7L)), sla -> SLA_C));
+	assertSame(
+		criteria.relabel(new SlaQueue(Map.of(SLA_A, 6L, SLA_B, 4L)), sla -> SLA_C),
+		criteria.relabel(new SlaQueue(Map.of(SLA_C, 10L)), sla -> SLA_C)
+	);
+  }
+
+  @Example
+  void theStepDeciderShouldDecideTheSameAsTheCriteria() {
+	final var criteria = new BatchDiscriminatedPoc();
+	final var stepDecider = criteria.beginStep(START, END, SLAS_BY_DEADLINE);
+	final var fefoQueue = new SlaQueue(Map.of(SLA_A, 5L, SLA_B, 10L, SLA_C, 2L));
+	final var fifoQueue = BatchDiscriminatedPoc.batchOf(Map.of(SLA_A, 6L, SLA_B, 4L));
+
+	for (var toProcessQuantity = 0; toProcessQuantity <= 10; toProcessQuantity += 5) {
+	  for (var stageAndQueue : List.list(P.p(Stage.waving, (Queue) fefoQueue), P.p(Stage.picking, fifoQueue))) {
+		final var expected = criteria.decide(stageAndQueue._1(), stageAndQueue._2(), toProcessQuantity, START, END, SLAS_BY_DEADLINE);
+		final var actual = stepDecider.decide(stageAndQueue._1(), stageAndQueue._2(), toProcessQuantity);
+
+		assertSame(expected.remaining(), actual.remaining());
+		assertEquals(expected.processed().size(), actual.processed().size());
+		for (var stage : Stage.values()) {
+		  assertSame(expected.processed().get(stage), actual.processed().get(stage));
+		}
+	  }
+	}
+  }
+
+  @Example
+  void theCompactionShouldMergeTheCheapestAdjacentHeapsUntilTheBoundAndConserveTheQuantities() {
+	final var compactions = new ArrayList<String>();
+	final var criteria = new BatchDiscriminatedPoc(
+		new HeapCompactionPolicy(0, 2),
+		(stage, heapsBefore, heapsAfter, orderingError) ->
+			compactions.add(stage + " " + heapsBefore + " " + heapsAfter + " " + orderingError)
+	);
+	final var queue = fifoQueue(Map.of(SLA_A, 10L), Map.of(SLA_A, 5L, SLA_B, 5L), Map.of(SLA_B, 10L), Map.of(SLA_C, 10L));
+
+	final var untouched = criteria.decide(Stage.picking, queue, 0, START, END, SLAS_BY_DEADLINE).remaining();
+	final var split = criteria.decide(Stage.picking, queue, 30, START, END, SLAS_BY_DEADLINE);
+
+	assertEquals(2, BatchDiscriminatedPoc.heapsCount(untouched));
+	assertEquals(Map.of(SLA_A, 15L, SLA_B, 15L, SLA_C, 10L), quantitiesBySla(untouched));
+	// each decision compacts the queue, merging the two first heaps, with an error of 2.5, and then the result with the third one, with 5
+	assertEquals(java.util.List.of("picking 4 2 7.5", "picking 4 2 7.5"), compactions);
+	// the order of the units is lost only within the merged heaps
+	final var processed = quantitiesBySla(split.processed().get(Stage.packingDirect));
+	quantitiesBySla(split.processed().get(Stage.walling)).forEach((sla, quantity) -> processed.merge(sla, quantity, Long::sum));
+	assertEquals(Map.of(SLA_A, 15L, SLA_B, 15L), processed);
+	assertEquals(Map.of(SLA_C, 10L), quantitiesBySla(split.remaining()));
+  }
+
+  @Example
+  void theCompactionShouldMergeTheAdjacentHeapsWhoseCompositionsAreWithinTheTolerance() {
+	final var orderingErrors = new ArrayList<Double>();
+	final var criteria = new BatchDiscriminatedPoc(
+		new HeapCompactionPolicy(0.1, Integer.MAX_VALUE),
+		(stage, heapsBefore, heapsAfter, orderingError) -> orderingErrors.add(orderingError)
+	);
+	final var queue = fifoQueue(Map.of(SLA_A, 6L, SLA_B, 4L), Map.of(SLA_A, 5L, SLA_B, 5L), Map.of(SLA_C, 5L));
+
+	final var compacted = criteria.decide(Stage.picking, queue, 0, START, END, SLAS_BY_DEADLINE).remaining();
+
+	assertEquals(2, BatchDiscriminatedPoc.heapsCount(compacted));
+	assertEquals(Map.of(SLA_A, 11L, SLA_B, 9L, SLA_C, 5L), quantitiesBySla(compacted));
+	assertEquals(1, orderingErrors.size());
+	assertEquals(10.0 * 10 / 20 * 0.1, orderingErrors.get(0), 1e-9);
+  }
+
+  @SafeVarargs
+  private static Queue fifoQueue(final Map<Sla, Long>... batches) {
+	var queue = BatchDiscriminatedPoc.batchOf(batches[0]);
+	for (var i = 1; i < batches.length; ++i) {
+	  queue = queue.append(BatchDiscriminatedPoc.batchOf(batches[i]));
+	}
+	return queue;
+  }
+}
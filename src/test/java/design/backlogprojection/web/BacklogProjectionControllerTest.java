@@ -0,0 +1,73 @@
+package design.backlogprojection.web;
+
+import design.backlogprojection.ScenarioTree;
+import design.backlogprojection.web.BacklogProjectionController.ScenarioVariant;
+import design.global.Workflow;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BacklogProjectionControllerTest {
+  /** The parameters are validated before anything is projected, so no collaborator is needed. */
+  private static final BacklogProjectionController CONTROLLER = new BacklogProjectionController(null, null, null, null, null);
+
+  @Example
+  void aNonPositiveHorizonShouldBeABadRequest() {
+	assertBadRequest(() -> CONTROLLER.project(Workflow.outbound, null, 0));
+	assertBadRequest(() -> CONTROLLER.projectPivot(Workflow.outbound, null, -1, 60));
+  }
+
+  @Example
+  void aNonPositiveBucketLengthShouldBeABadRequest() {
+	assertBadRequest(() -> CONTROLLER.projectPivot(Workflow.outbound, null, null, 0));
+	assertBadRequest(() -> CONTROLLER.projectPivot(Workflow.outbound, null, null, -15));
+	assertBadRequest(() -> CONTROLLER.projectBucketed(Workflow.outbound, null, 0));
+	assertBadRequest(() -> CONTROLLER.projectBucketed(Workflow.outbound, null, -15));
+  }
+
+  @Example
+  void aNegativeSigmaOrAQuantileOutOfTheUnitIntervalShouldBeABadRequest() {
+	final double[] quantiles = {0.1, 0.5, 0.9};
+	assertBadRequest(() -> CONTROLLER.projectProbabilistic(Workflow.outbound, null, 100, -0.1, 0.1, quantiles, 0));
+	assertBadRequest(() -> CONTROLLER.projectProbabilistic(Workflow.outbound, null, 100, 0.1, -0.1, quantiles, 0));
+	assertBadRequest(() -> CONTROLLER.projectProbabilistic(Workflow.outbound, null, 100, 0.1, 0.1, new double[] {0.5, 1.5}, 0));
+	assertBadRequest(() -> CONTROLLER.projectProbabilistic(Workflow.outbound, null, 100, 0.1, 0.1, new double[] {-0.5}, 0));
+	assertBadRequest(() -> CONTROLLER.projectProbabilistic(Workflow.outbound, null, 100, 0.1, 0.1, new double[0], 0));
+  }
+
+  @Example
+  void anInvalidScenarioVariantShouldBeABadRequest() {
+	final var divergesAt = Instant.parse("2022-01-01T12:00:00Z");
+	final var unitsPerHour = Map.of(Stage.checkIn, 100.0, Stage.putAway, 50.0);
+	final var variant = new ScenarioVariant("more", ScenarioTree.BASELINE, divergesAt, unitsPerHour);
+	assertBadRequest(() -> CONTROLLER.projectScenarios(Workflow.inbound, null, List.of(variant, variant)));
+	assertBadRequest(() -> CONTROLLER.projectScenarios(
+		Workflow.inbound,
+		null,
+		List.of(new ScenarioVariant("more", "less", divergesAt, unitsPerHour))
+	));
+	assertBadRequest(() -> CONTROLLER.projectScenarios(
+		Workflow.inbound,
+		null,
+		List.of(new ScenarioVariant("more", ScenarioTree.BASELINE, divergesAt, Map.of(Stage.checkIn, 100.0)))
+	));
+	assertBadRequest(() -> CONTROLLER.projectScenarios(
+		Workflow.inbound,
+		null,
+		List.of(new ScenarioVariant("more", ScenarioTree.BASELINE, divergesAt, Map.of(Stage.checkIn, 100.0, Stage.putAway, -1.0)))
+	));
+  }
+
+  private static void assertBadRequest(final Runnable request) {
+	final var exception = assertThrows(ResponseStatusException.class, request::run);
+	assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+  }
+}
@@ -0,0 +1,51 @@
+package design.backlogprojection.web;
+
+import design.backlogprojection.web.ProjectionExecutor.ProjectionRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.jqwik.api.Example;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectionExecutorTest {
+
+  @Example
+  void aCancelledProjectionShouldLeaveItsPlaceInTheQueue() throws InterruptedException {
+	final var executor = new ProjectionExecutor(1, 1, Duration.ofSeconds(1), new SimpleMeterRegistry());
+	try {
+	  final var started = new CountDownLatch(1);
+	  final var release = new CountDownLatch(1);
+	  executor.submit(() -> {
+		started.countDown();
+		release.await();
+		return "running";
+	  }).subscribe();
+	  started.await();
+
+	  // the only thread is busy, so this one waits in the queue, which is then full
+	  final var cancelled = executor.submit(() -> "cancelled").subscribe();
+	  var rejected = false;
+	  try {
+		executor.submit(() -> "rejected").block();
+	  } catch (ProjectionRejectedException e) {
+		rejected = true;
+	  }
+	  assertTrue(rejected);
+
+	  cancelled.dispose();
+	  final var admitted = executor.submit(() -> "admitted");
+	  final var result = new String[1];
+	  final var thread = new Thread(() -> result[0] = admitted.block());
+	  thread.start();
+	  release.countDown();
+	  thread.join();
+
+	  assertEquals("admitted", result[0]);
+	} finally {
+	  executor.destroy();
+	}
+  }
+}
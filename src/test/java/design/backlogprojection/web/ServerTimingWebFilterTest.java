@@ -0,0 +1,31 @@
+package design.backlogprojection.web;
+
+import design.backlogprojection.ProjectionTimings;
+import design.backlogprojection.ProjectionTimings.Phase;
+import net.jqwik.api.Example;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServerTimingWebFilterTest {
+
+  @Example
+  void aPhaseWithoutStepsShouldBeReported() {
+	final var timings = new ProjectionTimings();
+	assertTrue(timings.isEmpty());
+
+	timings.time(Phase.oversight, () -> {
+	  LockSupport.parkNanos(1_000_000);
+	  return null;
+	});
+
+	assertFalse(timings.isEmpty());
+	assertEquals(0, timings.stepsCount());
+	final var header = ServerTimingWebFilter.format(timings);
+	assertTrue(header.startsWith("oversight;dur="), header);
+	assertTrue(header.contains("steps;desc=\"0\""), header);
+  }
+}
@@ -0,0 +1,134 @@
+package design.backlogprojection.web;
+
+import design.backlogprojection.BacklogTrajectoryEstimator.Sla;
+import design.backlogprojection.BacklogTrajectoryEstimator.StageTrajectoryStep;
+import design.backlogprojection.BacklogTrajectoryEstimator.WorkflowTrajectoryStep;
+import design.backlogprojection.processingcriterias.SlaDiscriminatedPoc.SlaQueue;
+import design.backlogprojection.web.TrajectoryColumnarDecoder.DecodedSla;
+import design.backlogprojection.web.TrajectoryColumnarDecoder.DecodedStageStep;
+import design.global.ImmutableEnumMap;
+import design.global.Workflow.Stage;
+import net.jqwik.api.Example;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import fj.Ord;
+import fj.data.List;
+import fj.data.TreeMap;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrajectoryColumnarEncoderTest {
+  private static final Instant START = Instant.parse("2022-01-01T08:00:00Z");
+  private static final Sla EARLY_SLA = () -> START.plus(2, ChronoUnit.HOURS);
+  private static final Sla LATE_SLA = () -> START.plus(5, ChronoUnit.HOURS);
+  private static final Map<Sla, String> SLA_IDENTIFIERS = Map.of(EARLY_SLA, "early", LATE_SLA, "late");
+
+  private static final TrajectoryColumnarEncoder ENCODER = new TrajectoryColumnarEncoder(
+	  (queue, consumer) -> ((SlaQueue) queue).quantityBySla().forEach(consumer::accept),
+	  SLA_IDENTIFIERS::get
+  );
+
+  @Example
+  void theDecodedTrajectoryShouldHaveTheTotalsAndPilesOfTheEncodedOne() {
+	final var steps = List.list(
+		buildStep(0, Map.of(EARLY_SLA, 10L, LATE_SLA, 3L), true),
+		// the totals decrease, so some deltas are negative, and the packing stage is absent
+		buildStep(1, Map.of(LATE_SLA, 4L), false),
+		buildStep(2, Map.of(), true)
+	);
+
+	final var buffer = ENCODER.encodeValue(steps, new DefaultDataBufferFactory(), ResolvableType.NONE, null, null);
+	final var decoded = TrajectoryColumnarDecoder.decode(buffer.asByteBuffer());
+
+	// the dictionary is in order of appearance, which depends on the iteration order of the piles
+	assertEquals(
+		Set.of(new DecodedSla(EARLY_SLA.getDeadline(), "early"), new DecodedSla(LATE_SLA.getDeadline(), "late")),
+		Set.copyOf(decoded.slas())
+	);
+	assertEquals(3, decoded.steps().size());
+	for (var i = 0; i < 3; ++i) {
+	  final var expected = steps.index(i);
+	  final var actual = decoded.steps().get(i);
+	  assertEquals(expected.startingDate(), actual.startingDate());
+	  assertEquals(expected.endingDate(), actual.endingDate());
+	  for (var stage : new Stage[] {Stage.picking, Stage.packingDirect}) {
+		final var expectedStageStep = expected.stagesStep().get(stage);
+		final var actualStageStep = actual.stagesStep().get(stage);
+		if (expectedStageStep == null) {
+		  assertTrue(actualStageStep == null);
+		} else {
+		  assertEquals(toDecoded(expectedStageStep), actualStageStep);
+		}
+	  }
+	}
+  }
+
+  @Example
+  void theHeaderShouldStartWithTheMagicNumberAndTheStepsCount() {
+	final var buffer = ENCODER.encodeValue(
+		List.list(buildStep(0, Map.of(EARLY_SLA, 1L), true)),
+		new DefaultDataBufferFactory(),
+		ResolvableType.NONE,
+		null,
+		null
+	).asByteBuffer();
+
+	assertEquals(TrajectoryColumnarEncoder.MAGIC, buffer.getInt());
+	assertEquals(1, buffer.get());
+	// one SLA, whose deadline is the first of the dictionary and is then relative to the epoch
+	assertEquals(1, buffer.get());
+	assertEquals(EARLY_SLA.getDeadline().toEpochMilli(), TrajectoryColumnarDecoder.readZigZag(buffer));
+  }
+
+  private static DecodedStageStep toDecoded(final StageTrajectoryStep stageStep) {
+	final var piles = new java.util.HashMap<String, Long>();
+	((SlaQueue) stageStep.finalQueue()).quantityBySla().forEach((sla, quantity) -> piles.put(SLA_IDENTIFIERS.get(sla), quantity));
+	return new DecodedStageStep(
+		stageStep.initialQueue().total(),
+		stageStep.incomingQueue().total(),
+		stageStep.processedTotal(),
+		stageStep.finalQueue().total(),
+		stageStep.queueShortage(),
+		piles
+	);
+  }
+
+  private static WorkflowTrajectoryStep buildStep(final int hour, final Map<Sla, Long> finalPiles, final boolean withPacking) {
+	final var finalQueue = new SlaQueue(finalPiles);
+	final var emptyQueue = new SlaQueue(Map.of());
+	final var pickingStep = new StageTrajectoryStep(
+		Stage.picking, new SlaQueue(Map.of(EARLY_SLA, 20L - hour * 7)), emptyQueue, ImmutableEnumMap.of(), finalQueue, 7 - hour, hour
+	);
+	final var stagesStep = withPacking
+		? ImmutableEnumMap.of(
+			Stage.picking, pickingStep,
+			Stage.packingDirect,
+			new StageTrajectoryStep(Stage.packingDirect, emptyQueue, finalQueue, ImmutableEnumMap.of(), emptyQueue, 3, 0)
+		)
+		: ImmutableEnumMap.of(Stage.picking, pickingStep);
+	return new WorkflowTrajectoryStep(
+		START.plus(hour, ChronoUnit.HOURS),
+		START.plus(hour + 1, ChronoUnit.HOURS),
+		stagesStep,
+		TreeMap.empty(Ord.<Instant>comparableOrd())
+	);
+  }
+
+  @Example
+  void onlyTheListsOfStepsShouldBeEncodable() {
+	assertTrue(ENCODER.canEncode(
+		ResolvableType.forClassWithGenerics(List.class, WorkflowTrajectoryStep.class),
+		TrajectoryColumnarEncoder.MEDIA_TYPE
+	));
+	assertFalse(ENCODER.canEncode(ResolvableType.forClassWithGenerics(List.class, String.class), TrajectoryColumnarEncoder.MEDIA_TYPE));
+	assertFalse(ENCODER.canEncode(ResolvableType.forClass(List.class), TrajectoryColumnarEncoder.MEDIA_TYPE));
+  }
+}
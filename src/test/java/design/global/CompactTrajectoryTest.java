@@ -0,0 +1,63 @@
+package design.global;
+
+import net.jqwik.api.Example;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactTrajectoryTest {
+  private static final Instant START = Instant.parse("2022-01-01T00:00:00Z");
+
+  private static Instant at(final long hours) {
+	return START.plus(Duration.ofHours(hours));
+  }
+
+  private static final Trajectory PICKING = new Trajectory(new TreeMap<>(Map.of(at(0), 10L, at(2), 30L, at(6), 10L)));
+  private static final Trajectory PACKING = new Trajectory(new TreeMap<>(Map.of(at(1), 20L, at(2), 0L, at(4), 20L)));
+
+  @Example
+  void theSumShouldHaveTheUnionOfTheBreakpointsWithoutRepeatedValues() {
+	final var sum = CompactTrajectory.sum(PICKING.compact(), PACKING.compact());
+
+	// the values are 30, 30, 30, 50, 30 at 0, 1, 2, 4 and 6 hours: only the changes are kept
+	assertEquals(new Trajectory(new TreeMap<>(Map.of(at(0), 30L, at(4), 50L, at(6), 30L))), sum.toTrajectory());
+	for (var hours = -1; hours < 8; ++hours) {
+	  assertEquals(
+		  PICKING.integrate(at(-2), at(hours), TimeUnit.HOURS) + PACKING.integrate(at(-2), at(hours), TimeUnit.HOURS),
+		  sum.integrate(at(-2), at(hours), TimeUnit.HOURS),
+		  1e-9
+	  );
+	}
+  }
+
+  @Example
+  void theMinimumShouldCapTheThroughput() {
+	final var capacity = new Trajectory(new TreeMap<>(Map.of(at(0), 25L))).compact();
+
+	assertEquals(
+		new Trajectory(new TreeMap<>(Map.of(at(0), 10L, at(2), 25L, at(6), 10L))),
+		CompactTrajectory.min(PICKING.compact(), capacity).toTrajectory()
+	);
+	assertEquals(
+		CompactTrajectory.min(PICKING.compact(), capacity).toTrajectory(),
+		PICKING.compact().clamp(0, 25).toTrajectory()
+	);
+  }
+
+  @Example
+  void theShiftedAndScaledTrajectoryShouldHaveTheSameIntegralOnTheShiftedInterval() {
+	final var shiftedAndScaled = PICKING.compact().shift(Duration.ofMinutes(90)).scale(1.5);
+
+	assertEquals(
+		1.5 * PICKING.integrate(at(1), at(5), TimeUnit.MINUTES),
+		shiftedAndScaled.integrate(at(1).plus(Duration.ofMinutes(90)), at(5).plus(Duration.ofMinutes(90)), TimeUnit.MINUTES),
+		1e-9
+	);
+	assertEquals(3, shiftedAndScaled.pointsCount());
+  }
+}
@@ -0,0 +1,40 @@
+package design.global;
+
+import net.jqwik.api.Example;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class InternerTest {
+
+  private record Pair(String name, long quantity) {}
+
+  @Example
+  void equalValuesShouldBeInternedToTheSameInstance() {
+	final var interner = new Interner<Pair>();
+	final var first = interner.intern(new Pair("a", 1));
+	final var second = interner.intern(new Pair("a", 1));
+	final var other = interner.intern(new Pair("a", 2));
+
+	assertSame(first, second);
+	assertNotSame(first, other);
+	assertEquals(2, interner.size());
+  }
+
+  @Example
+  void theValuesInternedConcurrentlyShouldHaveASingleCanonicalInstance() {
+	final var interner = new Interner<Pair>();
+	final var canonicals = IntStream.range(0, 10_000)
+		.parallel()
+		.mapToObj(i -> interner.intern(new Pair("p" + i % 100, i % 100)))
+		.collect(Collectors.toCollection(() -> Collections.newSetFromMap(new IdentityHashMap<>())));
+
+	assertEquals(100, canonicals.size());
+  }
+}
@@ -0,0 +1,57 @@
+package design.global;
+
+import design.global.PeriodicTrajectory.OverrideInterval;
+import net.jqwik.api.Example;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PeriodicTrajectoryTest {
+  private static final Instant ORIGIN = Instant.parse("2022-01-03T00:00:00Z");
+  private static final Duration DAY = Duration.ofDays(1);
+
+  @Example
+  void theIntegralsShouldBeEqualToThoseOfTheExpandedTrajectory() {
+	final var template = new TreeMap<>(Map.of(
+		ORIGIN.plus(Duration.ofHours(6)), 10L,
+		ORIGIN.plus(Duration.ofHours(14)), 20L,
+		ORIGIN.plus(Duration.ofHours(22)), 0L
+	));
+	final var override = new OverrideInterval(
+		ORIGIN.plus(DAY).plus(Duration.ofHours(10)), ORIGIN.plus(DAY).plus(Duration.ofHours(16)), 5L
+	);
+	final var periodic = new PeriodicTrajectory(ORIGIN, DAY, template, List.of(override));
+
+	final var expanded = new TreeMap<Instant, Long>();
+	for (var day = -1; day <= 3; ++day) {
+	  final var shift = DAY.multipliedBy(day);
+	  template.forEach((instant, value) -> expanded.put(instant.plus(shift), value));
+	}
+	expanded.subMap(override.from(), override.to()).clear();
+	expanded.put(override.from(), override.value());
+	expanded.put(override.to(), 20L);
+	final var reference = new Trajectory(expanded);
+
+	final Instant[][] intervals = {
+		{ORIGIN, ORIGIN.plus(DAY)},
+		{ORIGIN.minus(Duration.ofHours(3)), ORIGIN.plus(Duration.ofHours(7))},
+		{ORIGIN.plus(Duration.ofHours(5)), ORIGIN.plus(DAY.multipliedBy(3))},
+		{ORIGIN.plus(DAY).plus(Duration.ofHours(12)), ORIGIN.plus(DAY).plus(Duration.ofHours(13))},
+		{ORIGIN.plus(DAY).plus(Duration.ofHours(15)), ORIGIN.plus(Duration.ofHours(60))},
+		{ORIGIN.plus(Duration.ofHours(50)), ORIGIN.plus(Duration.ofHours(20))},
+	};
+	for (var interval : intervals) {
+	  assertEquals(
+		  reference.integrate(interval[0], interval[1], TimeUnit.HOURS),
+		  periodic.integrate(interval[0], interval[1], TimeUnit.HOURS),
+		  1e-9
+	  );
+	}
+  }
+}
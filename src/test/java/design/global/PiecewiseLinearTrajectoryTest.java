@@ -0,0 +1,50 @@
+package design.global;
+
+import net.jqwik.api.Example;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PiecewiseLinearTrajectoryTest {
+  private static final Instant START = Instant.parse("2022-01-01T08:00:00Z");
+
+  private static Instant at(final long minutes) {
+	return START.plus(Duration.ofMinutes(minutes));
+  }
+
+  @Example
+  void aRampShouldBeIntegratedExactlyFromItsTwoEnds() {
+	// a warm-up from 0 to 60 units per hour during the first hour, then a plateau
+	final var trajectory = new PiecewiseLinearTrajectory.Builder()
+		.stepTo(at(0), 0)
+		.linearTo(at(60), 60)
+		.stepTo(at(180), 0)
+		.build();
+
+	assertEquals(30, trajectory.integrate(at(0), at(60), TimeUnit.HOURS), 1e-9);
+	assertEquals(7.5, trajectory.integrate(at(0), at(30), TimeUnit.HOURS), 1e-9);
+	assertEquals(22.5 + 60, trajectory.integrate(at(30), at(120), TimeUnit.HOURS), 1e-9);
+	assertEquals(-7.5, trajectory.integrate(at(30), at(0), TimeUnit.HOURS), 1e-9);
+	assertEquals(150, trajectory.integrate(at(-60), at(240), TimeUnit.HOURS), 1e-9);
+  }
+
+  @Example
+  void theBuiltTrajectoriesShouldNotBeAffectedByTheLaterPoints() {
+	final var builder = new PiecewiseLinearTrajectory.Builder().stepTo(at(0), 10);
+	final var before = builder.build();
+	for (var minutes = 1; minutes <= 40; ++minutes) {
+	  builder.accept(new PiecewiseLinearTrajectory.Point(at(minutes), minutes % 2 == 0 ? 10 : 20, false));
+	}
+	final var after = builder.build();
+
+	assertEquals(1, before.pointsCount());
+	assertEquals(41, after.pointsCount());
+	assertEquals(10, before.integrate(at(0), at(60), TimeUnit.HOURS), 1e-9);
+	assertEquals((20 * 20 + 10 * 20) / 60.0 + 20 * 10 / 60.0, after.integrate(at(0), at(60), TimeUnit.HOURS), 1e-9);
+	assertThrows(IllegalArgumentException.class, () -> builder.stepTo(at(40), 0));
+  }
+}
@@ -13,6 +13,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public class TrajectoryTest {
 
@@ -38,6 +39,18 @@ public class TrajectoryTest {
 		/ 1e9;
   }
 
+  /**
+   * The integrals calculated in a single sweep should be equal to the integrals calculated separately for each interval.
+   */
+  @Property
+  boolean theConsecutiveIntegralsShouldBeEqualToTheIntegralOfEachInterval(@ForAll("testDataProvider") TestData tap) {
+	var boundaries = Stream.of(tap.a, tap.b, tap.c).sorted().toArray(Instant[]::new);
+	var integrals = tap.trajectory.integrateConsecutively(boundaries, TimeUnit.HOURS);
+	return integrals.length == 2
+		&& integrals[0] == tap.trajectory.integrate(boundaries[0], boundaries[1], TimeUnit.HOURS)
+		&& integrals[1] == tap.trajectory.integrate(boundaries[1], boundaries[2], TimeUnit.HOURS);
+  }
+
   record TestData(Trajectory trajectory, Instant a, Instant b, Instant c) {}
 
   @Provide